@@ -1,73 +1,250 @@
 package controller;
 
-import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import model.IImage;
-import model.IPixel;
+import model.PackedImage;
 
 /**
- * Class to represent IO functions for JPEG and PNG files.
+ * Class to represent IO functions for JPEG and PNG files. Decoded images are converted into the
+ * packed raster of the model by reading the data banks of the decoded image in bulk wherever their
+ * layout is known, and JPEG files are exported by copying the packed raster into the data bank of
+ * a new image. PNG files are written straight from the raster by a PNG encoder that filters and
+ * compresses blocks of rows on several threads at once.
  */
-public class AbstractIOFile implements IOFile {
+public class AbstractIOFile implements ImageCodec {
+
+  private static final List<String> EXTENSIONS = List.of("png", "jpeg", "jpg");
+
+  private final PNGEncoder pngEncoder;
+
+  /**
+   * Constructs a JPEG and PNG file reader and writer that compresses PNG files at the default level
+   * on the common ForkJoinPool.
+   */
+  public AbstractIOFile() {
+    this.pngEncoder = new PNGEncoder(Deflater.DEFAULT_COMPRESSION, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a JPEG and PNG file reader and writer that compresses PNG files at the given level
+   * on the given number of threads.
+   *
+   * @param compressionLevel the deflate level of PNG files, from 0 (no compression) to 9 (best
+   *                         compression), or -1 for the default level
+   * @param threads          the number of threads compressing a PNG file (must be positive)
+   * @throws IllegalArgumentException if the level or the number of threads is out of range
+   */
+  public AbstractIOFile(int compressionLevel, int threads) throws IllegalArgumentException {
+    if (compressionLevel < -1 || compressionLevel > 9) {
+      throw new IllegalArgumentException("Compression level must be between -1 and 9.");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("Threads must be positive.");
+    }
+    this.pngEncoder = new PNGEncoder(compressionLevel,
+        threads == 1 ? null : new ForkJoinPool(threads));
+  }
 
   @Override
-  public String readImage(String filename) {
-    BufferedImage input = null;
-    StringBuilder fileString = new StringBuilder();
-    fileString.append("P3\n");
-    try {
-      input = ImageIO.read(new File(filename));
-    } catch (IOException e) {
-      System.err.println("Could not read in script file.");
+  public List<String> getExtensions() {
+    return EXTENSIONS;
+  }
+
+  // the PNG signature or the start of image marker of a JPEG file
+  @Override
+  public boolean matches(byte[] header) {
+    boolean png = header.length >= 4 && (header[0] & 0xFF) == 0x89 && header[1] == 'P'
+        && header[2] == 'N' && header[3] == 'G';
+    boolean jpeg = header.length >= 3 && (header[0] & 0xFF) == 0xFF
+        && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF;
+    return png || jpeg;
+  }
+
+  @Override
+  public boolean supportsStreaming() {
+    return false;
+  }
+
+  // the readers only decode the source region and skip the columns and rows that are not kept
+  @Override
+  public boolean supportsRegionRead() {
+    return true;
+  }
+
+  @Override
+  public Dimension readSize(String filename) throws IllegalArgumentException {
+    return read(filename, reader -> new Dimension(reader.getWidth(0), reader.getHeight(0)));
+  }
+
+  /**
+   * Reads a JPEG or PNG file straight into the raster of a new image, without building a string
+   * representation of it first.
+   *
+   * @param filename the image file name and/or path directory leading to the image file
+   * @return the image stored in the file
+   * @throws IllegalArgumentException if the file can not be read or is not a supported image
+   */
+  @Override
+  public IImage loadImage(String filename) throws IllegalArgumentException {
+    return this.loadImage(filename, null, 1);
+  }
+
+  @Override
+  public IImage loadImage(String filename, Rectangle region, int subsampling)
+      throws IllegalArgumentException {
+    BufferedImage input = read(filename, reader -> {
+      SampledRegion sampled = SampledRegion.of(region, subsampling, reader.getWidth(0),
+          reader.getHeight(0));
+      ImageReadParam param = reader.getDefaultReadParam();
+      param.setSourceRegion(sampled.bounds());
+      param.setSourceSubsampling(sampled.step, sampled.step, 0, 0);
+      return reader.read(0, param);
+    });
+    return new PackedImage(input.getWidth(), input.getHeight(), toRaster(input));
+  }
+
+  // opens the file with the first reader that accepts it and reads from it
+  private static <T> T read(String filename, ReaderFunction<T> function)
+      throws IllegalArgumentException {
+    if (filename == null) {
+      throw new IllegalArgumentException("Filename can't be null.");
     }
-    fileString.append(input.getWidth() + " " + input.getHeight() + "\n");
-    fileString.append("255\n");
-    for (int i = 0; i < input.getHeight(); i++) {
-      for (int j = 0; j < input.getWidth(); j++) {
-        Color c = new Color(input.getRGB(j, i));
-        int red = c.getRed();
-        int green = c.getGreen();
-        int blue = c.getBlue();
-        fileString.append(red).append("\n");
-        fileString.append(green).append("\n");
-        fileString.append(blue).append("\n");
+    try (ImageInputStream stream = ImageIO.createImageInputStream(new File(filename))) {
+      if (stream == null) {
+        throw new IllegalArgumentException("File " + filename + " could not be read.");
       }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+      if (!readers.hasNext()) {
+        throw new IllegalArgumentException("File " + filename + " is not a supported image.");
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(stream, true, true);
+        return function.apply(reader);
+      } finally {
+        reader.dispose();
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + filename + " could not be read.");
     }
-    return fileString.toString();
   }
 
-  @Override
-  public void exportImage(IImage originalImage, String fileString, String fileName,
-      FileType fileType, int width, int height) {
-    BufferedImage image;
+  /**
+   * Something read from an image file through its reader.
+   *
+   * @param <T> the type of what is read
+   */
+  private interface ReaderFunction<T> {
 
-    try {
-      IPixel[][] pixels = originalImage.getPixels();
-
-      image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-      File exportFile = new File(fileName);
-
-      for (int i = 0; i < height; i++) {
-        for (int j = 0; j < width; j++) {
-          IPixel p = pixels[j][i];
-          int r = p.getR();
-          int g = p.getG();
-          int b = p.getB();
-          int rgb = new Color(r, g, b).getRGB();
-          image.setRGB(j, i, rgb);
+    T apply(ImageReader reader) throws IOException;
+  }
+
+  /**
+   * Converts a buffered image into a packed 0xRRGGBB raster. Images stored as packed ints or as
+   * interleaved sRGB bytes, which covers what JPEG and PNG files decode to, are read straight from
+   * their data bank; any other image is converted by one bulk call to getRGB.
+   *
+   * @param image the image to convert
+   * @return the packed raster of the image in row-major order
+   */
+  static int[] toRaster(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] raster = new int[width * height];
+    Raster source = image.getRaster();
+    SampleModel model = source.getSampleModel();
+    DataBuffer buffer = source.getDataBuffer();
+    boolean standalone = source.getParent() == null && buffer.getNumBanks() == 1
+        && source.getSampleModelTranslateX() == 0 && source.getSampleModelTranslateY() == 0;
+
+    int type = image.getType();
+    if (standalone && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+        && buffer instanceof DataBufferInt && model instanceof SinglePixelPackedSampleModel) {
+      int[] data = ((DataBufferInt) buffer).getData();
+      int stride = ((SinglePixelPackedSampleModel) model).getScanlineStride();
+      int offset = buffer.getOffset();
+      for (int y = 0; y < height; y++) {
+        int rowStart = offset + y * stride;
+        for (int x = 0; x < width; x++) {
+          raster[y * width + x] = data[rowStart + x] & 0xFFFFFF;
+        }
+      }
+      return raster;
+    }
+
+    if (standalone && buffer instanceof DataBufferByte && model instanceof ComponentSampleModel
+        && model.getNumBands() >= 3 && image.getColorModel().getColorSpace().isCS_sRGB()) {
+      ComponentSampleModel components = (ComponentSampleModel) model;
+      byte[] data = ((DataBufferByte) buffer).getData();
+      int[] bandOffsets = components.getBandOffsets();
+      int pixelStride = components.getPixelStride();
+      int stride = components.getScanlineStride();
+      int offset = buffer.getOffset();
+      for (int y = 0; y < height; y++) {
+        int index = offset + y * stride;
+        for (int x = 0; x < width; x++) {
+          raster[y * width + x] = ((data[index + bandOffsets[0]] & 0xFF) << 16)
+              | ((data[index + bandOffsets[1]] & 0xFF) << 8)
+              | (data[index + bandOffsets[2]] & 0xFF);
+          index += pixelStride;
         }
       }
+      return raster;
+    }
+
+    image.getRGB(0, 0, width, height, raster, 0, width);
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] &= 0xFFFFFF;
+    }
+    return raster;
+  }
 
-      if (fileType == FileType.PNG) {
-        ImageIO.write(image, "png", exportFile);
+  @Override
+  public void saveImage(IImage image, String fileName, String extension, boolean binary)
+      throws IllegalArgumentException {
+    if (image == null || fileName == null || extension == null) {
+      throw new IllegalArgumentException("Fields can't be null.");
+    }
+    if (!EXTENSIONS.contains(extension.toLowerCase())) {
+      throw new IllegalArgumentException("Not a JPEG or PNG file type.");
+    }
+    try {
+      if (extension.equalsIgnoreCase("png")) {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+          this.pngEncoder.encode(image.getRaster(), image.getWidth(), image.getHeight(), channel);
+        }
       } else {
-        ImageIO.write(image, "jpeg", exportFile);
+        // the packed raster is copied straight into the data bank of the buffered image
+        if (!ImageIO.write(image.convertImage(), "jpeg", new File(fileName))) {
+          throw new IllegalArgumentException("No writer found for jpeg files.");
+        }
       }
     } catch (IOException e) {
-      System.err.println("Could not export image properly.");
+      throw new IllegalArgumentException("File " + fileName + " could not be written.");
     }
   }
 }
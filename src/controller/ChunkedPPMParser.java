@@ -0,0 +1,278 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Parses the values of a large plain (P3) PPM or (P2) PGM file on several threads at once. The
+ * values after the header are memory-mapped and split into chunks at whitespace outside of
+ * comments. The tokens of every chunk are first counted in parallel, a prefix sum of the counts
+ * gives the index of the first value of each chunk, and then every chunk is parsed in parallel
+ * straight into its part of the raster. Pixels whose values are split between two chunks are put
+ * together once all chunks are done.<p>Tokens are found and values scaled by the maximum value of
+ * the file the same way as by the sequential reader, so the result is identical to reading the
+ * file sequentially.</p>
+ */
+final class ChunkedPPMParser {
+
+  /**
+   * The smallest number of bytes of values worth splitting between threads.
+   */
+  static final long MINIMUM_BYTES = 1 << 22;
+
+  private static final int MINIMUM_CHUNK_BYTES = 1 << 20;
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final MappedByteBuffer data;
+  private final int length;
+  private final int channels;
+  private final int[] raster;
+  private final long values;
+  private final int[] scale;
+
+  private ChunkedPPMParser(MappedByteBuffer data, int width, int height, boolean grey,
+      int[] scale) {
+    this.data = data;
+    this.scale = scale;
+    this.length = data.capacity();
+    this.channels = grey ? 1 : 3;
+    this.raster = new int[width * height];
+    this.values = (long) width * height * this.channels;
+  }
+
+  /**
+   * Checks whether the values of a plain file are worth parsing in parallel, which takes more than
+   * one thread and enough bytes to give each thread a chunk.
+   *
+   * @param bytes the number of bytes after the header of the file
+   * @return true if the file should be parsed by this parser
+   */
+  static boolean isWorthwhile(long bytes) {
+    return ForkJoinPool.getCommonPoolParallelism() > 1 && bytes >= MINIMUM_BYTES
+        && bytes <= Integer.MAX_VALUE;
+  }
+
+  /**
+   * Parses the values of a plain file into a packed raster.
+   *
+   * @param channel the channel of the file
+   * @param offset  the offset of the first byte after the header
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param grey    true if the file holds one value per pixel (P2), false for three (P3)
+   * @param scale   the channel value of every value up to the maximum value of the file
+   * @return the packed raster of the image
+   * @throws IOException              if the file could not be mapped
+   * @throws IllegalArgumentException if a value is not a number or the file has too few values
+   */
+  static int[] parse(FileChannel channel, long offset, int width, int height, boolean grey,
+      int[] scale) throws IOException, IllegalArgumentException {
+    int chunks = (int) Math.max(2, Math.min(
+        (long) ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD,
+        (channel.size() - offset) / MINIMUM_CHUNK_BYTES));
+    return parse(channel, offset, width, height, grey, scale, chunks);
+  }
+
+  /**
+   * Parses the values of a plain file into a packed raster, splitting them into at most the given
+   * number of chunks.
+   *
+   * @param channel the channel of the file
+   * @param offset  the offset of the first byte after the header
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param grey    true if the file holds one value per pixel (P2), false for three (P3)
+   * @param scale   the channel value of every value up to the maximum value of the file
+   * @param chunks  the number of chunks to split the values into (must be positive)
+   * @return the packed raster of the image
+   * @throws IOException              if the file could not be mapped
+   * @throws IllegalArgumentException if a value is not a number or the file has too few values
+   */
+  static int[] parse(FileChannel channel, long offset, int width, int height, boolean grey,
+      int[] scale, int chunks) throws IOException, IllegalArgumentException {
+    MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+        channel.size() - offset);
+    return new ChunkedPPMParser(data, width, height, grey, scale).parse(chunks);
+  }
+
+  private int[] parse(int chunks) {
+    int[] bounds = this.split(chunks);
+    int count = bounds.length - 1;
+
+    // the index of the first value of every chunk, from the number of tokens in the ones before
+    long[] first = new long[count + 1];
+    long[] tokens = new long[count];
+    IntStream.range(0, count).parallel()
+        .forEach(k -> tokens[k] = this.countTokens(bounds[k], bounds[k + 1]));
+    for (int k = 0; k < count; k++) {
+      first[k + 1] = first[k] + tokens[k];
+    }
+    if (first[count] < this.values) {
+      throw new IllegalArgumentException("Invalid PPM file: unexpected end of file.");
+    }
+
+    // pixels split between chunks are collected apart from the raster, at most two per chunk
+    int[][] edgePixels = new int[count][2];
+    int[][] edgeBits = new int[count][2];
+    IntStream.range(0, count).parallel().forEach(k -> this.parseChunk(bounds[k], bounds[k + 1],
+        first[k], first[k + 1], edgePixels[k], edgeBits[k]));
+    for (int k = 0; k < count; k++) {
+      for (int e = 0; e < 2; e++) {
+        if (edgePixels[k][e] != -1) {
+          this.raster[edgePixels[k][e]] |= edgeBits[k][e];
+        }
+      }
+    }
+    return this.raster;
+  }
+
+  // finds the chunk boundaries, each at whitespace that is not part of a comment
+  private int[] split(int chunks) {
+    int[] bounds = new int[chunks + 1];
+    int count = 0;
+    for (int k = 1; k < chunks; k++) {
+      int start = bounds[count];
+      int bound = Math.max(start, (int) ((long) this.length * k / chunks));
+      while (bound < this.length && !PPMTokenizer.isWhitespace(this.data.get(bound) & 0xFF)) {
+        bound++;
+      }
+      // a '#' earlier on the same line means the bound is inside a comment, which ends the line
+      for (int i = bound - 1; i >= start && !isLineBreak(this.data.get(i)); i--) {
+        if (this.data.get(i) == '#') {
+          while (bound < this.length && !isLineBreak(this.data.get(bound))) {
+            bound++;
+          }
+          break;
+        }
+      }
+      if (bound > start && bound < this.length) {
+        bounds[++count] = bound;
+      }
+    }
+    bounds[++count] = this.length;
+    int[] result = new int[count + 1];
+    System.arraycopy(bounds, 0, result, 0, count + 1);
+    return result;
+  }
+
+  private long countTokens(int from, int to) {
+    Window window = new Window(this.data);
+    long tokens = 0;
+    boolean inToken = false;
+    boolean inComment = false;
+    for (int i = from; i < to; i++) {
+      int next = window.get(i);
+      if (inComment) {
+        inComment = !isLineBreak((byte) next);
+      } else if (next == '#') {
+        inComment = true;
+        inToken = false;
+      } else if (PPMTokenizer.isWhitespace(next)) {
+        inToken = false;
+      } else if (!inToken) {
+        inToken = true;
+        tokens++;
+      }
+    }
+    return tokens;
+  }
+
+  // parses the values of one chunk, the first of which is the value at the given index
+  private void parseChunk(int from, int to, long firstValue, long endValue, int[] edgePixels,
+      int[] edgeBits) {
+    Window window = new Window(this.data);
+    edgePixels[0] = -1;
+    edgePixels[1] = -1;
+    // pixels from the first whole one up to the last whole one are written straight to the raster
+    long firstWhole = (firstValue + this.channels - 1) / this.channels;
+    long endWhole = Math.min(endValue, this.values) / this.channels;
+    int pixel = (int) (firstValue / this.channels);
+    int channel = (int) (firstValue % this.channels);
+    long index = firstValue;
+    int i = from;
+    while (i < to && index < this.values) {
+      int next = window.get(i);
+      if (next == '#') {
+        while (i < to && !isLineBreak((byte) window.get(i))) {
+          i++;
+        }
+        continue;
+      }
+      if (PPMTokenizer.isWhitespace(next)) {
+        i++;
+        continue;
+      }
+      int value = 0;
+      while (i < to) {
+        next = window.get(i);
+        if (next == '#' || PPMTokenizer.isWhitespace(next)) {
+          break;
+        }
+        int digit = next - '0';
+        if (digit < 0 || digit > 9) {
+          throw new IllegalArgumentException("Invalid PPM file: expected a number.");
+        }
+        value = Math.min(value * 10 + digit, this.scale.length);
+        i++;
+      }
+      value = this.scale[Math.min(value, this.scale.length - 1)];
+
+      int bits;
+      if (this.channels == 1) {
+        bits = (value << 16) | (value << 8) | value;
+      } else {
+        bits = value << (16 - 8 * channel);
+      }
+      if (pixel >= firstWhole && pixel < endWhole) {
+        this.raster[pixel] |= bits;
+      } else {
+        int e = pixel < firstWhole ? 0 : 1;
+        edgePixels[e] = pixel;
+        edgeBits[e] |= bits;
+      }
+      index++;
+      if (++channel == this.channels) {
+        channel = 0;
+        pixel++;
+      }
+    }
+  }
+
+  private static boolean isLineBreak(byte next) {
+    return next == '\n' || next == '\r';
+  }
+
+  /**
+   * Copies the mapped bytes being read into a small array in blocks, which is much faster to scan
+   * than reading the mapped buffer a byte at a time.
+   */
+  private static final class Window {
+
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final MappedByteBuffer data;
+    private final byte[] block;
+    private int start;
+    private int end;
+
+    private Window(MappedByteBuffer data) {
+      this.data = data;
+      this.block = new byte[BLOCK_SIZE];
+      this.start = 0;
+      this.end = 0;
+    }
+
+    // gets the byte at the given index of the mapped buffer, which must be within it
+    private int get(int index) {
+      if (index < this.start || index >= this.end) {
+        this.start = index;
+        this.end = Math.min(index + BLOCK_SIZE, this.data.capacity());
+        this.data.get(index, this.block, 0, this.end - index);
+      }
+      return this.block[index - this.start] & 0xFF;
+    }
+  }
+}
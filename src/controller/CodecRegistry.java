@@ -0,0 +1,166 @@
+package controller;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import model.IImage;
+
+/**
+ * Class to represent the set of codecs that images are read and written with. Codecs are looked up
+ * by the magic bytes at the start of a file being read, falling back to its extension, and by the
+ * extension of the file type being written. When two codecs claim the same extension the one
+ * registered last is used, so a codec can replace a built-in one.
+ */
+public class CodecRegistry {
+
+  // number of bytes read from the start of a file to find its codec
+  private static final int HEADER_LENGTH = 16;
+  private static final CodecRegistry DEFAULT = createDefault();
+
+  private final List<ImageCodec> codecs;
+  private final Map<String, ImageCodec> byExtension;
+
+  /**
+   * Constructs an empty registry.
+   */
+  public CodecRegistry() {
+    this.codecs = new ArrayList<>();
+    this.byExtension = new LinkedHashMap<>();
+  }
+
+  /**
+   * Gets the registry of the built-in codecs followed by every codec found by the ServiceLoader.
+   *
+   * @return the default registry
+   */
+  public static CodecRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  private static CodecRegistry createDefault() {
+    CodecRegistry registry = new CodecRegistry();
+    registry.register(new IOPPMFile());
+    registry.register(new AbstractIOFile());
+    registry.register(new IOQOIFile());
+    for (ImageCodec codec : ServiceLoader.load(ImageCodec.class)) {
+      registry.register(codec);
+    }
+    return registry;
+  }
+
+  /**
+   * Adds a codec to this registry.
+   *
+   * @param codec the codec to add
+   * @throws IllegalArgumentException if the codec is null
+   */
+  public synchronized void register(ImageCodec codec) throws IllegalArgumentException {
+    if (codec == null) {
+      throw new IllegalArgumentException("Codec cannot be null.");
+    }
+    this.codecs.add(0, codec);
+    for (String extension : codec.getExtensions()) {
+      this.byExtension.put(extension.toLowerCase(), codec);
+    }
+  }
+
+  /**
+   * Finds the codec that writes files with the given extension.
+   *
+   * @param extension the extension of the file type, without the leading dot and in any case
+   * @return the codec for the extension
+   * @throws IllegalArgumentException if no codec handles the extension
+   */
+  public synchronized ImageCodec forExtension(String extension) throws IllegalArgumentException {
+    ImageCodec codec = extension == null ? null : this.byExtension.get(extension.toLowerCase());
+    if (codec == null) {
+      throw new IllegalArgumentException("No codec found for " + extension + " files.");
+    }
+    return codec;
+  }
+
+  /**
+   * Finds the codec that reads the given file, first by the magic bytes at its start and then by
+   * the given extension.
+   *
+   * @param filename  the image file name and/or path directory leading to the image file
+   * @param extension the extension to fall back on if no codec recognizes the contents of the file
+   * @return the codec for the file
+   * @throws IllegalArgumentException if the file can not be read or no codec handles it
+   */
+  public ImageCodec forFile(String filename, String extension) throws IllegalArgumentException {
+    if (filename == null) {
+      throw new IllegalArgumentException("Filename can't be null.");
+    }
+    byte[] header;
+    try (InputStream input = Files.newInputStream(Paths.get(filename))) {
+      header = input.readNBytes(HEADER_LENGTH);
+    } catch (NoSuchFileException e) {
+      throw new IllegalArgumentException("File " + filename + " not found!");
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + filename + " could not be read.");
+    }
+    synchronized (this) {
+      for (ImageCodec codec : this.codecs) {
+        if (codec.matches(header)) {
+          return codec;
+        }
+      }
+    }
+    return this.forExtension(extension);
+  }
+
+  /**
+   * Reads an image file with the codec found for it.
+   *
+   * @param filename  the image file name and/or path directory leading to the image file
+   * @param extension the extension to fall back on if no codec recognizes the contents of the file
+   * @return the image stored in the file
+   * @throws IllegalArgumentException if the file can not be read or no codec handles it
+   */
+  public IImage loadImage(String filename, String extension) throws IllegalArgumentException {
+    return this.forFile(filename, extension).loadImage(filename);
+  }
+
+  /**
+   * Reads every subsampling-th column and row of a region of an image file with the codec found
+   * for it.
+   *
+   * @param filename    the image file name and/or path directory leading to the image file
+   * @param extension   the extension to fall back on if no codec recognizes the contents of the
+   *                    file
+   * @param region      the region to read, or null for the whole image
+   * @param subsampling the distance between the columns and rows read (must be positive)
+   * @return the pixels read, as an image of their own
+   * @throws IllegalArgumentException if the file can not be read, no codec handles it, the
+   *                                  subsampling is not positive or the region does not overlap
+   *                                  the image
+   */
+  public IImage loadImage(String filename, String extension, Rectangle region, int subsampling)
+      throws IllegalArgumentException {
+    return this.forFile(filename, extension).loadImage(filename, region, subsampling);
+  }
+
+  /**
+   * Writes an image with the codec for the given extension.
+   *
+   * @param image     the image to be written
+   * @param fileName  the name of the file to be written
+   * @param extension the extension of the file type to write
+   * @param binary    true to prefer a binary encoding for formats that have one
+   * @throws IllegalArgumentException if no codec handles the extension or the file can not be
+   *                                  written
+   */
+  public void saveImage(IImage image, String fileName, String extension, boolean binary)
+      throws IllegalArgumentException {
+    this.forExtension(extension).saveImage(image, fileName, extension, binary);
+  }
+}
@@ -2,27 +2,40 @@ package controller;
 
 /**
  * Enumeration to represent the file types. Each enumeration represents a file type of an image that
- * is currently supported.
+ * is currently supported, along with the extensions its files may be named with. The first
+ * extension is the one written when a file of the type is saved.
  */
 public enum FileType {
-  PPM, JPEG, PNG;
+  PPM("ppm"), PGM("pgm"), JPEG("jpeg", "jpg"), PNG("png"), QOI("qoi");
+
+  private final String[] extensions;
+
+  FileType(String... extensions) {
+    this.extensions = extensions;
+  }
+
+  /**
+   * Finds the file type of the given extension.
+   *
+   * @param extension the extension of a file, without the leading dot and in any case
+   * @return the file type with the extension
+   * @throws IllegalArgumentException if no file type has the extension
+   */
+  public static FileType fromExtension(String extension) throws IllegalArgumentException {
+    if (extension != null) {
+      for (FileType fileType : values()) {
+        for (String candidate : fileType.extensions) {
+          if (candidate.equalsIgnoreCase(extension)) {
+            return fileType;
+          }
+        }
+      }
+    }
+    throw new IllegalArgumentException("FileType not found.");
+  }
 
   @Override
   public String toString() {
-    String fileType;
-    switch (this) {
-      case PPM:
-        fileType = "ppm";
-        break;
-      case JPEG:
-        fileType = "jpeg";
-        break;
-      case PNG:
-        fileType = "png";
-        break;
-      default:
-        fileType = "";
-    }
-    return fileType;
+    return this.extensions[0];
   }
 }
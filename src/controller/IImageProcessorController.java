@@ -11,12 +11,12 @@ public interface IImageProcessorController extends IController {
   void startImageProcessor(String currentLayer) throws IllegalArgumentException;
 
   /**
-   * Parses through an image file and creates a single string that can be interpreted by the model
-   * and initialized as an image object.
+   * Reads an image file into an image object, using the codec that recognizes the contents of the
+   * file or else the codec of the given file type.
    *
    * @param filename the image file name and/or path directory leading to the image file
    * @param fileType the type of image file being read
-   * @return a string representation of the image that can be interpreted by the model
+   * @return the image stored in the file
    * @throws IllegalArgumentException if filename is null or fileType is unrecognized
    */
   IImage readImage(String filename, FileType fileType) throws IllegalArgumentException;
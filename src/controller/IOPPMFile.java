@@ -1,81 +1,408 @@
 package controller;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.util.Objects;
-import java.util.Scanner;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import model.IImage;
+import model.IRowReader;
+import model.IRowWriter;
+import model.PackedImage;
 
 /**
- * Class to represent IO functions for PPM files.
+ * Class to represent IO functions for PPM files. Plain (P3) and binary (P6) PPM files are
+ * supported, along with plain (P2) and binary (P5) PGM files for single-channel images. The format
+ * of a file being read is found from its first bytes, while the format a file is written in
+ * depends on its file type and whether a binary encoding is asked for.
  */
-public class IOPPMFile implements IOFile {
+public class IOPPMFile implements ImageCodec {
+
+  private static final List<String> EXTENSIONS = List.of("ppm", "pgm");
+
+  private final boolean verbose;
+
+  /**
+   * Constructs a PPM file reader and writer that does not log the contents of the files it reads.
+   */
+  public IOPPMFile() {
+    this(false);
+  }
+
+  /**
+   * Constructs a PPM file reader and writer.
+   *
+   * @param verbose true to print the header and the color of every pixel of each file read
+   */
+  public IOPPMFile(boolean verbose) {
+    this.verbose = verbose;
+  }
 
   @Override
-  public String readImage(String filename) {
-    Scanner sc;
+  public List<String> getExtensions() {
+    return EXTENSIONS;
+  }
 
-    try {
-      sc = new Scanner(new FileInputStream(filename));
-    } catch (FileNotFoundException e) {
-      System.out.println("File " + filename + " not found!");
-      return null;
-    }
-    StringBuilder builder = new StringBuilder();
-    //read the file line by line, and populate a string. This will throw away any comment lines
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s + System.lineSeparator());
+  // P2, P3, P5 or P6 followed by whitespace or a comment
+  @Override
+  public boolean matches(byte[] header) {
+    return header.length >= 3 && header[0] == 'P' && "2356".indexOf(header[1]) != -1
+        && (Character.isWhitespace(header[2]) || header[2] == '#');
+  }
+
+  // files are read and written one row at a time, plain files through small buffers
+  @Override
+  public boolean supportsStreaming() {
+    return true;
+  }
+
+  // rows that are not kept are skipped without being decoded, and reading stops after the last
+  // row that is kept
+  @Override
+  public boolean supportsRegionRead() {
+    return true;
+  }
+
+  @Override
+  public Dimension readSize(String filename) throws IllegalArgumentException {
+    if (filename == null) {
+      throw new IllegalArgumentException("Filename can't be null.");
+    }
+    try (FileChannel channel = FileChannel.open(Paths.get(filename));
+        PPMTokenizer tokenizer = new PPMTokenizer(channel)) {
+      readMagic(tokenizer);
+      int width = tokenizer.nextInt();
+      return new Dimension(width, tokenizer.nextInt());
+    } catch (NoSuchFileException e) {
+      throw new IllegalArgumentException("File " + filename + " not found!");
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + filename + " could not be read.");
+    }
+  }
+
+  /**
+   * Reads a PPM or PGM file straight into the raster of a new image. Plain files are tokenized as
+   * bytes and each pixel is packed as soon as its values are read, without building a string
+   * representation of the file first. Large plain files are split into chunks that are parsed on
+   * several threads at once. The data of binary files is decoded from a memory-mapped
+   * view of the file. Channel values of plain and binary files alike are scaled to the range 0-255
+   * by their maximum value, and PGM files give images in which all three channels are the same.
+   *
+   * @param filename the image file name and/or path directory leading to the image file
+   * @return the image stored in the file
+   * @throws IllegalArgumentException if the file can not be found or read, or is not a PPM or PGM
+   *                                  file
+   */
+  @Override
+  public IImage loadImage(String filename) throws IllegalArgumentException {
+    return this.loadImage(filename, null, 1);
+  }
+
+  @Override
+  public IImage loadImage(String filename, Rectangle region, int subsampling)
+      throws IllegalArgumentException {
+    if (filename == null) {
+      throw new IllegalArgumentException("Filename can't be null.");
+    }
+    try (FileChannel channel = FileChannel.open(Paths.get(filename));
+        PPMTokenizer tokenizer = new PPMTokenizer(channel)) {
+      String magic = readMagic(tokenizer);
+      boolean grey = magic.equals("P2") || magic.equals("P5");
+      int width = tokenizer.nextInt();
+      int height = tokenizer.nextInt();
+      int maxValue = tokenizer.nextInt();
+      checkMaxValue(maxValue);
+      if (this.verbose) {
+        System.out.println("Width of image: " + width);
+        System.out.println("Height of image: " + height);
+        System.out.println(
+            "Maximum value of a color in this file (usually 256 total values): " + maxValue);
+      }
+      SampledRegion sampled = SampledRegion.of(region, subsampling, width, height);
+
+      int[] raster;
+      if (magic.equals("P5") || magic.equals("P6")) {
+        raster = readBinary(channel, tokenizer.offset(), width, height, maxValue, grey, sampled);
+      } else if (sampled.isWhole(width, height)
+          && ChunkedPPMParser.isWorthwhile(channel.size() - tokenizer.offset())) {
+        raster = ChunkedPPMParser.parse(channel, tokenizer.offset(), width, height, grey,
+            scaleTable(maxValue));
+      } else {
+        raster = readPlain(tokenizer, width, grey, sampled, scaleTable(maxValue));
       }
+      int sampledWidth = sampled.sampledWidth();
+      if (this.verbose) {
+        for (int i = 0; i < raster.length; i++) {
+          int rgb = raster[i];
+          System.out.println("Color of pixel (" + (i % sampledWidth) + "," + (i / sampledWidth)
+              + "): " + ((rgb >> 16) & 0xFF) + "," + ((rgb >> 8) & 0xFF) + "," + (rgb & 0xFF));
+        }
+      }
+      return new PackedImage(sampledWidth, sampled.sampledHeight(), raster);
+    } catch (NoSuchFileException e) {
+      throw new IllegalArgumentException("File " + filename + " not found!");
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + filename + " could not be read.");
     }
+  }
 
-    //now set up the scanner to read from the string we just built
-    sc = new Scanner(builder.toString());
+  @Override
+  public IRowReader openRows(String filename) throws IllegalArgumentException {
+    if (filename == null) {
+      throw new IllegalArgumentException("Filename can't be null.");
+    }
+    return new PPMRowReader(filename);
+  }
 
-    String token;
+  @Override
+  public IRowWriter createRows(String fileName, String extension, boolean binary, int width,
+      int height) throws IllegalArgumentException {
+    if (fileName == null || extension == null) {
+      throw new IllegalArgumentException("Fields can't be null.");
+    }
+    if (!EXTENSIONS.contains(extension.toLowerCase())) {
+      throw new IllegalArgumentException("Not a PPM or PGM file type.");
+    }
+    String suffix = "." + extension.toLowerCase();
+    if (!fileName.toLowerCase().endsWith(suffix)) {
+      fileName = fileName + suffix;
+    }
+    return new PPMRowWriter(fileName, suffix.equals(".pgm"), binary, width, height);
+  }
 
-    token = sc.next();
-    if (!token.equals("P3")) {
-      System.out.println("Invalid PPM file: plain RAW file should begin with P3");
+  // reads the magic number of the file, which tells plain and binary PPM and PGM files apart
+  static String readMagic(PPMTokenizer tokenizer) throws IOException {
+    String magic = tokenizer.nextToken();
+    if (!magic.equals("P2") && !magic.equals("P3") && !magic.equals("P5")
+        && !magic.equals("P6")) {
+      throw new IllegalArgumentException(
+          "Invalid PPM file: plain RAW file should begin with P3");
     }
-    int width = sc.nextInt();
-    System.out.println("Width of image: " + width);
-    int height = sc.nextInt();
-    System.out.println("Height of image: " + height);
-    int maxValue = sc.nextInt();
-    System.out
-        .println("Maximum value of a color in this file (usually 256 total values): " + maxValue);
+    return magic;
+  }
 
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int r = sc.nextInt();
-        int g = sc.nextInt();
-        int b = sc.nextInt();
-        System.out.println("Color of pixel (" + j + "," + i + "): " + r + "," + g + "," + b);
+  // reads the kept pixels, skipping the values of all others without parsing them
+  private static int[] readPlain(PPMTokenizer tokenizer, int width, boolean grey,
+      SampledRegion sampled, int[] scale) throws IOException {
+    int channels = grey ? 1 : 3;
+    int sampledWidth = sampled.sampledWidth();
+    int sampledHeight = sampled.sampledHeight();
+    // values skipped before the first kept pixel of a row, between two kept pixels of a row, and
+    // after the last kept pixel of a row
+    long before = (long) sampled.x * channels;
+    long between = (long) (sampled.step - 1) * channels;
+    long after = (long) (width - sampled.x - (sampledWidth - 1) * sampled.step - 1) * channels;
+
+    int[] raster = new int[sampledWidth * sampledHeight];
+    int y = 0;
+    for (int j = 0; j < sampledHeight; j++) {
+      for (; y < sampled.sourceRow(j); y++) {
+        tokenizer.skipTokens((long) width * channels);
+      }
+      tokenizer.skipTokens(before);
+      for (int i = 0; i < sampledWidth; i++) {
+        if (i > 0) {
+          tokenizer.skipTokens(between);
+        }
+        raster[j * sampledWidth + i] = plainPixel(tokenizer, grey, scale);
+      }
+      if (j < sampledHeight - 1) {
+        tokenizer.skipTokens(after);
       }
+      y++;
     }
-    sc.close();
-    return builder.toString();
+    return raster;
+  }
+
+  // decodes the kept samples following the header, which take two bytes each above a maximum of
+  // 255; only the rows from the first to the last kept one are mapped
+  private static int[] readBinary(FileChannel channel, long offset, int width, int height,
+      int maxValue, boolean grey, SampledRegion sampled) throws IOException {
+    int channels = grey ? 1 : 3;
+    int sampleSize = maxValue < 256 ? 1 : 2;
+    int rowBytes = width * channels * sampleSize;
+    checkBinary(channel, offset, rowBytes, height, maxValue);
+    int sampledWidth = sampled.sampledWidth();
+    int sampledHeight = sampled.sampledHeight();
+    int firstRow = sampled.sourceRow(0);
+    int lastRow = sampled.sourceRow(sampledHeight - 1);
+    MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+        offset + (long) rowBytes * firstRow, (long) rowBytes * (lastRow - firstRow + 1));
+
+    int[] scale = scaleTable(maxValue);
+    int[] raster = new int[sampledWidth * sampledHeight];
+    byte[] row = new byte[rowBytes];
+    for (int j = 0; j < sampledHeight; j++) {
+      data.position((sampled.sourceRow(j) - firstRow) * rowBytes);
+      data.get(row);
+      for (int i = 0; i < sampledWidth; i++) {
+        int index = (sampled.x + i * sampled.step) * channels * sampleSize;
+        raster[j * sampledWidth + i] = pixel(row, index, sampleSize, maxValue, grey, scale);
+      }
+    }
+    return raster;
+  }
+
+  // checks that the maximum value of a file is one the format allows
+  static void checkMaxValue(int maxValue) throws IllegalArgumentException {
+    if (maxValue < 1 || maxValue > 65535) {
+      throw new IllegalArgumentException("Invalid PPM file: maximum value out of range.");
+    }
+  }
+
+  // checks the maximum value of a binary file and that the file holds all of its rows
+  static void checkBinary(FileChannel channel, long offset, int rowBytes, int height,
+      int maxValue) throws IOException {
+    checkMaxValue(maxValue);
+    if (offset + (long) rowBytes * height > channel.size()) {
+      throw new IllegalArgumentException("Invalid PPM file: unexpected end of file.");
+    }
+  }
+
+  // table from every possible sample of a file to its channel value
+  static int[] scaleTable(int maxValue) {
+    int[] scale = new int[maxValue + 1];
+    for (int value = 0; value <= maxValue; value++) {
+      scale[value] = (value * 255 + maxValue / 2) / maxValue;
+    }
+    return scale;
+  }
+
+  // reads and packs the next pixel of a plain file
+  static int plainPixel(PPMTokenizer tokenizer, boolean grey, int[] scale) throws IOException {
+    int r = plainValue(tokenizer, scale);
+    if (grey) {
+      return (r << 16) | (r << 8) | r;
+    }
+    int g = plainValue(tokenizer, scale);
+    int b = plainValue(tokenizer, scale);
+    return (r << 16) | (g << 8) | b;
+  }
+
+  // values above the maximum value of the file, including those too long to fit in an int, are
+  // limited to it
+  private static int plainValue(PPMTokenizer tokenizer, int[] scale) throws IOException {
+    int value = tokenizer.nextInt();
+    return scale[value < 0 || value >= scale.length ? scale.length - 1 : value];
+  }
+
+  // packs the pixel whose samples start at the given index of a row of a binary file
+  static int pixel(byte[] row, int index, int sampleSize, int maxValue, boolean grey,
+      int[] scale) {
+    int r = scale[sample(row, index, sampleSize, maxValue)];
+    if (grey) {
+      return (r << 16) | (r << 8) | r;
+    }
+    int g = scale[sample(row, index + sampleSize, sampleSize, maxValue)];
+    int b = scale[sample(row, index + 2 * sampleSize, sampleSize, maxValue)];
+    return (r << 16) | (g << 8) | b;
+  }
+
+  // reads the big-endian sample at the given index, limited to the maximum value of the file
+  private static int sample(byte[] row, int index, int sampleSize, int maxValue) {
+    int sample = row[index] & 0xFF;
+    if (sampleSize == 2) {
+      sample = (sample << 8) | (row[index + 1] & 0xFF);
+    }
+    return Math.min(sample, maxValue);
   }
 
   @Override
-  public void exportImage(IImage originalImage, String fileString, String fileName,
-      FileType fileType, int width, int height) {
-    OutputStream output = null;
-    try {
-      output = new FileOutputStream(fileName + ".ppm");
-    } catch (FileNotFoundException e) {
-      System.err.println("Could not create initial file.");
+  public void saveImage(IImage image, String fileName, String extension, boolean binary)
+      throws IllegalArgumentException {
+    if (image == null || fileName == null || extension == null) {
+      throw new IllegalArgumentException("Fields can't be null.");
+    }
+    if (!EXTENSIONS.contains(extension.toLowerCase())) {
+      throw new IllegalArgumentException("Not a PPM or PGM file type.");
+    }
+    String suffix = "." + extension.toLowerCase();
+    if (!fileName.toLowerCase().endsWith(suffix)) {
+      fileName = fileName + suffix;
     }
+    Path path = Paths.get(fileName);
+    boolean grey = suffix.equals(".pgm");
     try {
-      Objects.requireNonNull(output).write(fileString.getBytes());
-      output.close();
+      if (binary) {
+        writeBinary(image, path, grey);
+      } else {
+        writePlain(image, path, grey);
+      }
     } catch (IOException e) {
-      System.err.println("Could not write to the file output.");
+      throw new IllegalArgumentException("File " + fileName + " could not be written.");
+    }
+  }
+
+  static FileChannel openForWriting(Path path) throws IOException {
+    return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  // streams the values of the image through a small buffer, one pixel per line for PPM files and
+  // one row per line for PGM files, which hold the luma of each pixel
+  private static void writePlain(IImage image, Path path, boolean grey) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] raster = image.getRaster();
+    try (PPMWriter writer = new PPMWriter(openForWriting(path))) {
+      writer.writeText(header(grey, false, width, height));
+      for (int i = 0; i < raster.length; i++) {
+        int rgb = raster[i];
+        if (grey) {
+          writer.writeValue(luma(rgb), i % width == width - 1 ? '\n' : ' ');
+        } else {
+          writer.writeValue((rgb >> 16) & 0xFF, ' ');
+          writer.writeValue((rgb >> 8) & 0xFF, ' ');
+          writer.writeValue(rgb & 0xFF, '\n');
+        }
+      }
     }
   }
+
+  // encodes the whole file into one buffer and writes it with a single bulk write; PGM files hold
+  // the luma of each pixel, which is exact for images that are already grey
+  private static void writeBinary(IImage image, Path path, boolean grey) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] raster = image.getRaster();
+    byte[] header = header(grey, true, width, height).getBytes(StandardCharsets.US_ASCII);
+
+    ByteBuffer buffer = ByteBuffer.allocate(header.length + raster.length * (grey ? 1 : 3));
+    buffer.put(header);
+    for (int rgb : raster) {
+      if (grey) {
+        buffer.put((byte) luma(rgb));
+      } else {
+        buffer.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb);
+      }
+    }
+    buffer.flip();
+
+    try (FileChannel channel = openForWriting(path)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  // the header of a file written by this codec, with a maximum value of 255
+  static String header(boolean grey, boolean binary, int width, int height) {
+    if (binary) {
+      return (grey ? "P5" : "P6") + "\n" + width + " " + height + "\n255\n";
+    }
+    return (grey ? "P2" : "P3") + "\n# Created by Christopher Burke and Jonathan Truong\n" + width
+        + " " + height + "\n255\n";
+  }
+
+  static int luma(int rgb) {
+    return (int) Math.round(0.2126 * ((rgb >> 16) & 0xFF) + 0.7152 * ((rgb >> 8) & 0xFF)
+        + 0.0722 * (rgb & 0xFF));
+  }
 }
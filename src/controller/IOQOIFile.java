@@ -0,0 +1,271 @@
+package controller;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import model.IImage;
+import model.PackedImage;
+
+/**
+ * Class to represent IO functions for QOI (Quite OK Image) files, a lossless format that is much
+ * faster to encode and decode than PNG at a similar size. Each pixel is written as a run of the
+ * previous pixel, an index into a table of recently seen pixels, a small difference from the
+ * previous pixel, or a full color. Images are always written with three channels, and the alpha of
+ * files with four channels is dropped when they are read.<p>Both directions are a single loop over
+ * the packed raster that works within one byte array, which is read or written with one bulk
+ * call.</p>
+ */
+public class IOQOIFile implements ImageCodec {
+
+  private static final List<String> EXTENSIONS = List.of("qoi");
+  private static final int HEADER_SIZE = 14;
+  private static final byte[] END_MARKER = {0, 0, 0, 0, 0, 0, 0, 1};
+
+  private static final int OP_INDEX = 0x00;
+  private static final int OP_DIFF = 0x40;
+  private static final int OP_LUMA = 0x80;
+  private static final int OP_RUN = 0xC0;
+  private static final int OP_RGB = 0xFE;
+  private static final int OP_RGBA = 0xFF;
+  private static final int MASK = 0xC0;
+  private static final int MAX_RUN = 62;
+
+  @Override
+  public List<String> getExtensions() {
+    return EXTENSIONS;
+  }
+
+  @Override
+  public boolean matches(byte[] header) {
+    return header.length >= 4 && header[0] == 'q' && header[1] == 'o' && header[2] == 'i'
+        && header[3] == 'f';
+  }
+
+  @Override
+  public boolean supportsStreaming() {
+    return false;
+  }
+
+  @Override
+  public boolean supportsRegionRead() {
+    return false;
+  }
+
+  @Override
+  public Dimension readSize(String filename) throws IllegalArgumentException {
+    if (filename == null) {
+      throw new IllegalArgumentException("Filename can't be null.");
+    }
+    byte[] header;
+    try (InputStream input = Files.newInputStream(Paths.get(filename))) {
+      header = input.readNBytes(HEADER_SIZE);
+    } catch (NoSuchFileException e) {
+      throw new IllegalArgumentException("File " + filename + " not found!");
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + filename + " could not be read.");
+    }
+    long[] size = readHeader(header);
+    return new Dimension((int) size[0], (int) size[1]);
+  }
+
+  @Override
+  public IImage loadImage(String filename) throws IllegalArgumentException {
+    return this.loadImage(filename, null, 1);
+  }
+
+  // every pixel depends on the ones before it, so the file is decoded up to the last row kept
+  @Override
+  public IImage loadImage(String filename, Rectangle region, int subsampling)
+      throws IllegalArgumentException {
+    if (filename == null) {
+      throw new IllegalArgumentException("Filename can't be null.");
+    }
+    byte[] data;
+    try {
+      data = Files.readAllBytes(Paths.get(filename));
+    } catch (NoSuchFileException e) {
+      throw new IllegalArgumentException("File " + filename + " not found!");
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + filename + " could not be read.");
+    }
+    if (data.length < HEADER_SIZE + END_MARKER.length) {
+      throw new IllegalArgumentException("Invalid QOI file: file should begin with qoif");
+    }
+    long[] size = readHeader(data);
+    int width = (int) size[0];
+    int height = (int) size[1];
+    SampledRegion sampled = SampledRegion.of(region, subsampling, width, height);
+    if (sampled.isWhole(width, height)) {
+      return new PackedImage(width, height, decode(data, width * height));
+    }
+    int rows = sampled.sourceRow(sampled.sampledHeight() - 1) + 1;
+    int[] raster = sampled.extract(decode(data, width * rows), width);
+    return new PackedImage(sampled.sampledWidth(), sampled.sampledHeight(), raster);
+  }
+
+  // reads the width and height from the header, checking that it is the header of a QOI file
+  private static long[] readHeader(byte[] data) {
+    if (data.length < HEADER_SIZE || data[0] != 'q' || data[1] != 'o' || data[2] != 'i'
+        || data[3] != 'f') {
+      throw new IllegalArgumentException("Invalid QOI file: file should begin with qoif");
+    }
+    ByteBuffer header = ByteBuffer.wrap(data, 4, 10);
+    long width = header.getInt() & 0xFFFFFFFFL;
+    long height = header.getInt() & 0xFFFFFFFFL;
+    int channels = header.get();
+    if (width == 0 || height == 0 || width * height > Integer.MAX_VALUE
+        || (channels != 3 && channels != 4)) {
+      throw new IllegalArgumentException("Invalid QOI file: bad header.");
+    }
+    return new long[]{width, height};
+  }
+
+  // decodes the chunks following the header into a packed raster
+  private static int[] decode(byte[] data, int pixels) {
+    int[] raster = new int[pixels];
+    int[] index = new int[64];
+    int end = data.length - END_MARKER.length;
+    int position = HEADER_SIZE;
+    // pixels are carried as 0xAARRGGBB, starting from opaque black
+    int pixel = 0xFF000000;
+    int run = 0;
+    for (int i = 0; i < pixels; i++) {
+      if (run > 0) {
+        run--;
+      } else {
+        if (position >= end) {
+          throw new IllegalArgumentException("Invalid QOI file: unexpected end of file.");
+        }
+        int op = data[position++] & 0xFF;
+        if (op == OP_RGB || op == OP_RGBA) {
+          int length = op == OP_RGB ? 3 : 4;
+          if (position + length > end) {
+            throw new IllegalArgumentException("Invalid QOI file: unexpected end of file.");
+          }
+          int alpha = op == OP_RGB ? pixel >>> 24 : data[position + 3] & 0xFF;
+          pixel = (alpha << 24) | ((data[position] & 0xFF) << 16)
+              | ((data[position + 1] & 0xFF) << 8) | (data[position + 2] & 0xFF);
+          position += length;
+        } else if ((op & MASK) == OP_INDEX) {
+          pixel = index[op];
+        } else if ((op & MASK) == OP_DIFF) {
+          pixel = withChannels(pixel, ((op >> 4) & 0x03) - 2, ((op >> 2) & 0x03) - 2,
+              (op & 0x03) - 2);
+        } else if ((op & MASK) == OP_LUMA) {
+          if (position >= end) {
+            throw new IllegalArgumentException("Invalid QOI file: unexpected end of file.");
+          }
+          int next = data[position++] & 0xFF;
+          int green = (op & 0x3F) - 32;
+          pixel = withChannels(pixel, green - 8 + ((next >> 4) & 0x0F), green,
+              green - 8 + (next & 0x0F));
+        } else {
+          run = op & 0x3F;
+        }
+        index[hash(pixel)] = pixel;
+      }
+      raster[i] = pixel & 0xFFFFFF;
+    }
+    return raster;
+  }
+
+  @Override
+  public void saveImage(IImage image, String fileName, String extension, boolean binary)
+      throws IllegalArgumentException {
+    if (image == null || fileName == null || extension == null) {
+      throw new IllegalArgumentException("Fields can't be null.");
+    }
+    if (!EXTENSIONS.contains(extension.toLowerCase())) {
+      throw new IllegalArgumentException("Not a QOI file type.");
+    }
+    if (!fileName.toLowerCase().endsWith(".qoi")) {
+      fileName = fileName + ".qoi";
+    }
+    ByteBuffer encoded = encode(image.getRaster(), image.getWidth(), image.getHeight());
+    Path path = Paths.get(fileName);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (encoded.hasRemaining()) {
+        channel.write(encoded);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + fileName + " could not be written.");
+    }
+  }
+
+  // encodes the raster into a buffer sized for the worst case of four bytes per pixel
+  private static ByteBuffer encode(int[] raster, int width, int height) {
+    byte[] out = new byte[HEADER_SIZE + raster.length * 4 + END_MARKER.length];
+    ByteBuffer header = ByteBuffer.wrap(out);
+    header.put((byte) 'q').put((byte) 'o').put((byte) 'i').put((byte) 'f');
+    header.putInt(width).putInt(height).put((byte) 3).put((byte) 0);
+
+    int[] index = new int[64];
+    int position = HEADER_SIZE;
+    int previous = 0xFF000000;
+    int run = 0;
+    for (int i = 0; i < raster.length; i++) {
+      int pixel = raster[i] | 0xFF000000;
+      if (pixel == previous) {
+        run++;
+        if (run == MAX_RUN || i == raster.length - 1) {
+          out[position++] = (byte) (OP_RUN | (run - 1));
+          run = 0;
+        }
+        continue;
+      }
+      if (run > 0) {
+        out[position++] = (byte) (OP_RUN | (run - 1));
+        run = 0;
+      }
+
+      int hash = hash(pixel);
+      if (index[hash] == pixel) {
+        out[position++] = (byte) (OP_INDEX | hash);
+      } else {
+        index[hash] = pixel;
+        // channel differences wrap around like the bytes they are stored in
+        int red = (byte) ((pixel >> 16) - (previous >> 16));
+        int green = (byte) ((pixel >> 8) - (previous >> 8));
+        int blue = (byte) (pixel - previous);
+        int redFromGreen = red - green;
+        int blueFromGreen = blue - green;
+        if (red >= -2 && red <= 1 && green >= -2 && green <= 1 && blue >= -2 && blue <= 1) {
+          out[position++] = (byte) (OP_DIFF | ((red + 2) << 4) | ((green + 2) << 2) | (blue + 2));
+        } else if (green >= -32 && green <= 31 && redFromGreen >= -8 && redFromGreen <= 7
+            && blueFromGreen >= -8 && blueFromGreen <= 7) {
+          out[position++] = (byte) (OP_LUMA | (green + 32));
+          out[position++] = (byte) (((redFromGreen + 8) << 4) | (blueFromGreen + 8));
+        } else {
+          out[position++] = (byte) OP_RGB;
+          out[position++] = (byte) (pixel >> 16);
+          out[position++] = (byte) (pixel >> 8);
+          out[position++] = (byte) pixel;
+        }
+      }
+      previous = pixel;
+    }
+    System.arraycopy(END_MARKER, 0, out, position, END_MARKER.length);
+    return ByteBuffer.wrap(out, 0, position + END_MARKER.length);
+  }
+
+  // adds the given differences to the color channels of a pixel, wrapping each around at 256
+  private static int withChannels(int pixel, int red, int green, int blue) {
+    return (pixel & 0xFF000000) | ((((pixel >> 16) + red) & 0xFF) << 16)
+        | ((((pixel >> 8) + green) & 0xFF) << 8) | ((pixel + blue) & 0xFF);
+  }
+
+  private static int hash(int pixel) {
+    return (((pixel >> 16) & 0xFF) * 3 + ((pixel >> 8) & 0xFF) * 5 + (pixel & 0xFF) * 7
+        + (pixel >>> 24) * 11) & 63;
+  }
+}
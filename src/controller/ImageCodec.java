@@ -0,0 +1,155 @@
+package controller;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.List;
+import model.IImage;
+import model.IRowReader;
+import model.IRowWriter;
+import model.PackedImage;
+
+/**
+ * Interface to represent the reading and writing of one family of image file formats. A codec
+ * decodes a file straight into an image and encodes an image straight into a file, without any
+ * text representation of the image in between.<p>Codecs are found by a CodecRegistry, either from
+ * the first bytes of a file being read or from the extension of the file type being written. Codecs
+ * outside of this package are discovered through the ServiceLoader by listing them in a
+ * META-INF/services/controller.ImageCodec file, and must have a public constructor that takes no
+ * arguments.</p>
+ */
+public interface ImageCodec {
+
+  /**
+   * Gets the file extensions handled by this codec, in lower case and without the leading dot.
+   *
+   * @return the extensions of the file types this codec reads and writes
+   */
+  List<String> getExtensions();
+
+  /**
+   * Checks whether the given first bytes of a file are the magic bytes of a format this codec can
+   * read.
+   *
+   * @param header the first bytes of the file, which may be fewer than the codec looks at if the
+   *               file is short
+   * @return true if this codec can read the file
+   */
+  boolean matches(byte[] header);
+
+  /**
+   * Checks whether this codec reads and writes files in pieces, without holding the whole file in
+   * memory at once. Only codecs that do can open files to be read or written one row at a time.
+   *
+   * @return true if files are streamed
+   */
+  boolean supportsStreaming();
+
+  /**
+   * Checks whether this codec can decode a region of a file, or a subsampled image, without
+   * decoding all of the file first.
+   *
+   * @return true if regions can be read on their own
+   */
+  boolean supportsRegionRead();
+
+  /**
+   * Reads the width and height of the image in a file from its header, without decoding the
+   * image. Codecs that do not override this decode the whole image to find its size.
+   *
+   * @param filename the image file name and/or path directory leading to the image file
+   * @return the size of the image stored in the file
+   * @throws IllegalArgumentException if the file can not be read or is not in a format of this
+   *                                  codec
+   */
+  default Dimension readSize(String filename) throws IllegalArgumentException {
+    IImage image = this.loadImage(filename);
+    return new Dimension(image.getWidth(), image.getHeight());
+  }
+
+  /**
+   * Reads an image file straight into the raster of a new image.
+   *
+   * @param filename the image file name and/or path directory leading to the image file
+   * @return the image stored in the file
+   * @throws IllegalArgumentException if the file can not be read or is not in a format of this
+   *                                  codec
+   */
+  IImage loadImage(String filename) throws IllegalArgumentException;
+
+  /**
+   * Reads part of an image file into the raster of a new image, keeping only every subsampling-th
+   * column and row of the given region, starting from its top left corner. Codecs that support
+   * region reads skip the pixels that are not kept while decoding, the others decode the file and
+   * then keep the pixels.
+   *
+   * @param filename    the image file name and/or path directory leading to the image file
+   * @param region      the region of the image to read, or null for the whole image; parts
+   *                    outside of the image are left out
+   * @param subsampling the distance between the columns and rows kept, 1 to keep all of them
+   * @return the kept pixels of the image stored in the file
+   * @throws IllegalArgumentException if the file can not be read or is not in a format of this
+   *                                  codec, the subsampling is not positive or the region does
+   *                                  not overlap the image
+   */
+  default IImage loadImage(String filename, Rectangle region, int subsampling)
+      throws IllegalArgumentException {
+    IImage image = this.loadImage(filename);
+    int width = image.getWidth();
+    int height = image.getHeight();
+    SampledRegion sampled = SampledRegion.of(region, subsampling, width, height);
+    if (sampled.isWhole(width, height)) {
+      return image;
+    }
+    return new PackedImage(sampled.sampledWidth(), sampled.sampledHeight(),
+        sampled.extract(image.getRaster(), width));
+  }
+
+  /**
+   * Writes an image straight from its raster into a file.
+   *
+   * @param image     the image to be written
+   * @param fileName  the name of the file to be written
+   * @param extension the extension of the file type to write, one of the extensions of this codec
+   * @param binary    true to prefer a binary encoding for formats that have both a plain and a
+   *                  binary one, ignored by other formats
+   * @throws IllegalArgumentException if any argument is null, the extension is not one of this
+   *                                  codec or the file can not be written
+   */
+  void saveImage(IImage image, String fileName, String extension, boolean binary)
+      throws IllegalArgumentException;
+
+  /**
+   * Opens an image file to be read one row at a time, from the top row down, without decoding the
+   * rest of the file first.
+   *
+   * @param filename the image file name and/or path directory leading to the image file
+   * @return a reader of the rows of the image, which must be closed once done with
+   * @throws IllegalArgumentException if the file can not be read or is not in a format of this
+   *                                  codec, or this codec does not support streaming, which
+   *                                  codecs that do not override this never do
+   */
+  default IRowReader openRows(String filename) throws IllegalArgumentException {
+    throw new IllegalArgumentException("Files of this type cannot be read row by row.");
+  }
+
+  /**
+   * Creates an image file to be written one row at a time, from the top row down, replacing the
+   * file if it exists.
+   *
+   * @param fileName  the name of the file to be written
+   * @param extension the extension of the file type to write, one of the extensions of this codec
+   * @param binary    true to prefer a binary encoding for formats that have both a plain and a
+   *                  binary one, ignored by other formats
+   * @param width     the width of the image
+   * @param height    the height of the image
+   * @return a writer of the rows of the image, which must be closed to finish the file
+   * @throws IllegalArgumentException if the file name or extension is null, the extension is not
+   *                                  one of this codec, the file can not be written or this codec
+   *                                  does not support streaming, which codecs that do not
+   *                                  override this never do
+   */
+  default IRowWriter createRows(String fileName, String extension, boolean binary, int width,
+      int height) throws IllegalArgumentException {
+    throw new IllegalArgumentException("Files of this type cannot be written row by row.");
+  }
+}
@@ -47,6 +47,19 @@ public class InteractiveController implements IController, IViewListener {
   @Override
   public void handleLoadEvent(String filepath) throws IllegalStateException {
     stringBuilder = new StringBuilder();
+
+    // a project replaces every layer, and its top layer becomes the current layer
+    if (filepath.toLowerCase().endsWith("." + ProjectFile.EXTENSION)) {
+      stringBuilder.append("open ").append(filepath).append("\nclose");
+      readable = new StringReader(stringBuilder.toString());
+      mainController = new SimpleImageProcessorController(this.model, readable, System.out);
+      mainController.startImageProcessor();
+      ArrayList<IImage> layers = this.model.getAllImages();
+      if (!layers.isEmpty()) {
+        currentLayer = layers.get(layers.size() - 1).getName();
+      }
+      return;
+    }
     switch (this.model.getAllImages().size()) {
       case 0:
         currentLayer = "first";
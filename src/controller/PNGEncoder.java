@@ -0,0 +1,304 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes a packed raster as an 8-bit RGB PNG file, filtering and compressing blocks of rows on
+ * several threads at once, in the style of pigz. The scanlines of every block are filtered and
+ * compressed on their own into raw deflate data that ends on a byte boundary through a sync flush,
+ * primed with the last 32 KiB of the block before it so little is lost to the split. Concatenated
+ * in order, the blocks form a single zlib stream, which is written out as one IDAT chunk per block.
+ * <p>Each scanline is filtered with whichever of the five PNG filters gives the smallest sum of
+ * absolute differences, the same heuristic as libpng, except at level 0 where no filter is
+ * used.</p>
+ */
+final class PNGEncoder {
+
+  private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+  private static final int BLOCK_BYTES = 1 << 17;
+  private static final int WINDOW_BYTES = 1 << 15;
+
+  private final int level;
+  private final ExecutorService pool;
+
+  /**
+   * Creates an encoder compressing at the given level on the given pool.
+   *
+   * @param level the deflate compression level, from 0 to 9 or -1 for the default level
+   * @param pool  the pool to compress the blocks on, or null to compress on the calling thread
+   */
+  PNGEncoder(int level, ExecutorService pool) {
+    this.level = level;
+    this.pool = pool;
+  }
+
+  /**
+   * Encodes the raster and writes the PNG file to the given channel.
+   *
+   * @param raster  the packed raster in row-major order
+   * @param width   the width of the raster
+   * @param height  the height of the raster
+   * @param channel the channel to write the file to, which is left open
+   * @throws IOException if the channel could not be written to or compression was interrupted
+   */
+  void encode(int[] raster, int width, int height, WritableByteChannel channel)
+      throws IOException {
+    int rowBytes = 1 + width * 3;
+    int rowsPerBlock = Math.max(1, BLOCK_BYTES / rowBytes);
+    int blocks = (height + rowsPerBlock - 1) / rowsPerBlock;
+
+    // every block is filtered first, as each block is compressed with the end of the one before it
+    byte[][] filtered = this.runAll(blocks, block -> () -> this.filter(raster, width,
+        block * rowsPerBlock, Math.min(height, (block + 1) * rowsPerBlock)));
+    byte[][] compressed = this.runAll(blocks, block -> () -> this.compress(filtered[block],
+        block == 0 ? null : filtered[block - 1], block == blocks - 1));
+
+    ByteBuffer header = ByteBuffer.allocate(13);
+    header.putInt(width).putInt(height).put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0)
+        .put((byte) 0);
+    write(channel, ByteBuffer.wrap(SIGNATURE));
+    writeChunk(channel, "IHDR", header.array());
+
+    Adler32 checksum = new Adler32();
+    for (int block = 0; block < blocks; block++) {
+      checksum.update(filtered[block]);
+      byte[] data = compressed[block];
+      if (block == 0) {
+        data = concat(zlibHeader(this.level), data);
+      }
+      if (block == blocks - 1) {
+        data = concat(data, ByteBuffer.allocate(4).putInt((int) checksum.getValue()).array());
+      }
+      writeChunk(channel, "IDAT", data);
+    }
+    writeChunk(channel, "IEND", new byte[0]);
+  }
+
+  // runs one task per block, on the pool if there is one, returning the results in block order
+  private byte[][] runAll(int blocks, IntFunction<Callable<byte[]>> task) throws IOException {
+    byte[][] results = new byte[blocks][];
+    try {
+      if (this.pool == null || blocks == 1) {
+        for (int block = 0; block < blocks; block++) {
+          results[block] = task.apply(block).call();
+        }
+        return results;
+      }
+      List<Callable<byte[]>> tasks = new ArrayList<>(blocks);
+      for (int block = 0; block < blocks; block++) {
+        tasks.add(task.apply(block));
+      }
+      List<Future<byte[]>> futures = this.pool.invokeAll(tasks);
+      for (int block = 0; block < blocks; block++) {
+        results[block] = futures.get(block).get();
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while compressing.", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Could not compress the image.", e.getCause());
+    } catch (Exception e) {
+      throw new IOException("Could not compress the image.", e);
+    }
+  }
+
+  // filters the given rows, each starting with the type of its filter
+  private byte[] filter(int[] raster, int width, int firstRow, int lastRow) {
+    int rowBytes = width * 3;
+    byte[] out = new byte[(lastRow - firstRow) * (rowBytes + 1)];
+    byte[] previous = new byte[rowBytes];
+    byte[] current = new byte[rowBytes];
+    byte[] candidate = new byte[rowBytes];
+    byte[] best = new byte[rowBytes];
+    if (firstRow > 0) {
+      unpack(raster, width, firstRow - 1, previous);
+    }
+    int position = 0;
+    for (int y = firstRow; y < lastRow; y++) {
+      unpack(raster, width, y, current);
+      int bestType = 0;
+      System.arraycopy(current, 0, best, 0, rowBytes);
+      if (this.level != 0) {
+        long bestSum = absoluteSum(current);
+        for (int type = 1; type <= 4; type++) {
+          applyFilter(type, current, previous, candidate);
+          long sum = absoluteSum(candidate);
+          if (sum < bestSum) {
+            bestSum = sum;
+            bestType = type;
+            byte[] swap = best;
+            best = candidate;
+            candidate = swap;
+          }
+        }
+      }
+      out[position++] = (byte) bestType;
+      System.arraycopy(best, 0, out, position, rowBytes);
+      position += rowBytes;
+      byte[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return out;
+  }
+
+  private static void unpack(int[] raster, int width, int y, byte[] row) {
+    int start = y * width;
+    for (int x = 0, i = 0; x < width; x++) {
+      int rgb = raster[start + x];
+      row[i++] = (byte) (rgb >> 16);
+      row[i++] = (byte) (rgb >> 8);
+      row[i++] = (byte) rgb;
+    }
+  }
+
+  // applies the Sub, Up, Average or Paeth filter, which look at the byte of the pixel to the left
+  // and the bytes above
+  private static void applyFilter(int type, byte[] row, byte[] above, byte[] out) {
+    int length = row.length;
+    switch (type) {
+      case 1:
+        for (int i = 0; i < length; i++) {
+          out[i] = (byte) (row[i] - (i >= 3 ? row[i - 3] : 0));
+        }
+        break;
+      case 2:
+        for (int i = 0; i < length; i++) {
+          out[i] = (byte) (row[i] - above[i]);
+        }
+        break;
+      case 3:
+        for (int i = 0; i < length; i++) {
+          int left = i >= 3 ? row[i - 3] & 0xFF : 0;
+          out[i] = (byte) (row[i] - ((left + (above[i] & 0xFF)) >> 1));
+        }
+        break;
+      default:
+        for (int i = 0; i < length; i++) {
+          int left = i >= 3 ? row[i - 3] & 0xFF : 0;
+          int corner = i >= 3 ? above[i - 3] & 0xFF : 0;
+          out[i] = (byte) (row[i] - paeth(left, above[i] & 0xFF, corner));
+        }
+    }
+  }
+
+  private static int paeth(int a, int b, int c) {
+    int p = a + b - c;
+    int pa = Math.abs(p - a);
+    int pb = Math.abs(p - b);
+    int pc = Math.abs(p - c);
+    if (pa <= pb && pa <= pc) {
+      return a;
+    }
+    return pb <= pc ? b : c;
+  }
+
+  // sum of the filtered bytes read as signed values, which is small for well predicted rows
+  private static long absoluteSum(byte[] row) {
+    long sum = 0;
+    for (byte value : row) {
+      sum += Math.abs(value);
+    }
+    return sum;
+  }
+
+  // compresses one block into raw deflate data, ending with a sync flush or, for the last block,
+  // the end of the stream
+  private byte[] compress(byte[] data, byte[] before, boolean last) {
+    Deflater deflater = new Deflater(this.level, true);
+    try {
+      if (before != null) {
+        int length = Math.min(WINDOW_BYTES, before.length);
+        deflater.setDictionary(before, before.length - length, length);
+      }
+      deflater.setInput(data);
+      if (last) {
+        deflater.finish();
+      }
+      ByteBuffer out = ByteBuffer.allocate(data.length / 2 + 64);
+      byte[] buffer = new byte[1 << 16];
+      while (true) {
+        int count = deflater.deflate(buffer, 0, buffer.length,
+            last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+        out = ensureRoom(out, count);
+        out.put(buffer, 0, count);
+        if (last ? deflater.finished() : count < buffer.length && deflater.needsInput()) {
+          break;
+        }
+      }
+      byte[] result = new byte[out.position()];
+      out.flip();
+      out.get(result);
+      return result;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static ByteBuffer ensureRoom(ByteBuffer buffer, int room) {
+    if (buffer.remaining() >= room) {
+      return buffer;
+    }
+    ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2,
+        buffer.position() + room));
+    buffer.flip();
+    return larger.put(buffer);
+  }
+
+  // the two byte zlib header for a deflate stream with a 32 KiB window at the given level
+  private static byte[] zlibHeader(int level) {
+    int compressionMethod = 0x78;
+    int flagLevel;
+    if (level == 0 || level == 1) {
+      flagLevel = 0;
+    } else if (level >= 2 && level <= 5) {
+      flagLevel = 1;
+    } else if (level == 6 || level == Deflater.DEFAULT_COMPRESSION) {
+      flagLevel = 2;
+    } else {
+      flagLevel = 3;
+    }
+    int flags = flagLevel << 6;
+    flags += (31 - (compressionMethod * 256 + flags) % 31) % 31;
+    return new byte[]{(byte) compressionMethod, (byte) flags};
+  }
+
+  private static byte[] concat(byte[] first, byte[] second) {
+    byte[] result = new byte[first.length + second.length];
+    System.arraycopy(first, 0, result, 0, first.length);
+    System.arraycopy(second, 0, result, first.length, second.length);
+    return result;
+  }
+
+  // writes a chunk as its length, type, data and the CRC of its type and data
+  private static void writeChunk(WritableByteChannel channel, String type, byte[] data)
+      throws IOException {
+    byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+    CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(data);
+    write(channel, ByteBuffer.allocate(8).putInt(data.length).put(typeBytes).flip());
+    write(channel, ByteBuffer.wrap(data));
+    write(channel, ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip());
+  }
+
+  private static void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
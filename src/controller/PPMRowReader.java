@@ -0,0 +1,139 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import model.IRowReader;
+
+/**
+ * Reads a PPM or PGM file one row at a time. The values of plain files are taken from a
+ * tokenizer that reads the file in blocks, and the bytes of each row of a binary file are read on
+ * their own, so no more than a block of the file and one row are held in memory however large the
+ * file is. Rows are decoded exactly as IOPPMFile decodes the whole file.
+ */
+final class PPMRowReader implements IRowReader {
+
+  private final String fileName;
+  private final FileChannel channel;
+  private final PPMTokenizer tokenizer;
+  private final boolean grey;
+  private final int width;
+  private final int height;
+  private final int maxValue;
+  // only set for binary files
+  private final int[] scale;
+  private final ByteBuffer row;
+  private final int sampleSize;
+  private long position;
+  private int rowsRead;
+
+  /**
+   * Opens the given file and reads its header.
+   *
+   * @param fileName the name of the PPM or PGM file
+   * @throws IllegalArgumentException if the file can not be found or read, or is not a PPM or PGM
+   *                                  file
+   */
+  PPMRowReader(String fileName) throws IllegalArgumentException {
+    this.fileName = fileName;
+    try {
+      this.channel = FileChannel.open(Paths.get(fileName));
+    } catch (NoSuchFileException e) {
+      throw new IllegalArgumentException("File " + fileName + " not found!");
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + fileName + " could not be read.");
+    }
+    this.tokenizer = new PPMTokenizer(this.channel);
+    try {
+      String magic = IOPPMFile.readMagic(this.tokenizer);
+      this.grey = magic.equals("P2") || magic.equals("P5");
+      this.width = this.tokenizer.nextInt();
+      this.height = this.tokenizer.nextInt();
+      this.maxValue = this.tokenizer.nextInt();
+      IOPPMFile.checkMaxValue(this.maxValue);
+      this.scale = IOPPMFile.scaleTable(this.maxValue);
+      if (magic.equals("P5") || magic.equals("P6")) {
+        this.sampleSize = this.maxValue < 256 ? 1 : 2;
+        int rowBytes = this.width * (this.grey ? 1 : 3) * this.sampleSize;
+        this.position = this.tokenizer.offset();
+        IOPPMFile.checkBinary(this.channel, this.position, rowBytes, this.height, this.maxValue);
+        this.row = ByteBuffer.allocate(rowBytes);
+      } else {
+        this.sampleSize = 0;
+        this.row = null;
+      }
+    } catch (IllegalArgumentException e) {
+      this.closeQuietly();
+      throw e;
+    } catch (IOException e) {
+      this.closeQuietly();
+      throw new IllegalArgumentException("File " + fileName + " could not be read.");
+    }
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public void readRow(int[] pixels, int offset) throws IllegalArgumentException {
+    if (this.rowsRead == this.height) {
+      throw new IllegalArgumentException("Every row has been read already.");
+    }
+    try {
+      if (this.row == null) {
+        this.readPlainRow(pixels, offset);
+      } else {
+        this.readBinaryRow(pixels, offset);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + this.fileName + " could not be read.");
+    }
+    this.rowsRead++;
+  }
+
+  private void readPlainRow(int[] pixels, int offset) throws IOException {
+    for (int x = 0; x < this.width; x++) {
+      pixels[offset + x] = IOPPMFile.plainPixel(this.tokenizer, this.grey, this.scale);
+    }
+  }
+
+  // the tokenizer reads ahead of the header, so rows are read from their own position
+  private void readBinaryRow(int[] pixels, int offset) throws IOException {
+    this.row.clear();
+    while (this.row.hasRemaining()) {
+      int read = this.channel.read(this.row, this.position + this.row.position());
+      if (read == -1) {
+        throw new IllegalArgumentException("Invalid PPM file: unexpected end of file.");
+      }
+    }
+    this.position += this.row.capacity();
+    byte[] bytes = this.row.array();
+    int pixelSize = (this.grey ? 1 : 3) * this.sampleSize;
+    for (int x = 0; x < this.width; x++) {
+      pixels[offset + x] = IOPPMFile.pixel(bytes, x * pixelSize, this.sampleSize, this.maxValue,
+          this.grey, this.scale);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.tokenizer.close();
+  }
+
+  private void closeQuietly() {
+    try {
+      this.tokenizer.close();
+    } catch (IOException e) {
+      // the file was only read, so there is nothing left to lose
+    }
+  }
+}
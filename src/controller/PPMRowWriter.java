@@ -0,0 +1,122 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import model.IRowWriter;
+
+/**
+ * Writes a PPM or PGM file one row at a time. The values of plain files go through the fixed size
+ * buffer of a PPMWriter and each row of a binary file is encoded into a buffer of its own and
+ * written right away, so no more than one row of the file is held in memory however large the
+ * file is. Rows are encoded exactly as IOPPMFile encodes a whole image.
+ */
+final class PPMRowWriter implements IRowWriter {
+
+  private final String fileName;
+  private final FileChannel channel;
+  private final PPMWriter writer;
+  private final boolean grey;
+  private final int width;
+  private final int height;
+  // only set for binary files
+  private final ByteBuffer row;
+  private int rowsWritten;
+
+  /**
+   * Creates the given file, replacing it if it exists, and writes its header.
+   *
+   * @param fileName the name of the file, with its extension
+   * @param grey     true to write a PGM file holding the luma of each pixel
+   * @param binary   true to write a binary file rather than a plain one
+   * @param width    the width of the image
+   * @param height   the height of the image
+   * @throws IllegalArgumentException if the size is negative or the file can not be written
+   */
+  PPMRowWriter(String fileName, boolean grey, boolean binary, int width, int height)
+      throws IllegalArgumentException {
+    if (width < 0 || height < 0) {
+      throw new IllegalArgumentException("Width and height cannot be negative.");
+    }
+    this.fileName = fileName;
+    this.grey = grey;
+    this.width = width;
+    this.height = height;
+    String header = IOPPMFile.header(grey, binary, width, height);
+    try {
+      this.channel = IOPPMFile.openForWriting(Paths.get(fileName));
+      if (binary) {
+        this.writer = null;
+        this.row = ByteBuffer.allocate(width * (grey ? 1 : 3));
+        this.write(ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+      } else {
+        this.writer = new PPMWriter(this.channel);
+        this.row = null;
+        this.writer.writeText(header);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + fileName + " could not be written.");
+    }
+  }
+
+  @Override
+  public void writeRow(int[] pixels, int offset) throws IllegalArgumentException {
+    if (this.rowsWritten == this.height) {
+      throw new IllegalArgumentException("Every row has been written already.");
+    }
+    try {
+      if (this.row == null) {
+        this.writePlainRow(pixels, offset);
+      } else {
+        this.writeBinaryRow(pixels, offset);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + this.fileName + " could not be written.");
+    }
+    this.rowsWritten++;
+  }
+
+  private void writePlainRow(int[] pixels, int offset) throws IOException {
+    for (int x = 0; x < this.width; x++) {
+      int rgb = pixels[offset + x];
+      if (this.grey) {
+        this.writer.writeValue(IOPPMFile.luma(rgb), x == this.width - 1 ? '\n' : ' ');
+      } else {
+        this.writer.writeValue((rgb >> 16) & 0xFF, ' ');
+        this.writer.writeValue((rgb >> 8) & 0xFF, ' ');
+        this.writer.writeValue(rgb & 0xFF, '\n');
+      }
+    }
+  }
+
+  private void writeBinaryRow(int[] pixels, int offset) throws IOException {
+    this.row.clear();
+    for (int x = 0; x < this.width; x++) {
+      int rgb = pixels[offset + x];
+      if (this.grey) {
+        this.row.put((byte) IOPPMFile.luma(rgb));
+      } else {
+        this.row.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb);
+      }
+    }
+    this.row.flip();
+    this.write(this.row);
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      this.channel.write(buffer);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.writer == null) {
+      this.channel.close();
+    } else {
+      this.writer.close();
+    }
+  }
+}
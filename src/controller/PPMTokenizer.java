@@ -0,0 +1,167 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Splits the bytes of a plain (ASCII) PPM or PGM file, or the header of a binary one, into
+ * tokens. The file is read from a channel in large blocks and tokens are taken directly from the
+ * bytes of each block, so no lines or strings are built for the pixel values. Whitespace separates
+ * tokens and a '#' starts a comment that runs to the end of its line, wherever it appears.
+ */
+final class PPMTokenizer implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final ReadableByteChannel channel;
+  private final ByteBuffer buffer;
+  private final byte[] bytes;
+  private int position;
+  private int limit;
+  private long consumed;
+
+  /**
+   * Creates a tokenizer reading from the given channel, which is closed along with this tokenizer.
+   *
+   * @param channel the channel to read the file from
+   */
+  PPMTokenizer(ReadableByteChannel channel) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    this.bytes = this.buffer.array();
+    this.position = 0;
+    this.limit = 0;
+    this.consumed = 0;
+  }
+
+  /**
+   * Reads the next token as text. Only meant for the few tokens of the header.
+   *
+   * @return the next token
+   * @throws IOException              if the channel could not be read
+   * @throws IllegalArgumentException if there are no tokens left
+   */
+  String nextToken() throws IOException, IllegalArgumentException {
+    int next = this.skipSeparators();
+    StringBuilder token = new StringBuilder();
+    while (next != -1 && !isSeparator(next)) {
+      token.append((char) next);
+      next = this.read();
+    }
+    if (next == '#') {
+      this.skipComment();
+    }
+    return token.toString();
+  }
+
+  /**
+   * Reads the next token as a non-negative decimal integer.
+   *
+   * @return the value of the next token
+   * @throws IOException              if the channel could not be read
+   * @throws IllegalArgumentException if there are no tokens left or the next token is not a
+   *                                  non-negative integer
+   */
+  int nextInt() throws IOException, IllegalArgumentException {
+    int next = this.skipSeparators();
+    int value = 0;
+    do {
+      int digit = next - '0';
+      if (digit < 0 || digit > 9) {
+        throw new IllegalArgumentException("Invalid PPM file: expected a number.");
+      }
+      value = value * 10 + digit;
+      next = this.read();
+    } while (next != -1 && !isSeparator(next));
+    if (next == '#') {
+      this.skipComment();
+    }
+    return value;
+  }
+
+  /**
+   * Skips the given number of tokens without parsing them, for values that are not needed.
+   *
+   * @param count the number of tokens to skip
+   * @throws IOException              if the channel could not be read
+   * @throws IllegalArgumentException if there are fewer tokens left than the number to skip
+   */
+  void skipTokens(long count) throws IOException, IllegalArgumentException {
+    for (long i = 0; i < count; i++) {
+      int next = this.skipSeparators();
+      while (next != -1 && !isSeparator(next)) {
+        next = this.read();
+      }
+      if (next == '#') {
+        this.skipComment();
+      }
+    }
+  }
+
+  /**
+   * Gets the number of bytes of the file read so far as tokens, including the single separator
+   * after the last token. For a binary file this is where the data after the header begins.
+   *
+   * @return the offset of the first byte not yet read
+   */
+  long offset() {
+    return this.consumed + this.position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  // skips whitespace and comments, returning the first byte of the next token
+  private int skipSeparators() throws IOException, IllegalArgumentException {
+    int next = this.read();
+    while (next != -1) {
+      if (next == '#') {
+        next = this.skipComment();
+      } else if (!isWhitespace(next)) {
+        return next;
+      } else {
+        next = this.read();
+      }
+    }
+    throw new IllegalArgumentException("Invalid PPM file: unexpected end of file.");
+  }
+
+  // skips the rest of a comment, returning the line break that ends it or -1 at the end of the file
+  private int skipComment() throws IOException {
+    int next = this.read();
+    while (next != -1 && next != '\n' && next != '\r') {
+      next = this.read();
+    }
+    return next;
+  }
+
+  private int read() throws IOException {
+    if (this.position == this.limit) {
+      this.buffer.clear();
+      int read = this.channel.read(this.buffer);
+      while (read == 0) {
+        read = this.channel.read(this.buffer);
+      }
+      if (read == -1) {
+        return -1;
+      }
+      this.consumed += this.limit;
+      this.position = 0;
+      this.limit = read;
+    }
+    return this.bytes[this.position++] & 0xFF;
+  }
+
+  private static boolean isSeparator(int next) {
+    return next == '#' || isWhitespace(next);
+  }
+
+  static boolean isWhitespace(int next) {
+    return next == ' ' || next == '\n' || next == '\r' || next == '\t' || next == '\f'
+        || next == 0x0B;
+  }
+}
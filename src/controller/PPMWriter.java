@@ -0,0 +1,85 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the text of a plain (ASCII) PPM or PGM file to a channel through a fixed size buffer, so
+ * the file is never held in memory as a whole. The digits of every possible channel value are
+ * worked out once into a table and copied into the buffer as bytes.
+ */
+final class PPMWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final byte[][] DIGITS = new byte[256][];
+
+  static {
+    for (int value = 0; value < 256; value++) {
+      DIGITS[value] = Integer.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer;
+
+  /**
+   * Creates a writer to the given channel, which is closed along with this writer.
+   *
+   * @param channel the channel to write the file to
+   */
+  PPMWriter(WritableByteChannel channel) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  }
+
+  /**
+   * Writes the given text, which is expected to be short, such as the header of the file.
+   *
+   * @param text the ASCII text to write
+   * @throws IOException if the channel could not be written to
+   */
+  void writeText(String text) throws IOException {
+    for (byte b : text.getBytes(StandardCharsets.US_ASCII)) {
+      this.ensureRoom(1);
+      this.buffer.put(b);
+    }
+  }
+
+  /**
+   * Writes a channel value followed by the given separator.
+   *
+   * @param value     the channel value, between 0 and 255
+   * @param separator the character written after the value
+   * @throws IOException if the channel could not be written to
+   */
+  void writeValue(int value, char separator) throws IOException {
+    this.ensureRoom(4);
+    this.buffer.put(DIGITS[value]).put((byte) separator);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      this.flush();
+    } finally {
+      this.channel.close();
+    }
+  }
+
+  private void ensureRoom(int bytes) throws IOException {
+    if (this.buffer.remaining() < bytes) {
+      this.flush();
+    }
+  }
+
+  private void flush() throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+    this.buffer.clear();
+  }
+}
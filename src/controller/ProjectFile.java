@@ -0,0 +1,314 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import model.IImage;
+import model.PPMImage;
+import model.PackedImage;
+import model.RowDeltaCodec;
+
+/**
+ * Class to represent a project file, which holds every layer of a multi-layer image in a single
+ * binary file. The file starts with a header and a table of the layers, giving the name,
+ * visibility, dimensions and the offset and length of the pixels of each layer, followed by the
+ * compressed pixels of every layer in turn.<p>The pixels of a layer are stored as their red, green
+ * and blue bytes, each minus the same byte of the pixel to its left, and deflated. The layers are
+ * compressed in parallel and the whole file is written with one gathering channel write.</p><p>A
+ * project file is read by memory-mapping it, so opening it only reads the table and any one layer
+ * can be loaded without decoding the others.</p>
+ */
+public class ProjectFile {
+
+  /**
+   * The extension of project files.
+   */
+  public static final String EXTENSION = "ipp";
+
+  private static final byte[] MAGIC = {'I', 'P', 'P', 'J'};
+  private static final int VERSION = 1;
+
+  private final MappedByteBuffer data;
+  private final List<Entry> entries;
+
+  /**
+   * Opens a project file and reads its table of layers. The pixels of the layers are only read
+   * when a layer is loaded.
+   *
+   * @param fileName the name of the project file
+   * @throws IllegalArgumentException if the file name is null, the file can not be read or it is
+   *                                  not a valid project file
+   */
+  public ProjectFile(String fileName) throws IllegalArgumentException {
+    if (fileName == null) {
+      throw new IllegalArgumentException("Filename can't be null.");
+    }
+    try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Project file " + fileName + " is too large.");
+      }
+      this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (NoSuchFileException e) {
+      throw new IllegalArgumentException("File " + fileName + " not found!");
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + fileName + " could not be read.");
+    }
+    this.entries = readTable(this.data);
+  }
+
+  /**
+   * Writes every layer to a single project file, replacing the file if it exists. The extension
+   * of project files is added to the file name if it is missing.
+   *
+   * @param layers   the layers to be written, from the bottom layer to the top layer
+   * @param fileName the name of the project file
+   * @throws IllegalArgumentException if either argument is null or the file can not be written
+   */
+  public static void save(List<IImage> layers, String fileName) throws IllegalArgumentException {
+    if (layers == null || fileName == null) {
+      throw new IllegalArgumentException("Fields can't be null.");
+    }
+    if (!fileName.toLowerCase().endsWith("." + EXTENSION)) {
+      fileName = fileName + "." + EXTENSION;
+    }
+
+    // the layers are compressed independently, so they are compressed at the same time
+    IImage[] images = layers.toArray(new IImage[0]);
+    byte[][] blocks = new byte[images.length][];
+    IntStream.range(0, images.length).parallel()
+        .forEach(i -> blocks[i] = compress(images[i]));
+
+    byte[][] names = new byte[images.length][];
+    int tableSize = MAGIC.length + 8;
+    for (int i = 0; i < images.length; i++) {
+      String name = images[i].getName();
+      names[i] = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+      tableSize += 4 + (name == null ? 0 : names[i].length) + 1 + 8 + 8 + 4;
+    }
+    ByteBuffer table = ByteBuffer.allocate(tableSize);
+    table.put(MAGIC).putInt(VERSION).putInt(images.length);
+    long offset = tableSize;
+    for (int i = 0; i < images.length; i++) {
+      table.putInt(names[i] == null ? -1 : names[i].length);
+      if (names[i] != null) {
+        table.put(names[i]);
+      }
+      table.put((byte) (images[i].getVisibility() ? 1 : 0));
+      table.putInt(images[i].getWidth()).putInt(images[i].getHeight());
+      table.putLong(offset).putInt(blocks[i].length);
+      offset += blocks[i].length;
+    }
+    table.flip();
+
+    ByteBuffer[] buffers = new ByteBuffer[images.length + 1];
+    buffers[0] = table;
+    for (int i = 0; i < images.length; i++) {
+      buffers[i + 1] = ByteBuffer.wrap(blocks[i]);
+    }
+    // the project is written next to the file it replaces and only moved over it once complete,
+    // so a failed save never leaves the old project half overwritten
+    Path target = Paths.get(fileName).toAbsolutePath();
+    Path temp = null;
+    try {
+      temp = Files.createTempFile(target.getParent(), ".project", "." + EXTENSION);
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        for (long written = 0; written < offset; ) {
+          written += channel.write(buffers);
+        }
+      }
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + fileName + " could not be written.");
+    } finally {
+      if (temp != null) {
+        try {
+          Files.deleteIfExists(temp);
+        } catch (IOException e) {
+          System.err.println("Temporary file " + temp + " could not be deleted.");
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the number of layers in this project.
+   *
+   * @return the number of layers
+   */
+  public int getLayerCount() {
+    return this.entries.size();
+  }
+
+  /**
+   * Gets the names of the layers in this project, from the bottom layer to the top layer.
+   *
+   * @return the names of the layers, with null for a layer without a name
+   */
+  public List<String> getLayerNames() {
+    List<String> names = new ArrayList<>();
+    for (Entry entry : this.entries) {
+      names.add(entry.name);
+    }
+    return names;
+  }
+
+  /**
+   * Loads a single layer of this project, without decoding any other layer.
+   *
+   * @param index the index of the layer, counted from the bottom layer
+   * @return the layer, with its name and visibility
+   * @throws IndexOutOfBoundsException if there is no layer at the index
+   * @throws IllegalArgumentException  if the pixels of the layer are corrupt
+   */
+  public IImage loadLayer(int index) throws IndexOutOfBoundsException, IllegalArgumentException {
+    if (index < 0 || index >= this.entries.size()) {
+      throw new IndexOutOfBoundsException("Provided index not in bounds.");
+    }
+    Entry entry = this.entries.get(index);
+    IImage layer;
+    if (entry.width == 0) {
+      layer = new PPMImage();
+    } else {
+      ByteBuffer block = this.data.duplicate();
+      block.position((int) entry.offset).limit((int) entry.offset + entry.length);
+      layer = new PackedImage(entry.width, entry.height,
+          decompress(block, entry.width, entry.height));
+    }
+    layer.setName(entry.name == null ? "" : entry.name);
+    layer.setVisibility(entry.visible);
+    return layer;
+  }
+
+  /**
+   * Loads the layer of this project with the given name, without decoding any other layer.
+   *
+   * @param name the name of the layer
+   * @return the layer, with its name and visibility
+   * @throws IllegalArgumentException if the name is null, no layer has the name or the pixels of
+   *                                  the layer are corrupt
+   */
+  public IImage loadLayer(String name) throws IllegalArgumentException {
+    if (name == null) {
+      throw new IllegalArgumentException("Name cannot be null.");
+    }
+    for (int i = 0; i < this.entries.size(); i++) {
+      if (name.equals(this.entries.get(i).name)) {
+        return this.loadLayer(i);
+      }
+    }
+    throw new IllegalArgumentException("Layer " + name + " is not in this project.");
+  }
+
+  /**
+   * Loads every layer of this project, decoding the layers in parallel.
+   *
+   * @return the layers, from the bottom layer to the top layer
+   * @throws IllegalArgumentException if the pixels of a layer are corrupt
+   */
+  public List<IImage> loadAll() throws IllegalArgumentException {
+    IImage[] layers = new IImage[this.entries.size()];
+    IntStream.range(0, layers.length).parallel().forEach(i -> layers[i] = this.loadLayer(i));
+    return List.of(layers);
+  }
+
+  // deflates the bytes of every pixel, each minus the same byte of the pixel to its left
+  private static byte[] compress(IImage image) {
+    int[] raster = image.getRaster();
+    if (raster == null) {
+      return new byte[0];
+    }
+    return RowDeltaCodec.deflate(raster, null, image.getWidth(), 0, image.getHeight());
+  }
+
+  // inflates the pixels of a layer one row at a time and adds back the pixel to the left of each
+  private static int[] decompress(ByteBuffer block, int width, int height)
+      throws IllegalArgumentException {
+    int[] raster = new int[width * height];
+    try {
+      if (!RowDeltaCodec.inflate(block, raster, null, width, 0, height)) {
+        throw new IllegalArgumentException("Invalid project file: unexpected end of layer.");
+      }
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Invalid project file: corrupt layer.");
+    }
+    return raster;
+  }
+
+  // reads the header and the table of layers, checking that every layer lies within the file
+  private static List<Entry> readTable(ByteBuffer data) throws IllegalArgumentException {
+    List<Entry> entries = new ArrayList<>();
+    try {
+      byte[] magic = new byte[MAGIC.length];
+      data.duplicate().get(magic);
+      ByteBuffer table = data.duplicate().position(MAGIC.length);
+      if (!Arrays.equals(magic, MAGIC) || table.getInt() != VERSION) {
+        throw new IllegalArgumentException("Invalid project file: file should begin with IPPJ");
+      }
+      int count = table.getInt();
+      if (count < 0) {
+        throw new IllegalArgumentException("Invalid project file: bad header.");
+      }
+      for (int i = 0; i < count; i++) {
+        int nameLength = table.getInt();
+        // a name can not be longer than the rest of the file, so no huge array is made for it
+        if (nameLength < -1 || nameLength > table.remaining()) {
+          throw new IllegalArgumentException("Invalid project file: bad layer table.");
+        }
+        String name = null;
+        if (nameLength >= 0) {
+          byte[] bytes = new byte[nameLength];
+          table.get(bytes);
+          name = new String(bytes, StandardCharsets.UTF_8);
+        }
+        Entry entry = new Entry(name, table.get() != 0, table.getInt(), table.getInt(),
+            table.getLong(), table.getInt());
+        if (entry.width < 0 || entry.height < 0 || (long) entry.width * entry.height
+            > Integer.MAX_VALUE || entry.offset < 0 || entry.length < 0
+            || entry.offset + entry.length > data.capacity()) {
+          throw new IllegalArgumentException("Invalid project file: bad layer table.");
+        }
+        entries.add(entry);
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Invalid project file: bad layer table.");
+    }
+    return entries;
+  }
+
+  /**
+   * One layer in the table of a project file.
+   */
+  private static final class Entry {
+
+    private final String name;
+    private final boolean visible;
+    private final int width;
+    private final int height;
+    private final long offset;
+    private final int length;
+
+    private Entry(String name, boolean visible, int width, int height, long offset, int length) {
+      this.name = name;
+      this.visible = visible;
+      this.width = width;
+      this.height = height;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
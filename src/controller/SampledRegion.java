@@ -0,0 +1,120 @@
+package controller;
+
+import java.awt.Rectangle;
+
+/**
+ * The pixels of an image that a region-limited, subsampled read keeps: every step-th column and
+ * row of a region, starting from its top left corner, the same as ImageIO does for a source region
+ * and source subsampling.
+ */
+final class SampledRegion {
+
+  final int x;
+  final int y;
+  final int width;
+  final int height;
+  final int step;
+
+  private SampledRegion(int x, int y, int width, int height, int step) {
+    this.x = x;
+    this.y = y;
+    this.width = width;
+    this.height = height;
+    this.step = step;
+  }
+
+  /**
+   * Finds the pixels kept from an image of the given size.
+   *
+   * @param region      the region to read, or null for the whole image; parts outside of the
+   *                    image are left out
+   * @param subsampling the distance between the columns and rows kept (must be positive)
+   * @param imageWidth  the width of the whole image
+   * @param imageHeight the height of the whole image
+   * @return the pixels kept
+   * @throws IllegalArgumentException if the subsampling is not positive or the region does not
+   *                                  overlap the image
+   */
+  static SampledRegion of(Rectangle region, int subsampling, int imageWidth, int imageHeight)
+      throws IllegalArgumentException {
+    if (subsampling < 1) {
+      throw new IllegalArgumentException("Subsampling must be positive.");
+    }
+    Rectangle bounds = new Rectangle(0, 0, imageWidth, imageHeight);
+    Rectangle clipped = region == null ? bounds : bounds.intersection(region);
+    if (clipped.isEmpty()) {
+      throw new IllegalArgumentException("Region is outside of the image.");
+    }
+    return new SampledRegion(clipped.x, clipped.y, clipped.width, clipped.height, subsampling);
+  }
+
+  /**
+   * Checks whether every pixel of the image is kept.
+   *
+   * @param imageWidth  the width of the whole image
+   * @param imageHeight the height of the whole image
+   * @return true if nothing is left out
+   */
+  boolean isWhole(int imageWidth, int imageHeight) {
+    return this.step == 1 && this.x == 0 && this.y == 0 && this.width == imageWidth
+        && this.height == imageHeight;
+  }
+
+  /**
+   * Gets the clipped region as a rectangle.
+   *
+   * @return the region within the image
+   */
+  Rectangle bounds() {
+    return new Rectangle(this.x, this.y, this.width, this.height);
+  }
+
+  /**
+   * Gets the number of columns kept.
+   *
+   * @return the width of the image read
+   */
+  int sampledWidth() {
+    return (this.width + this.step - 1) / this.step;
+  }
+
+  /**
+   * Gets the number of rows kept.
+   *
+   * @return the height of the image read
+   */
+  int sampledHeight() {
+    return (this.height + this.step - 1) / this.step;
+  }
+
+  /**
+   * Gets the row of the whole image that a row of the image read comes from.
+   *
+   * @param row a row of the image read
+   * @return the row of the whole image
+   */
+  int sourceRow(int row) {
+    return this.y + row * this.step;
+  }
+
+  /**
+   * Copies the kept pixels out of the raster of the whole image.
+   *
+   * @param raster     the packed raster of the whole image, which only needs to hold the rows up
+   *                   to the last one kept
+   * @param imageWidth the width of the whole image
+   * @return the packed raster of the image read
+   */
+  int[] extract(int[] raster, int imageWidth) {
+    int sampledWidth = this.sampledWidth();
+    int sampledHeight = this.sampledHeight();
+    int[] result = new int[sampledWidth * sampledHeight];
+    for (int j = 0; j < sampledHeight; j++) {
+      int rowStart = this.sourceRow(j) * imageWidth + this.x;
+      for (int i = 0; i < sampledWidth; i++) {
+        result[j * sampledWidth + i] = raster[rowStart + i * this.step];
+      }
+    }
+    return result;
+  }
+}
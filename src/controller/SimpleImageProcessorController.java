@@ -1,6 +1,7 @@
 package controller;
 
 import java.awt.Color;
+import java.awt.Rectangle;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -8,17 +9,28 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
 import model.ColorTransform;
 import model.DefaultKernel;
 import model.DownSize;
+import model.EdgeMode;
 import model.Filter;
 import model.IImage;
 import model.IImageProcessor;
+import model.IRowReader;
+import model.IRowWriter;
+import model.ITransform;
+import model.KernelMatrix;
 import model.PPMImage;
+import model.PackedImage;
+import model.TransformChain;
 import view.IImageProcessorView;
 import view.SimpleImageProcessorView;
 
@@ -27,9 +39,23 @@ import view.SimpleImageProcessorView;
  */
 public class SimpleImageProcessorController implements IImageProcessorController {
 
+  // the steps a stream command can apply
+  private static final List<String> STREAM_STEPS = List.of("blur", "sharpen", "greyscale",
+      "sepia");
+
   private final IImageProcessor model;
   private final Readable rd;
   private final Appendable ap;
+  private final CodecRegistry codecs;
+  private final boolean script;
+  private boolean fuseColors;
+  private KernelMatrix pendingColor;
+  private String pendingLayer;
+  // a load followed by a downsize in a script, held back to be read subsampled
+  private String pendingLoadFile;
+  private String pendingLoadExtension;
+  private Rectangle pendingLoadRegion;
+  private String pendingLoadLayer;
 
   /**
    * Constructs a controller, specifically for line by line user inputs through the console.
@@ -41,12 +67,29 @@ public class SimpleImageProcessorController implements IImageProcessorController
    */
   public SimpleImageProcessorController(IImageProcessor model, Readable rd, Appendable ap)
       throws IllegalArgumentException {
-    if (model == null || rd == null || ap == null) {
+    this(model, rd, ap, CodecRegistry.getDefault());
+  }
+
+  /**
+   * Constructs a controller for line by line user inputs through the console, which reads and
+   * writes image files with the codecs of the given registry.
+   *
+   * @param model  the image processor model
+   * @param rd     readable for inputs
+   * @param ap     appendable for outputs
+   * @param codecs the codecs used to read and write image files, by their extensions
+   * @throws IllegalArgumentException if any of the arguments are null
+   */
+  public SimpleImageProcessorController(IImageProcessor model, Readable rd, Appendable ap,
+      CodecRegistry codecs) throws IllegalArgumentException {
+    if (model == null || rd == null || ap == null || codecs == null) {
       throw new IllegalArgumentException("Fields can't be null.");
     }
     this.model = model;
     this.rd = rd;
     this.ap = ap;
+    this.codecs = codecs;
+    this.script = false;
   }
 
   /**
@@ -65,6 +108,8 @@ public class SimpleImageProcessorController implements IImageProcessorController
     this.model = model;
     this.rd = parseInput(file);
     this.ap = ap;
+    this.codecs = CodecRegistry.getDefault();
+    this.script = true;
   }
 
   private Readable parseInput(String file) throws IllegalArgumentException {
@@ -110,10 +155,19 @@ public class SimpleImageProcessorController implements IImageProcessorController
     String fileName;
     String[] delimitedString;
     String fileType;
+    EdgeMode edgeMode;
     IImage image;
 
     while (sc.hasNextLine()) {
       String input = sc.next();
+
+      // fused color transformations are only applied once something else needs the layer
+      if (!input.equals("greyscale") && !input.equals("sepia")) {
+        this.applyPendingColor(model);
+      }
+      if (!input.equals("downsize")) {
+        this.applyPendingLoad(model, view, 0);
+      }
       switch (input) {
         case "create":
           IImage layer = new PPMImage();
@@ -144,20 +198,41 @@ public class SimpleImageProcessorController implements IImageProcessorController
             this.outputMessage(view, "Need a currently active layer to save image. \n");
           }
           String next = sc.next();
-          int width = model.findTopMostLayer().getPixels().length;
-          int height = model.findTopMostLayer().getPixels()[0].length;
           if (next.equals("all")) {
             String directoryName = sc.next();
             fileType = sc.next();
-            this.saveMultiLayer(directoryName, findFileType(fileType.toLowerCase()), width, height);
+            boolean binary;
+            try {
+              binary = findBinary(sc.nextLine().trim().toLowerCase());
+            } catch (IllegalArgumentException e) {
+              this.outputMessage(view, "Unrecognized save option. \n");
+              break;
+            }
+            if (fileType.equalsIgnoreCase("project")) {
+              try {
+                ProjectFile.save(model.getAllImages(), directoryName);
+                this.outputMessage(view, "Successfully saved project. \n");
+              } catch (IllegalArgumentException e) {
+                this.outputMessage(view, "Failed to save. \n");
+              }
+              break;
+            }
+            try {
+              this.codecs.forExtension(fileType);
+            } catch (IllegalArgumentException e) {
+              this.outputMessage(view, "Failed to save. \n");
+              break;
+            }
+            this.saveMultiLayer(directoryName, fileType.toLowerCase(), binary);
             this.outputMessage(view, "Successfully saved multi-layer image. \n");
           } else {
             fileName = next;
             delimitedString = fileName.split("\\.");
             fileType = delimitedString[delimitedString.length - 1];
             try {
-              this.exportImage(model.findTopMostLayer(), findFileType(fileType.toLowerCase()),
-                  fileName, width, height);
+              boolean binary = findBinary(sc.nextLine().trim().toLowerCase());
+              this.exportImage(model.findTopMostLayer(), fileType.toLowerCase(), fileName,
+                  binary);
               this.outputMessage(view, "Successfully saved single layer. \n");
             } catch (IllegalStateException e) {
               this.outputMessage(view, "No topmost visible layer found. \n");
@@ -165,26 +240,83 @@ public class SimpleImageProcessorController implements IImageProcessorController
               this.outputMessage(view, "Failed to save. \n");
             }
           }
-          sc.nextLine();
           break;
         case "load":
           if (currentLayer == null) {
             this.outputMessage(view, "Need a currently active layer to load image. \n");
-          } else {
-            try {
-              fileName = sc.next();
-              delimitedString = fileName.split("\\.");
-              fileType = delimitedString[delimitedString.length - 1];
-              image = this.readImage(fileName, findFileType(fileType.toLowerCase()));
+            sc.nextLine();
+            break;
+          }
+          try {
+            fileName = sc.next();
+            delimitedString = fileName.split("\\.");
+            fileType = delimitedString[delimitedString.length - 1];
+            String[] options = sc.nextLine().trim().split("\\s+");
+            checkLoadOptions(options);
+            double scale = findScale(options);
+            Rectangle region = findRegion(options);
+            String projectLayer = findProjectLayer(options);
+            boolean verbose = findVerbose(options);
+
+            // a single layer of a project is read without decoding the other layers
+            if (projectLayer != null) {
+              if (scale != 0 || region != null) {
+                throw new IllegalArgumentException("Project layers are read in full.");
+              }
+              image = new ProjectFile(fileName).loadLayer(projectLayer);
               image.setName(currentLayer);
               model.replaceLayer(model.getLayer(currentLayer), image);
               this.outputMessage(view, "Layer successfully loaded. \n");
-            } catch (IllegalArgumentException e) {
-              this.outputMessage(view, "Failed to load. \n");
+              break;
             }
+
+            // a script that down-sizes the image right away only needs to read part of it
+            if (scale == 0 && !verbose && this.script && sc.hasNext("downsize")) {
+              this.pendingLoadFile = fileName;
+              this.pendingLoadExtension = fileType.toLowerCase();
+              this.pendingLoadRegion = region;
+              this.pendingLoadLayer = currentLayer;
+              break;
+            }
+            int subsampling = scale == 0 ? 1 : Math.max(1, (int) Math.floor(1 / scale + 1e-9));
+            // a verbose load of a PPM or PGM file prints its header and the color of every pixel
+            if (verbose
+                && this.codecs.forFile(fileName, fileType.toLowerCase()) instanceof IOPPMFile) {
+              image = new IOPPMFile(true).loadImage(fileName, region, subsampling);
+            } else {
+              image = this.readImage(fileName, fileType.toLowerCase(), region, subsampling);
+            }
+            image.setName(currentLayer);
+            model.replaceLayer(model.getLayer(currentLayer), image);
+            this.outputMessage(view, "Layer successfully loaded. \n");
+          } catch (IllegalArgumentException | NoSuchElementException e) {
+            this.outputMessage(view, "Failed to load. \n");
+          }
+          break;
+        case "open":
+          try {
+            ProjectFile project = new ProjectFile(sc.next());
+            model.setLayers(project.loadAll());
+            if (!project.getLayerNames().contains(currentLayer)) {
+              currentLayer = null;
+            }
+            this.outputMessage(view, "Project successfully opened. \n");
+          } catch (IllegalArgumentException e) {
+            this.outputMessage(view, "Failed to open project. \n");
           }
           sc.nextLine();
           break;
+        case "stream":
+          try {
+            String inputFile = sc.next();
+            String outputFile = sc.next();
+            this.streamImage(inputFile, outputFile,
+                sc.nextLine().trim().toLowerCase().split("\\s+"));
+            this.outputMessage(view, "Image successfully streamed. \n");
+          } catch (IllegalArgumentException | NoSuchElementException e) {
+            this.outputMessage(view, "Failed to stream. \n");
+          }
+          break;
         case "visible":
           if (currentLayer == null) {
             this.outputMessage(view, "Need a currently active layer to render visible. \n");
@@ -203,33 +335,59 @@ public class SimpleImageProcessorController implements IImageProcessorController
           }
           sc.nextLine();
           break;
+        case "duplicate":
+          String copyName = sc.nextLine().trim();
+          if (currentLayer == null) {
+            this.outputMessage(view, "Need a currently active layer to duplicate. \n");
+            break;
+          }
+          try {
+            if (copyName.isEmpty()) {
+              throw new IllegalArgumentException("Name of the copy is missing.");
+            }
+            model.duplicateLayer(model.getLayer(currentLayer), copyName);
+            this.outputMessage(view, "Layer successfully duplicated. \n");
+          } catch (IllegalArgumentException e) {
+            this.outputMessage(view, "Failed to duplicate. \n");
+          }
+          break;
         case "blur":
           if (currentLayer == null) {
             this.outputMessage(view, "Need a currently active layer to apply blur. \n");
           }
+          try {
+            edgeMode = findEdgeMode(sc.nextLine().trim().toLowerCase());
+          } catch (IllegalArgumentException e) {
+            this.outputMessage(view, "Unrecognized edge mode. \n");
+            break;
+          }
           try {
             image = model.getLayer(currentLayer);
-            model.transformLayer(image, new Filter(), DefaultKernel.BLUR.getDefaultKernel(), true,
-                currentLayer);
+            model.transformLayer(image, new Filter(edgeMode),
+                DefaultKernel.BLUR.getDefaultKernel(), true, currentLayer);
             this.outputMessage(view, "Blur successfully applied. \n");
           } catch (IllegalArgumentException e) {
             this.outputMessage(view, "Layer does not exist. \n");
           }
-          sc.nextLine();
           break;
         case "sharpen":
           if (currentLayer == null) {
             this.outputMessage(view, "Need a currently active layer to apply sharpen. \n");
           }
+          try {
+            edgeMode = findEdgeMode(sc.nextLine().trim().toLowerCase());
+          } catch (IllegalArgumentException e) {
+            this.outputMessage(view, "Unrecognized edge mode. \n");
+            break;
+          }
           try {
             image = model.getLayer(currentLayer);
-            model.transformLayer(image, new Filter(), DefaultKernel.SHARPEN.getDefaultKernel(),
-                true, currentLayer);
+            model.transformLayer(image, new Filter(edgeMode),
+                DefaultKernel.SHARPEN.getDefaultKernel(), true, currentLayer);
             this.outputMessage(view, "Sharpen successfully applied. \n");
           } catch (IllegalArgumentException e) {
             this.outputMessage(view, "Layer does not exist. \n");
           }
-          sc.nextLine();
           break;
         case "greyscale":
           if (currentLayer == null) {
@@ -237,8 +395,8 @@ public class SimpleImageProcessorController implements IImageProcessorController
           }
           try {
             image = model.getLayer(currentLayer);
-            model.transformLayer(image, new ColorTransform(),
-                DefaultKernel.GREYSCALE.getDefaultKernel(), true, currentLayer);
+            this.applyColor(model, image, DefaultKernel.GREYSCALE.getDefaultKernel(),
+                currentLayer);
             this.outputMessage(view, "Greyscale successfully applied. \n");
           } catch (IllegalArgumentException e) {
             this.outputMessage(view, "Layer does not exist. \n");
@@ -251,9 +409,7 @@ public class SimpleImageProcessorController implements IImageProcessorController
           }
           try {
             image = model.getLayer(currentLayer);
-            model
-                .transformLayer(image, new ColorTransform(), DefaultKernel.SEPIA.getDefaultKernel(),
-                    true, currentLayer);
+            this.applyColor(model, image, DefaultKernel.SEPIA.getDefaultKernel(), currentLayer);
             this.outputMessage(view, "Sepia successfully applied. \n");
           } catch (IllegalArgumentException e) {
             this.outputMessage(view, "Layer does not exist. \n");
@@ -270,6 +426,10 @@ public class SimpleImageProcessorController implements IImageProcessorController
             } catch (NoSuchElementException e) {
               this.outputMessage(view, "No ratio given to down-size. \n");
             }
+          if (this.applyPendingLoad(model, view, ratio)) {
+            sc.nextLine();
+            break;
+          }
           try {
             image = model.getLayer(currentLayer);
             model.transformLayer(image, new DownSize(ratio),
@@ -294,12 +454,91 @@ public class SimpleImageProcessorController implements IImageProcessorController
           } catch (NoSuchElementException e) {
             this.outputMessage(view, "Arguments missing to create checkerboard. \n");
           }
-          image = new PPMImage(tileSize, numTiles, color1, color2);
+          image = new PackedImage(tileSize, numTiles, color1, color2);
           image.setName(model.getLayer(currentLayer).getName());
           model.replaceLayer(model.getLayer(currentLayer), image);
           this.outputMessage(view, "Checkerboard image has been created. \n");
           sc.nextLine();
           break;
+        case "colormode":
+          switch (sc.nextLine().trim().toLowerCase()) {
+            case "fused":
+              this.fuseColors = true;
+              this.outputMessage(view, "Color transformations will be fused. \n");
+              break;
+            case "strict":
+              this.fuseColors = false;
+              this.outputMessage(view, "Color transformations will be applied one by one. \n");
+              break;
+            default:
+              this.outputMessage(view, "Unrecognized color mode. \n");
+              break;
+          }
+          break;
+        case "layermode":
+          switch (sc.nextLine().trim().toLowerCase()) {
+            case "lazy":
+              model.setLazy(true);
+              this.outputMessage(view, "Transformed layers will be computed when needed. \n");
+              break;
+            case "eager":
+              model.setLazy(false);
+              this.outputMessage(view, "Transformed layers will be computed right away. \n");
+              break;
+            default:
+              this.outputMessage(view, "Unrecognized layer mode. \n");
+              break;
+          }
+          break;
+        case "cache":
+          String size = sc.nextLine().trim();
+          if (size.isEmpty()) {
+            this.outputMessage(view, "Result cache: " + model.getCacheHits() + " hits, "
+                + model.getCacheMisses() + " misses. \n");
+            break;
+          }
+          try {
+            long megabytes = Long.parseLong(size);
+            if (megabytes > Long.MAX_VALUE >> 20) {
+              throw new IllegalArgumentException("Cache size too large.");
+            }
+            model.setCacheBudget(megabytes << 20);
+            this.outputMessage(view, "Result cache set to " + megabytes + " MB. \n");
+          } catch (IllegalArgumentException e) {
+            this.outputMessage(view, "Unrecognized cache size. \n");
+          }
+          break;
+        case "memory":
+          this.outputMessage(view, "Layers hold " + toMegabytes(model.getPixelBytes())
+              + " MB of pixels, " + toMegabytes(model.getSharedBytes()) + " MB of them shared. \n");
+          sc.nextLine();
+          break;
+        case "undo":
+        case "redo":
+          try {
+            if (input.equals("undo") ? model.undo() : model.redo()) {
+              this.outputMessage(view, input.equals("undo") ? "Change successfully undone. \n"
+                  : "Change successfully redone. \n");
+            } else {
+              this.outputMessage(view, "Nothing to " + input + ". \n");
+            }
+          } catch (IllegalArgumentException e) {
+            this.outputMessage(view, "Failed to " + input + ". \n");
+          }
+          sc.nextLine();
+          break;
+        case "history":
+          try {
+            long megabytes = Long.parseLong(sc.nextLine().trim());
+            if (megabytes > Long.MAX_VALUE >> 20) {
+              throw new IllegalArgumentException("History size too large.");
+            }
+            model.setHistoryBudget(megabytes << 20);
+            this.outputMessage(view, "History set to " + megabytes + " MB in memory. \n");
+          } catch (IllegalArgumentException e) {
+            this.outputMessage(view, "Unrecognized history size. \n");
+          }
+          break;
         case "close":
           this.outputMessage(view, "Closing... \n");
           sc.close();
@@ -310,6 +549,170 @@ public class SimpleImageProcessorController implements IImageProcessorController
           break;
       }
     }
+    this.applyPendingColor(model);
+    this.applyPendingLoad(model, view, 0);
+  }
+
+  // applies a color transformation to the layer, or fuses it with the pending one in fused mode
+  private void applyColor(IImageProcessor model, IImage layer, KernelMatrix kernel,
+      String layerName) throws IllegalArgumentException {
+    if (!this.fuseColors) {
+      model.transformLayer(layer, new ColorTransform(), kernel, true, layerName);
+      return;
+    }
+    if (this.pendingColor != null && !layerName.equals(this.pendingLayer)) {
+      this.applyPendingColor(model);
+    }
+    if (this.pendingColor == null) {
+      this.pendingColor = kernel;
+    } else {
+      this.pendingColor = ColorTransform.fuse(this.pendingColor, kernel);
+    }
+    this.pendingLayer = layerName;
+  }
+
+  private void applyPendingColor(IImageProcessor model) {
+    if (this.pendingColor == null) {
+      return;
+    }
+    KernelMatrix kernel = this.pendingColor;
+    this.pendingColor = null;
+    model.transformLayer(model.getLayer(this.pendingLayer), new ColorTransform(), kernel, true,
+        this.pendingLayer);
+  }
+
+  // loads the held back file, reading only the pixels needed when it is about to be down-sized by
+  // the given ratio, and returns true if it was down-sized as well
+  private boolean applyPendingLoad(IImageProcessor model, IImageProcessorView view,
+      double ratio) {
+    if (this.pendingLoadFile == null) {
+      return false;
+    }
+    String fileName = this.pendingLoadFile;
+    String layerName = this.pendingLoadLayer;
+    this.pendingLoadFile = null;
+    int width = 0;
+    int height = 0;
+    IImage image = null;
+    try {
+      if (ratio > 0 && ratio < 1) {
+        ImageCodec codec = this.codecs.forFile(fileName, this.pendingLoadExtension);
+        Rectangle region = new Rectangle(codec.readSize(fileName));
+        if (this.pendingLoadRegion != null) {
+          region = region.intersection(this.pendingLoadRegion);
+        }
+        width = (int) Math.round(region.width * ratio);
+        height = (int) Math.round(region.height * ratio);
+
+        // every ratio-th pixel is read, which leaves at least as many pixels as the down-size
+        // keeps, and the rest of the way is down-sized as usual
+        if (width > 0 && height > 0) {
+          image = codec.loadImage(fileName, region, (int) Math.floor(1 / ratio + 1e-9));
+        }
+      }
+      if (image == null) {
+        width = 0;
+        image = this.readImage(fileName, this.pendingLoadExtension, this.pendingLoadRegion, 1);
+      }
+      image.setName(layerName);
+      model.replaceLayer(model.getLayer(layerName), image);
+      this.outputMessage(view, "Layer successfully loaded. \n");
+    } catch (IllegalArgumentException e) {
+      this.outputMessage(view, "Failed to load. \n");
+      return false;
+    }
+    if (width == 0) {
+      return false;
+    }
+    if (image.getWidth() != width || image.getHeight() != height) {
+      model.transformLayer(model.getLayer(layerName), new DownSize(width, height),
+          DefaultKernel.BLANK.getDefaultKernel(), true, layerName);
+    }
+    this.outputMessage(view, "Downsize successfully applied. \n");
+    return true;
+  }
+
+  // streams the input file through the steps given in the options into the output file, holding
+  // only a few rows of the image in memory at a time
+  private void streamImage(String inputFile, String outputFile, String[] options)
+      throws IllegalArgumentException {
+    List<ITransform> transforms = new ArrayList<>();
+    List<KernelMatrix> kernels = new ArrayList<>();
+    boolean binary = false;
+    int i = 0;
+    if (options[0].equals("binary") || options[0].equals("ascii")) {
+      binary = findBinary(options[i++]);
+    }
+    for (; i < options.length; i++) {
+      String step = options[i];
+      switch (step) {
+        case "blur":
+        case "sharpen":
+          EdgeMode edgeMode = EdgeMode.ZERO;
+          if (i + 1 < options.length && !STREAM_STEPS.contains(options[i + 1])) {
+            edgeMode = findEdgeMode(options[++i]);
+          }
+          transforms.add(new Filter(edgeMode));
+          kernels.add(step.equals("blur") ? DefaultKernel.BLUR.getDefaultKernel()
+              : DefaultKernel.SHARPEN.getDefaultKernel());
+          break;
+        case "greyscale":
+        case "sepia":
+          KernelMatrix kernel = step.equals("greyscale")
+              ? DefaultKernel.GREYSCALE.getDefaultKernel()
+              : DefaultKernel.SEPIA.getDefaultKernel();
+          int last = transforms.size() - 1;
+          if (this.fuseColors && last >= 0 && transforms.get(last) instanceof ColorTransform) {
+            kernels.set(last, ColorTransform.fuse(kernels.get(last), kernel));
+          } else {
+            transforms.add(new ColorTransform());
+            kernels.add(kernel);
+          }
+          break;
+        default:
+          throw new IllegalArgumentException("Stream step not found.");
+      }
+    }
+    TransformChain chain = new TransformChain(transforms, kernels);
+    if (!chain.canStream()) {
+      throw new IllegalArgumentException("Transform cannot be streamed.");
+    }
+
+    String[] inputParts = inputFile.split("\\.");
+    String[] outputParts = outputFile.split("\\.");
+    String extension = outputParts[outputParts.length - 1].toLowerCase();
+    ImageCodec input = this.codecs.forFile(inputFile,
+        inputParts[inputParts.length - 1].toLowerCase());
+
+    // the rows are written to a file next to the output, which only takes the place of the output
+    // once every row is written, so a failed stream leaves the output as it was
+    Path target = Paths.get(outputFile).toAbsolutePath();
+    Path temp;
+    try {
+      if (Files.exists(target) && Files.isSameFile(Paths.get(inputFile), target)) {
+        throw new IllegalArgumentException("Cannot stream a file into itself.");
+      }
+      temp = Files.createTempFile(target.getParent(), ".stream", "." + extension);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + outputFile + " could not be written.");
+    }
+    try {
+      try (IRowReader reader = input.openRows(inputFile);
+          IRowWriter writer = this.codecs.forExtension(extension).createRows(temp.toString(),
+              extension, binary, reader.getWidth(), reader.getHeight())) {
+        chain.stream(reader, writer);
+      }
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("File " + outputFile + " could not be written.");
+    } finally {
+      try {
+        Files.deleteIfExists(temp);
+      } catch (IOException e) {
+        System.err.println("Temporary file " + temp + " could not be deleted.");
+      }
+    }
   }
 
   private void outputMessage(IImageProcessorView view, String message) {
@@ -320,17 +723,118 @@ public class SimpleImageProcessorController implements IImageProcessorController
     }
   }
 
-  private FileType findFileType(String fileType) throws IllegalArgumentException {
-    switch (fileType) {
-      case "ppm":
-        return FileType.PPM;
-      case "jpg":
-      case "jpeg":
-        return FileType.JPEG;
-      case "png":
-        return FileType.PNG;
+  // a number of bytes in megabytes, to one decimal place
+  private static String toMegabytes(long bytes) {
+    return String.format(Locale.ROOT, "%.1f", bytes / (double) (1 << 20));
+  }
+
+  // checks that the load options only hold a scale, a region and a project layer, each followed by
+  // its values, and the verbose flag
+  private static void checkLoadOptions(String[] options) throws IllegalArgumentException {
+    int i = options.length == 1 && options[0].isEmpty() ? 1 : 0;
+    while (i < options.length) {
+      switch (options[i].toLowerCase()) {
+        case "scale":
+        case "layer":
+          i += 2;
+          break;
+        case "region":
+          i += 5;
+          break;
+        case "verbose":
+          i++;
+          break;
+        default:
+          throw new IllegalArgumentException("Load option not found.");
+      }
+    }
+  }
+
+  // finds the scale given after "scale" in the load options, or 0 if there is none
+  private static double findScale(String[] options) throws IllegalArgumentException {
+    for (int i = 0; i < options.length; i++) {
+      if (options[i].equalsIgnoreCase("scale")) {
+        if (i + 1 >= options.length) {
+          throw new IllegalArgumentException("No scale given.");
+        }
+        double scale = Double.parseDouble(options[i + 1]);
+        if (scale <= 0 || scale > 1) {
+          throw new IllegalArgumentException("Scale must be between 0 and 1.");
+        }
+        return scale;
+      }
+    }
+    return 0;
+  }
+
+  // finds the region given after "region" in the load options, or null if there is none
+  private static Rectangle findRegion(String[] options) throws IllegalArgumentException {
+    for (int i = 0; i < options.length; i++) {
+      if (options[i].equalsIgnoreCase("region")) {
+        if (i + 4 >= options.length) {
+          throw new IllegalArgumentException("Region needs x, y, width and height.");
+        }
+        Rectangle region = new Rectangle(Integer.parseInt(options[i + 1]),
+            Integer.parseInt(options[i + 2]), Integer.parseInt(options[i + 3]),
+            Integer.parseInt(options[i + 4]));
+        if (region.isEmpty()) {
+          throw new IllegalArgumentException("Region must have a positive size.");
+        }
+        return region;
+      }
+    }
+    return null;
+  }
+
+  // finds the name of the project layer given after "layer" in the load options, or null if there
+  // is none
+  private static String findProjectLayer(String[] options) throws IllegalArgumentException {
+    for (int i = 0; i < options.length; i++) {
+      if (options[i].equalsIgnoreCase("layer")) {
+        if (i + 1 >= options.length) {
+          throw new IllegalArgumentException("No layer given.");
+        }
+        return options[i + 1];
+      }
+    }
+    return null;
+  }
+
+  // whether the load options ask for the contents of a PPM or PGM file to be printed
+  private static boolean findVerbose(String[] options) {
+    for (String option : options) {
+      if (option.equalsIgnoreCase("verbose")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean findBinary(String option) throws IllegalArgumentException {
+    switch (option) {
+      case "":
+      case "ascii":
+        return false;
+      case "binary":
+        return true;
+      default:
+        throw new IllegalArgumentException("Save option not found.");
+    }
+  }
+
+  private EdgeMode findEdgeMode(String edgeMode) throws IllegalArgumentException {
+    switch (edgeMode) {
+      case "":
+      case "zero":
+        return EdgeMode.ZERO;
+      case "clamp":
+        return EdgeMode.CLAMP;
+      case "mirror":
+        return EdgeMode.MIRROR;
+      case "wrap":
+        return EdgeMode.WRAP;
       default:
-        throw new IllegalArgumentException("FileType not found.");
+        throw new IllegalArgumentException("Edge mode not found.");
     }
   }
 
@@ -368,35 +872,52 @@ public class SimpleImageProcessorController implements IImageProcessorController
     if (filename == null) {
       throw new IllegalArgumentException("Filename can't be null.");
     }
-    String imageString;
-    IOFile ioFileType;
-    if (fileType == FileType.PPM) {
-      ioFileType = new IOPPMFile();
-    } else {
-      ioFileType = new AbstractIOFile();
+    if (fileType == null) {
+      throw new IllegalArgumentException("FileType can't be null.");
+    }
+    return this.codecs.loadImage(filename, fileType.toString());
+  }
+
+  // reads every subsampling-th column and row of a region of the image file, with the codec
+  // registered for its contents or its extension
+  private IImage readImage(String filename, String extension, Rectangle region, int subsampling)
+      throws IllegalArgumentException {
+    if (region == null && subsampling == 1) {
+      return this.codecs.loadImage(filename, extension);
     }
-    imageString = ioFileType.readImage(filename);
-    return new PPMImage(imageString);
+    return this.codecs.loadImage(filename, extension, region, subsampling);
   }
 
   @Override
   public void exportImage(IImage image, FileType fileType, String fileName, int width, int height)
       throws IllegalArgumentException {
+    if (fileType == null) {
+      throw new IllegalArgumentException("FileType can't be null.");
+    }
+    this.exportImage(image, fileType.toString(), fileName, false);
+  }
+
+  // exports the image with the codec registered for the extension, writing PPM and PGM files as
+  // binary files if requested
+  private void exportImage(IImage image, String extension, String fileName, boolean binary)
+      throws IllegalArgumentException {
     if (image == null || fileName == null) {
       throw new IllegalArgumentException("Fields can't be null.");
     }
-    String fileString = image.sendToString();
-    IOFile ioFileType;
-    if (fileType == FileType.PPM) {
-      ioFileType = new IOPPMFile();
-    } else {
-      ioFileType = new AbstractIOFile();
-    }
-    ioFileType.exportImage(image, fileString, fileName, fileType, width, height);
+    this.codecs.saveImage(image, fileName, extension, binary);
   }
 
   @Override
   public void saveMultiLayer(String newDirectory, FileType fileType, int width, int height) {
+    if (fileType == null) {
+      throw new IllegalArgumentException("FileType can't be null.");
+    }
+    this.saveMultiLayer(newDirectory, fileType.toString(), false);
+  }
+
+  // saves every layer with the codec registered for the extension, writing PPM and PGM files as
+  // binary files if requested
+  private void saveMultiLayer(String newDirectory, String extension, boolean binary) {
     new File(newDirectory).mkdir();
     StringBuilder text = new StringBuilder();
     text.append("Images that can be found in ").append(newDirectory).append(":\n");
@@ -409,10 +930,14 @@ public class SimpleImageProcessorController implements IImageProcessorController
 
     ArrayList<IImage> images = this.model.getAllImages();
     for (IImage image : images) {
-      this.exportImage(image, fileType,
-          newDirectory + "/" + image.getName() + "." + fileType.toString(), width, height);
+      try {
+        this.exportImage(image, extension, newDirectory + "/" + image.getName() + "." + extension,
+            binary);
+      } catch (IllegalArgumentException e) {
+        System.err.println(e.getMessage());
+      }
       text.append(newDirectory).append("/").append(image.getName()).append(".")
-          .append(fileType.toString()).append("\n");
+          .append(extension).append("\n");
     }
     try {
       output.write(text.toString().getBytes());
@@ -0,0 +1,121 @@
+package model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lookup tables for applying a 3x3 color transformation kernel to packed pixels. Each new channel
+ * value is the sum of three products of a kernel value with an input channel value, so each of
+ * the nine kernel values gets a table of its products with all 256 possible channel values.
+ * Applying the kernel to a pixel then takes nine lookups and six additions instead of nine
+ * multiplications.<p>The tables hold the exact same double products that would otherwise be
+ * computed, and they are added in the same order, so the rounded results are identical.</p>
+ * <p>Tables are cached by the values of the kernel, so applying the same color transformation to
+ * many images only builds them once.</p>
+ */
+final class ColorTable {
+
+  private static final int CACHE_SIZE = 16;
+  private static final Map<KernelKey, ColorTable> TABLES =
+      new LinkedHashMap<KernelKey, ColorTable>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<KernelKey, ColorTable> eldest) {
+          return this.size() > CACHE_SIZE;
+        }
+      };
+
+  // products for each new channel, from the red, green and blue input channels
+  private final double[] redFromR;
+  private final double[] redFromG;
+  private final double[] redFromB;
+  private final double[] greenFromR;
+  private final double[] greenFromG;
+  private final double[] greenFromB;
+  private final double[] blueFromR;
+  private final double[] blueFromG;
+  private final double[] blueFromB;
+
+  private ColorTable(double[][] kernel) {
+    this.redFromR = products(kernel[0][0]);
+    this.redFromG = products(kernel[1][0]);
+    this.redFromB = products(kernel[2][0]);
+    this.greenFromR = products(kernel[0][1]);
+    this.greenFromG = products(kernel[1][1]);
+    this.greenFromB = products(kernel[2][1]);
+    this.blueFromR = products(kernel[0][2]);
+    this.blueFromG = products(kernel[1][2]);
+    this.blueFromB = products(kernel[2][2]);
+  }
+
+  /**
+   * Gets the tables for the current values of the given 3x3 kernel, building them if they are not
+   * already cached.
+   *
+   * @param kernel the color transformation kernel
+   * @return the tables for the kernel
+   */
+  static ColorTable of(KernelMatrix kernel) {
+    double[][] values = kernel.getKernel();
+    KernelKey key = new KernelKey(values, 0);
+    synchronized (TABLES) {
+      ColorTable table = TABLES.get(key);
+      if (table == null) {
+        table = new ColorTable(values);
+        TABLES.put(key, table);
+      }
+      return table;
+    }
+  }
+
+  private static double[] products(double value) {
+    double[] products = new double[256];
+    for (int i = 0; i < 256; i++) {
+      products[i] = value * i;
+    }
+    return products;
+  }
+
+  /**
+   * Applies the kernel to a range of pixels of the source raster.
+   *
+   * @param source the packed source raster
+   * @param result the packed result raster
+   * @param from   the index of the first pixel to transform
+   * @param to     the index after the last pixel to transform
+   */
+  void apply(int[] source, int[] result, int from, int to) {
+    this.apply(source, from, result, from, to - from);
+  }
+
+  /**
+   * Applies the kernel to a run of pixels of the source raster, writing them to a run of the result
+   * raster that may start at a different index.
+   *
+   * @param source     the packed source raster
+   * @param sourceFrom the index of the first pixel to transform
+   * @param result     the packed result raster
+   * @param resultFrom the index the first transformed pixel is written to
+   * @param length     the number of pixels to transform
+   */
+  void apply(int[] source, int sourceFrom, int[] result, int resultFrom, int length) {
+    double[] redFromR = this.redFromR;
+    double[] redFromG = this.redFromG;
+    double[] redFromB = this.redFromB;
+    double[] greenFromR = this.greenFromR;
+    double[] greenFromG = this.greenFromG;
+    double[] greenFromB = this.greenFromB;
+    double[] blueFromR = this.blueFromR;
+    double[] blueFromG = this.blueFromG;
+    double[] blueFromB = this.blueFromB;
+    for (int i = 0; i < length; i++) {
+      int rgb = source[sourceFrom + i];
+      int r = (rgb >> 16) & 0xFF;
+      int g = (rgb >> 8) & 0xFF;
+      int b = rgb & 0xFF;
+      int newR = (int) Math.round(redFromR[r] + redFromG[g] + redFromB[b]);
+      int newG = (int) Math.round(greenFromR[r] + greenFromG[g] + greenFromB[b]);
+      int newB = (int) Math.round(blueFromR[r] + blueFromG[g] + blueFromB[b]);
+      result[resultFrom + i] = PackedImage.pack(newR, newG, newB);
+    }
+  }
+}
@@ -16,12 +16,68 @@ package model;
  */
 public class ColorTransform implements ITransform {
 
+  private final ParallelExecutor executor;
+
   /**
    * Constructs a color transformation object. Used in order to dynamically dispatch the application
    * of image transformations to this specific class.
    */
   public ColorTransform() {
-    // empty constructor: creates ColorTransform object with no fields needed
+    this(ParallelExecutor.common());
+  }
+
+  /**
+   * Constructs a color transformation object that splits its work between threads through the
+   * given executor. The result does not depend on the executor.
+   *
+   * @param executor how the rows of the result are split between threads
+   * @throws IllegalArgumentException if the executor is null
+   */
+  public ColorTransform(ParallelExecutor executor) throws IllegalArgumentException {
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor cannot be null.");
+    }
+    this.executor = executor;
+  }
+
+  /**
+   * Fuses two color transformation kernels into a single kernel that applies the first and then
+   * the second in one pass over an image. A chain of any length can be fused by fusing its kernels
+   * one after another.<p>The fused kernel is exact for the unrounded color values, but it is not
+   * always identical to applying the two kernels separately. Applied separately, the first result
+   * is rounded and clamped to 0-255 before the second kernel sees it, while the fused kernel rounds
+   * and clamps only once at the end. Values are therefore usually off by at most one, but can
+   * differ more where the first kernel pushes a channel past 0 or 255.</p>
+   *
+   * @param first  the kernel applied first
+   * @param second the kernel applied second
+   * @return a new kernel equivalent to applying first and then second
+   * @throws IllegalArgumentException if either kernel is null or not 3x3 in size
+   */
+  public static KernelMatrix fuse(KernelMatrix first, KernelMatrix second)
+      throws IllegalArgumentException {
+    if (first == null || second == null) {
+      throw new IllegalArgumentException("Kernels cannot be null.");
+    }
+    if (first.getKernel().length != 3 || second.getKernel().length != 3) {
+      throw new IllegalArgumentException("Kernel must be 3x3 in size.");
+    }
+    double[][] firstArr = first.getKernel();
+    double[][] secondArr = second.getKernel();
+    KernelMatrix fused = new KernelMatrix(3);
+
+    // new channel y takes secondArr[x][y] of channel x of the first result, which in turn takes
+    // firstArr[z][x] of each original channel z
+    for (int z = 0; z < 3; z++) {
+      for (int y = 0; y < 3; y++) {
+        double value = 0;
+        for (int x = 0; x < 3; x++) {
+          value += firstArr[z][x] * secondArr[x][y];
+        }
+        fused.setValue(new Posn(z, y), value);
+      }
+    }
+    return fused;
   }
 
   @Override
@@ -36,16 +92,21 @@ public class ColorTransform implements ITransform {
       throw new IllegalArgumentException("Kernel must be 3x3 in size.");
     }
 
-    IPixel[][] newImagePixels = new IPixel[image.getPixels().length][image
-        .getPixels()[0].length];
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] source = image.getRaster();
+    int[] result = new int[source.length];
 
-    // iterates through all values in 2D array
-    for (int i = 0; i < image.getPixels()[0].length; i++) {
-      for (int j = 0; j < image.getPixels().length; j++) {
-        IPixel pixel = image.getPixels()[j][i];
-        newImagePixels[j][i] = pixel.applyKernelColor(kernel);
-      }
-    }
-    return image.getImage(newImagePixels);
+    // each row of the kernel creates one new channel value, looked up from precomputed products
+    ColorTable table = ColorTable.of(kernel);
+    this.executor.forEachBand(width, height,
+        (firstRow, lastRow) -> table.apply(source, result, firstRow * width, lastRow * width));
+    return image.getImage(width, height, result);
+  }
+
+  @Override
+  public IImage apply(IImage image, KernelMatrix kernel) throws IllegalArgumentException {
+    // a color transformation always produces all three channels at once
+    return this.apply(image, kernel, Channel.RED);
   }
 }
@@ -0,0 +1,373 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Applies a kernel to a packed raster by sliding it over a small ring of row buffers. Each source
+ * row is split into one contiguous buffer per channel, padded on both sides by the radius of the
+ * kernel, so the kernel can be walked over the buffers without any bounds checks or per-pixel
+ * allocation.<p>The product of every kernel value with every possible 8-bit channel value is
+ * rounded ahead of time into a lookup table. A new channel value is then the sum of the looked up
+ * terms, which is exactly the per-term rounding done by {@link IPixel#applyKernelFilter}.</p>
+ * <p>Neighbors outside of the image are resolved through an {@link EdgeMode} only while a row is
+ * loaded into the ring: rows above or below the image are substituted whole, and the padding on
+ * either side of a row is filled from the columns chosen by the edge mode. The interior of the
+ * image therefore needs no special handling at all.</p>
+ * <p>A separable kernel can instead be applied as a horizontal pass followed by a vertical pass,
+ * which needs 2N rather than N*N multiplications per channel for an N by N kernel. That path sums
+ * the unrounded products and rounds once per channel, so its results can differ by a small amount
+ * from the per-term rounding of the direct path. Large kernels can also be handed to an
+ * {@link FftConvolution}, which rounds in the same way.</p>
+ */
+class ConvolutionEngine {
+
+  private final int size;
+  private final int radius;
+  private final int[] terms;
+  private final double[] horizontal;
+  private final double[] vertical;
+  private final FftConvolution fft;
+  private final EdgeMode edgeMode;
+  private final ParallelExecutor executor;
+
+  /**
+   * Creates an engine for the given kernel. The kernel values are read once here, so later changes
+   * to the kernel are not seen by this engine.
+   *
+   * @param kernel   the kernel to be applied by this engine
+   * @param edgeMode how neighbors outside of the image are treated
+   * @param strategy how the kernel is applied, one of DIRECT, SEPARABLE (which requires the kernel
+   *                 to be separable) or FFT
+   * @param executor how the rows of the result are split between threads
+   */
+  ConvolutionEngine(KernelMatrix kernel, EdgeMode edgeMode, ConvolutionStrategy strategy,
+      ParallelExecutor executor) {
+    this.edgeMode = edgeMode;
+    this.executor = executor;
+    double[][] filter = kernel.getKernel();
+    this.size = filter.length;
+    this.radius = this.size / 2;
+    this.fft = strategy == ConvolutionStrategy.FFT ? new FftConvolution(kernel, edgeMode) : null;
+    if (strategy == ConvolutionStrategy.SEPARABLE) {
+      double[][] factors = kernel.getSeparableFactors();
+      this.horizontal = factors[0].clone();
+      this.vertical = factors[1].clone();
+    } else {
+      this.horizontal = null;
+      this.vertical = null;
+    }
+    if (strategy != ConvolutionStrategy.DIRECT) {
+      this.terms = null;
+      return;
+    }
+    this.terms = new int[this.size * this.size * 256];
+
+    // terms are stored row by row of the kernel, 256 rounded products per kernel value
+    for (int ky = 0; ky < this.size; ky++) {
+      for (int kx = 0; kx < this.size; kx++) {
+        int base = (ky * this.size + kx) << 8;
+        for (int value = 0; value < 256; value++) {
+          this.terms[base + value] = (int) Math.round(filter[kx][ky] * value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies the kernel to all three channels of the source raster.
+   *
+   * @param source the packed source raster in row-major order
+   * @param width  the width of the raster
+   * @param height the height of the raster
+   * @return the packed result raster
+   */
+  int[] convolve(int[] source, int width, int height) {
+    return this.convolve(source, width, height, true, true, true);
+  }
+
+  /**
+   * Applies the kernel to a single channel of the source raster. The other two channels are copied
+   * from the source unchanged.
+   *
+   * @param source the packed source raster in row-major order
+   * @param width  the width of the raster
+   * @param height the height of the raster
+   * @param color  the channel to apply the kernel to
+   * @return the packed result raster
+   * @throws IllegalArgumentException if the channel is not a valid 8-bit color channel
+   */
+  int[] convolve(int[] source, int width, int height, Channel color)
+      throws IllegalArgumentException {
+    switch (color) {
+      case RED:
+        return this.convolve(source, width, height, true, false, false);
+      case GREEN:
+        return this.convolve(source, width, height, false, true, false);
+      case BLUE:
+        return this.convolve(source, width, height, false, false, true);
+      default:
+        throw new IllegalArgumentException("Must be a valid 8-bit color channel.");
+    }
+  }
+
+  // each band reads the rows it needs around its own rows straight from the source, so bands share
+  // no state other than the result, of which each writes only its own rows
+  private int[] convolve(int[] source, int width, int height, boolean red, boolean green,
+      boolean blue) {
+    int[] result = new int[width * height];
+    RowLayout rows = row -> row * width;
+    this.executor.forEachBand(width, height, (firstRow, lastRow) -> {
+      if (this.fft != null) {
+        this.fft.convolve(source, width, height, red, green, blue, firstRow, lastRow, result);
+      } else {
+        this.convolveRows(source, rows, width, height, red, green, blue, firstRow, lastRow,
+            result, rows);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Checks whether this engine applies its kernel in the frequency domain, which can only be done
+   * for whole images.
+   *
+   * @return true if this engine uses an FFT convolution
+   */
+  boolean isFft() {
+    return this.fft != null;
+  }
+
+  /**
+   * Gets the distance from the middle of the kernel to its edge.
+   *
+   * @return the radius of the kernel
+   */
+  int radius() {
+    return this.radius;
+  }
+
+  /**
+   * Applies the kernel to the selected channels of a range of rows, reading and writing rows
+   * through the given layouts rather than assuming whole rasters. The source must hold every row
+   * that the edge mode of this engine reads for those rows, which may lie on the far side of the
+   * image. This can not be used by an engine that uses an FFT convolution.
+   *
+   * @param source     the packed source rows
+   * @param sourceRows where each row of the image starts within the source
+   * @param width      the width of the image
+   * @param height     the height of the image
+   * @param red        true to apply the kernel to the red channel
+   * @param green      true to apply the kernel to the green channel
+   * @param blue       true to apply the kernel to the blue channel
+   * @param firstRow   the first row of the result to write
+   * @param lastRow    the row after the last row of the result to write
+   * @param result     the packed result rows
+   * @param resultRows where each row of the image starts within the result
+   */
+  void convolveRows(int[] source, RowLayout sourceRows, int width, int height, boolean red,
+      boolean green, boolean blue, int firstRow, int lastRow, int[] result,
+      RowLayout resultRows) {
+    if (this.terms == null) {
+      this.convolveSeparable(source, sourceRows, width, height, red, green, blue, firstRow,
+          lastRow, result, resultRows);
+    } else {
+      this.convolveDirect(source, sourceRows, width, height, red, green, blue, firstRow, lastRow,
+          result, resultRows);
+    }
+  }
+
+  private void convolveDirect(int[] source, RowLayout sourceRows, int width, int height,
+      boolean red, boolean green, boolean blue, int firstRow, int lastRow, int[] result,
+      RowLayout resultRows) {
+    int paddedWidth = width + 2 * this.radius;
+
+    // ring of padded row buffers holding the rows currently under the kernel, one per channel
+    int[][] ringR = new int[this.size][paddedWidth];
+    int[][] ringG = new int[this.size][paddedWidth];
+    int[][] ringB = new int[this.size][paddedWidth];
+    int[][] rowsR = new int[this.size][];
+    int[][] rowsG = new int[this.size][];
+    int[][] rowsB = new int[this.size][];
+
+    int[] padding = this.padding(width);
+    for (int sy = firstRow - this.radius; sy < firstRow + this.radius; sy++) {
+      int slot = Math.floorMod(sy, this.size);
+      this.loadRow(source, sourceRows, width, height, sy, padding, ringR[slot], ringG[slot],
+          ringB[slot]);
+    }
+
+    for (int y = firstRow; y < lastRow; y++) {
+      int next = Math.floorMod(y + this.radius, this.size);
+      this.loadRow(source, sourceRows, width, height, y + this.radius, padding, ringR[next],
+          ringG[next], ringB[next]);
+      for (int ky = 0; ky < this.size; ky++) {
+        int slot = Math.floorMod(y - this.radius + ky, this.size);
+        rowsR[ky] = ringR[slot];
+        rowsG[ky] = ringG[slot];
+        rowsB[ky] = ringB[slot];
+      }
+
+      int sourceStart = sourceRows.rowStart(y);
+      int resultStart = resultRows.rowStart(y);
+      for (int x = 0; x < width; x++) {
+        int newR = 0;
+        int newG = 0;
+        int newB = 0;
+        int term = 0;
+        for (int ky = 0; ky < this.size; ky++) {
+          int[] rowR = rowsR[ky];
+          int[] rowG = rowsG[ky];
+          int[] rowB = rowsB[ky];
+          for (int kx = 0; kx < this.size; kx++) {
+            newR += this.terms[term | rowR[x + kx]];
+            newG += this.terms[term | rowG[x + kx]];
+            newB += this.terms[term | rowB[x + kx]];
+            term += 256;
+          }
+        }
+        int rgb = source[sourceStart + x];
+        int r = red ? PackedImage.clamp(newR) : (rgb >> 16) & 0xFF;
+        int g = green ? PackedImage.clamp(newG) : (rgb >> 8) & 0xFF;
+        int b = blue ? PackedImage.clamp(newB) : rgb & 0xFF;
+        result[resultStart + x] = (r << 16) | (g << 8) | b;
+      }
+    }
+  }
+
+  private void convolveSeparable(int[] source, RowLayout sourceRows, int width, int height,
+      boolean red, boolean green, boolean blue, int firstRow, int lastRow, int[] result,
+      RowLayout resultRows) {
+    int[] padding = this.padding(width);
+    int[] rowR = new int[width + 2 * this.radius];
+    int[] rowG = new int[width + 2 * this.radius];
+    int[] rowB = new int[width + 2 * this.radius];
+
+    // ring of horizontally filtered rows, with the rows outside of the image marked as zero
+    double[][] ringR = new double[this.size][width];
+    double[][] ringG = new double[this.size][width];
+    double[][] ringB = new double[this.size][width];
+    boolean[] zeroRows = new boolean[this.size];
+    for (int sy = firstRow - this.radius; sy < firstRow + this.radius; sy++) {
+      this.filterRow(source, sourceRows, width, height, sy, padding, rowR, rowG, rowB, ringR,
+          ringG, ringB, zeroRows);
+    }
+
+    double[] sumR = new double[width];
+    double[] sumG = new double[width];
+    double[] sumB = new double[width];
+    for (int y = firstRow; y < lastRow; y++) {
+      this.filterRow(source, sourceRows, width, height, y + this.radius, padding, rowR, rowG,
+          rowB, ringR, ringG, ringB, zeroRows);
+      Arrays.fill(sumR, 0);
+      Arrays.fill(sumG, 0);
+      Arrays.fill(sumB, 0);
+      for (int ky = 0; ky < this.size; ky++) {
+        int slot = Math.floorMod(y - this.radius + ky, this.size);
+        if (zeroRows[slot]) {
+          continue;
+        }
+        double weight = this.vertical[ky];
+        double[] filteredR = ringR[slot];
+        double[] filteredG = ringG[slot];
+        double[] filteredB = ringB[slot];
+        for (int x = 0; x < width; x++) {
+          sumR[x] += weight * filteredR[x];
+          sumG[x] += weight * filteredG[x];
+          sumB[x] += weight * filteredB[x];
+        }
+      }
+
+      int sourceStart = sourceRows.rowStart(y);
+      int resultStart = resultRows.rowStart(y);
+      for (int x = 0; x < width; x++) {
+        int rgb = source[sourceStart + x];
+        int r = red ? PackedImage.clamp((int) Math.round(sumR[x])) : (rgb >> 16) & 0xFF;
+        int g = green ? PackedImage.clamp((int) Math.round(sumG[x])) : (rgb >> 8) & 0xFF;
+        int b = blue ? PackedImage.clamp((int) Math.round(sumB[x])) : rgb & 0xFF;
+        result[resultStart + x] = (r << 16) | (g << 8) | b;
+      }
+    }
+  }
+
+  // applies the horizontal kernel to the source row standing in for row sy, into its ring slot
+  private void filterRow(int[] source, RowLayout sourceRows, int width, int height, int sy,
+      int[] padding, int[] rowR, int[] rowG, int[] rowB, double[][] ringR, double[][] ringG,
+      double[][] ringB, boolean[] zeroRows) {
+    int slot = Math.floorMod(sy, this.size);
+    zeroRows[slot] = !this.loadRow(source, sourceRows, width, height, sy, padding, rowR, rowG,
+        rowB);
+    if (zeroRows[slot]) {
+      return;
+    }
+    double[] filteredR = ringR[slot];
+    double[] filteredG = ringG[slot];
+    double[] filteredB = ringB[slot];
+    for (int x = 0; x < width; x++) {
+      double newR = 0;
+      double newG = 0;
+      double newB = 0;
+      for (int kx = 0; kx < this.size; kx++) {
+        double weight = this.horizontal[kx];
+        newR += weight * rowR[x + kx];
+        newG += weight * rowG[x + kx];
+        newB += weight * rowB[x + kx];
+      }
+      filteredR[x] = newR;
+      filteredG[x] = newG;
+      filteredB[x] = newB;
+    }
+  }
+
+  // source column read into each padding column, left padding first, or -1 for none
+  private int[] padding(int width) {
+    int[] padding = new int[2 * this.radius];
+    for (int p = 0; p < this.radius; p++) {
+      padding[p] = this.edgeMode.resolve(p - this.radius, width);
+      padding[this.radius + p] = this.edgeMode.resolve(width + p, width);
+    }
+    return padding;
+  }
+
+  // splits the source row standing in for row sy into the given padded rows, returning false if
+  // there is no such row and the rows were filled with zeros instead
+  private boolean loadRow(int[] source, RowLayout sourceRows, int width, int height, int sy,
+      int[] padding, int[] rowR, int[] rowG, int[] rowB) {
+    int sourceRow = this.edgeMode.resolve(sy, height);
+    if (sourceRow == -1) {
+      Arrays.fill(rowR, 0);
+      Arrays.fill(rowG, 0);
+      Arrays.fill(rowB, 0);
+      return false;
+    }
+    int rowStart = sourceRows.rowStart(sourceRow);
+    for (int x = 0; x < width; x++) {
+      int rgb = source[rowStart + x];
+      rowR[x + this.radius] = (rgb >> 16) & 0xFF;
+      rowG[x + this.radius] = (rgb >> 8) & 0xFF;
+      rowB[x + this.radius] = rgb & 0xFF;
+    }
+    for (int p = 0; p < padding.length; p++) {
+      int column = p < this.radius ? p : width + p;
+      int rgb = padding[p] == -1 ? 0 : source[rowStart + padding[p]];
+      rowR[column] = (rgb >> 16) & 0xFF;
+      rowG[column] = (rgb >> 8) & 0xFF;
+      rowB[column] = rgb & 0xFF;
+    }
+    return true;
+  }
+
+  /**
+   * Where the rows of an image start within a packed raster, so rows can be read from and written
+   * to buffers that only hold some of the rows of the image.
+   */
+  interface RowLayout {
+
+    /**
+     * Finds the index in the raster of the first pixel of a row.
+     *
+     * @param row the row of the image
+     * @return the index of the first pixel of the row
+     */
+    int rowStart(int row);
+  }
+}
@@ -16,11 +16,17 @@ package model;
  * executing the following functions:</p><p>Based on Pixel(x,y) floating point values:
  * m=Cb(x−⌊x⌋)+Ca(⌈x⌉−x) then,n=Cd(x−⌊x⌋)+Cc(⌈x⌉−x) and finally, Cp=n(y−⌊y⌋)+m(⌈y⌉−y) where Ca-Cd
  * are the colors of the 4 surrounding pixels and Cp is the resulting channel value for the new
- * pixel.</p>
+ * pixel.</p><p>The mapped locations and their weights are computed once per column and once per
+ * row, and m and n are computed once per original row and shared by every new row that falls
+ * between the same two original rows.</p>
  */
 public class DownSize implements ITransform {
 
   private final double ratio;
+  // the size of the result, or 0 when it follows from the ratio
+  private final int width;
+  private final int height;
+  private final ParallelExecutor executor;
 
   /**
    * Constructs a downsize object. Used in order to dynamically dispatch the application of image
@@ -30,10 +36,91 @@ public class DownSize implements ITransform {
    *              non-inclusive)
    */
   public DownSize(double ratio) throws IllegalArgumentException {
+    this(ratio, ParallelExecutor.common());
+  }
+
+  /**
+   * Constructs a downsize object that splits its work between threads through the given executor.
+   * The result does not depend on the executor.
+   *
+   * @param ratio    the scale factor the image should be down-sized by (between 0 and 1 both
+   *                 non-inclusive)
+   * @param executor how the rows of the result are split between threads
+   * @throws IllegalArgumentException if the ratio is out of range or the executor is null
+   */
+  public DownSize(double ratio, ParallelExecutor executor) throws IllegalArgumentException {
     if (ratio <= 0 || ratio >= 1) {
       throw new IllegalArgumentException("ratio must be between 0 and 1, non-inclusive.");
     }
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor cannot be null.");
+    }
     this.ratio = ratio;
+    this.width = 0;
+    this.height = 0;
+    this.executor = executor;
+  }
+
+  /**
+   * Constructs a downsize object that down-sizes images to the given size rather than by a ratio.
+   *
+   * @param width  the width of the down-sized image (must be positive)
+   * @param height the height of the down-sized image (must be positive)
+   * @throws IllegalArgumentException if the width or height is not positive
+   */
+  public DownSize(int width, int height) throws IllegalArgumentException {
+    this(width, height, ParallelExecutor.common());
+  }
+
+  /**
+   * Constructs a downsize object that down-sizes images to the given size, splitting its work
+   * between threads through the given executor. The result does not depend on the executor.
+   *
+   * @param width    the width of the down-sized image (must be positive)
+   * @param height   the height of the down-sized image (must be positive)
+   * @param executor how the rows of the result are split between threads
+   * @throws IllegalArgumentException if the width or height is not positive or the executor is
+   *                                  null
+   */
+  public DownSize(int width, int height, ParallelExecutor executor)
+      throws IllegalArgumentException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height must be positive.");
+    }
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor cannot be null.");
+    }
+    this.ratio = 0;
+    this.width = width;
+    this.height = height;
+    this.executor = executor;
+  }
+
+  /**
+   * Gets the ratio this downsize scales images by.
+   *
+   * @return the ratio, or 0 if images are down-sized to a given size instead
+   */
+  double ratio() {
+    return this.ratio;
+  }
+
+  /**
+   * Gets the width this downsize gives images.
+   *
+   * @return the width of down-sized images, or 0 if it follows from the ratio
+   */
+  int width() {
+    return this.width;
+  }
+
+  /**
+   * Gets the height this downsize gives images.
+   *
+   * @return the height of down-sized images, or 0 if it follows from the ratio
+   */
+  int height() {
+    return this.height;
   }
 
   @Override
@@ -44,88 +131,149 @@ public class DownSize implements ITransform {
     }
 
     // creating down-scaled image based on size of original image
-    int originalWidth = image.getPixels().length;
-    int originalHeight = image.getPixels()[0].length;
-    int newWidth = (int) Math.round(originalWidth * this.ratio);
-    int newHeight = (int) Math.round(originalHeight * this.ratio);
-    IPixel[][] downSizeImagePixels = new IPixel[newWidth][newHeight];
+    int originalWidth = image.getWidth();
+    int originalHeight = image.getHeight();
+    int[] source = image.getRaster();
+    int newWidth = this.width;
+    int newHeight = this.height;
+    if (this.ratio != 0) {
+      newWidth = (int) Math.round(originalWidth * this.ratio);
+      newHeight = (int) Math.round(originalHeight * this.ratio);
+    } else if (newWidth > originalWidth || newHeight > originalHeight) {
+      throw new IllegalArgumentException("Image is smaller than the down-sized size.");
+    }
+    int[] downSizeRaster = new int[newWidth * newHeight];
 
-    for (int i = 0; i < newHeight; i++) {
-      for (int j = 0; j < newWidth; j++) {
+    // the mapped location of every column and row is worked out once for the whole image
+    Axis columns = new Axis(newWidth, originalWidth);
+    Axis rows = new Axis(newHeight, originalHeight);
 
-        // creates floating point ratios for x and y location within image
-        double ratioX = (double) j / newWidth;
-        double ratioY = (double) i / newHeight;
+    // each band of rows of the down-sized image is populated independently
+    this.executor.forEachBand(newWidth, newHeight, (firstRow, lastRow) ->
+        resampleRows(source, originalWidth, columns, rows, downSizeRaster, firstRow, lastRow));
+    return image.getImage(newWidth, newHeight, downSizeRaster);
+  }
 
-        double originalX = ratioX * originalWidth;
-        double originalY = ratioY * originalHeight;
+  @Override
+  public IImage apply(IImage image, KernelMatrix kernel) throws IllegalArgumentException {
+    // down-sizing always resamples all three channels at once
+    return this.apply(image, kernel, Channel.RED);
+  }
+
+  // populates the given rows of the down-sized raster by first interpolating the two original
+  // rows around a mapped row horizontally, then interpolating between those two vertically
+  private static void resampleRows(int[] source, int originalWidth, Axis columns, Axis rows,
+      int[] downSizeRaster, int firstRow, int lastRow) {
+    int newWidth = columns.floor.length;
+
+    // horizontally interpolated original rows above (0) and below (1) the mapped row, kept while
+    // consecutive rows map between the same original rows
+    double[][] interpolatedR = new double[2][newWidth];
+    double[][] interpolatedG = new double[2][newWidth];
+    double[][] interpolatedB = new double[2][newWidth];
+    int[] interpolatedRow = {-1, -1};
+
+    for (int i = firstRow; i < lastRow; i++) {
+      int floorRow = rows.floor[i] * originalWidth;
+      if (!rows.first[i]) {
+        if (rows.floor[i] != interpolatedRow[0] && rows.floor[i] == interpolatedRow[1]) {
+          swap(interpolatedR);
+          swap(interpolatedG);
+          swap(interpolatedB);
+          interpolatedRow[0] = interpolatedRow[1];
+          interpolatedRow[1] = -1;
+        }
+        for (int slot = 0; slot < 2; slot++) {
+          int row = slot == 0 ? rows.floor[i] : rows.ceil[i];
+          if (interpolatedRow[slot] != row) {
+            interpolateRow(source, row * originalWidth, columns, interpolatedR[slot],
+                interpolatedG[slot], interpolatedB[slot]);
+            interpolatedRow[slot] = row;
+          }
+        }
+      }
+
+      double weightFloorY = rows.weightFloor[i];
+      double weightCeilY = rows.weightCeil[i];
+      for (int j = 0; j < newWidth; j++) {
 
         // check if the mapped x and y coordinates in the 2d-array both equate to a specific
         // position (non-floating point)
-        if ((originalX % 1 == 0 && originalY % 1 == 0) || (originalX == 0 || originalY == 0)) {
+        if ((columns.exact[j] && rows.exact[i]) || (columns.first[j] || rows.first[i])) {
 
-          // mapped location is a specific pixel, populate the new pixel channel values as the same
-          IPixel mappedPixel = image.getPixels()[(int) originalX][(int) originalY];
-          IPixel newPixel = new Pixel(new Posn(j, i), mappedPixel.getR(), mappedPixel.getG(),
-              mappedPixel.getB());
-          downSizeImagePixels[j][i] = newPixel;
+          // mapped location is a specific pixel, populate the new pixel channel values as the
+          // same
+          downSizeRaster[i * newWidth + j] = source[floorRow + columns.floor[j]];
         } else {
-
-          IPixel pixelA = image.getPixels()[(int) Math.floor(originalX)][(int) Math
-                .floor(originalY)];
-          IPixel pixelB = image.getPixels()[(int) Math.ceil(originalX)][(int) Math
-                .floor(originalY)];
-          IPixel pixelC = image.getPixels()[(int) Math.floor(originalX)][(int) Math
-                .ceil(originalY)];
-          IPixel pixelD = image.getPixels()[(int) Math.ceil(originalX)][(int) Math
-                .ceil(originalY)];
-
-          // calculate each channel value
-          int redChannel = getChannelVal(pixelA, pixelB, pixelC, pixelD, originalX, originalY,
-              Channel.RED);
-          int greenChannel = getChannelVal(pixelA, pixelB, pixelC, pixelD, originalX, originalY,
-              Channel.GREEN);
-          int blueChannel = getChannelVal(pixelA, pixelB, pixelC, pixelD, originalX, originalY,
-              Channel.BLUE);
-
-          IPixel newPixel = new Pixel(new Posn(j, i), redChannel, greenChannel, blueChannel);
-          downSizeImagePixels[j][i] = newPixel;
+          int redChannel = (int) Math.round(interpolatedR[1][j] * weightCeilY
+              + (interpolatedR[0][j] * weightFloorY));
+          int greenChannel = (int) Math.round(interpolatedG[1][j] * weightCeilY
+              + (interpolatedG[0][j] * weightFloorY));
+          int blueChannel = (int) Math.round(interpolatedB[1][j] * weightCeilY
+              + (interpolatedB[0][j] * weightFloorY));
+          downSizeRaster[i * newWidth + j] = PackedImage.pack(redChannel, greenChannel,
+              blueChannel);
         }
       }
     }
-    return new PPMImage(downSizeImagePixels);
   }
 
-  private static int getChannelVal(IPixel pixA, IPixel pixB, IPixel pixC, IPixel pixD, double x,
-      double y, Channel val) {
-    int colorA;
-    int colorB;
-    int colorC;
-    int colorD;
-    switch (val) {
-      case RED:
-        colorA = pixA.getR();
-        colorB = pixB.getR();
-        colorC = pixC.getR();
-        colorD = pixD.getR();
-        break;
-      case GREEN:
-        colorA = pixA.getG();
-        colorB = pixB.getG();
-        colorC = pixC.getG();
-        colorD = pixD.getG();
-        break;
-      case BLUE:
-        colorA = pixA.getB();
-        colorB = pixB.getB();
-        colorC = pixC.getB();
-        colorD = pixD.getB();
-        break;
-      default:
-        throw new IllegalArgumentException("Not a valid color channel.");
+  private static void swap(double[][] pair) {
+    double[] temp = pair[0];
+    pair[0] = pair[1];
+    pair[1] = temp;
+  }
+
+  // interpolates every mapped column of one original row between its two surrounding pixels
+  private static void interpolateRow(int[] source, int rowStart, Axis columns,
+      double[] interpolatedR, double[] interpolatedG, double[] interpolatedB) {
+    for (int j = 0; j < interpolatedR.length; j++) {
+      int pixelA = source[rowStart + columns.floor[j]];
+      int pixelB = source[rowStart + columns.ceil[j]];
+      double weightFloor = columns.weightFloor[j];
+      double weightCeil = columns.weightCeil[j];
+      interpolatedR[j] = (((pixelB >> 16) & 0xFF) * weightCeil)
+          + (((pixelA >> 16) & 0xFF) * weightFloor);
+      interpolatedG[j] = (((pixelB >> 8) & 0xFF) * weightCeil)
+          + (((pixelA >> 8) & 0xFF) * weightFloor);
+      interpolatedB[j] = ((pixelB & 0xFF) * weightCeil) + ((pixelA & 0xFF) * weightFloor);
+    }
+  }
+
+  /**
+   * The mapped locations of the columns or rows of a down-sized image within the original image,
+   * computed once per resize. For each position it holds the original pixels on either side of
+   * the mapped location and the weight each of them gets, which is the distance from the mapped
+   * location to the pixel on the other side.
+   */
+  private static final class Axis {
+
+    private final int[] floor;
+    private final int[] ceil;
+    private final double[] weightFloor;
+    private final double[] weightCeil;
+    private final boolean[] exact;
+    private final boolean[] first;
+
+    private Axis(int newLength, int originalLength) {
+      this.floor = new int[newLength];
+      this.ceil = new int[newLength];
+      this.weightFloor = new double[newLength];
+      this.weightCeil = new double[newLength];
+      this.exact = new boolean[newLength];
+      this.first = new boolean[newLength];
+      for (int i = 0; i < newLength; i++) {
+
+        // creates floating point ratio for the location within image
+        double ratio = (double) i / newLength;
+        double original = ratio * originalLength;
+        this.floor[i] = (int) Math.floor(original);
+        this.ceil[i] = (int) Math.ceil(original);
+        this.weightFloor[i] = Math.ceil(original) - original;
+        this.weightCeil[i] = original - Math.floor(original);
+        this.exact[i] = original % 1 == 0;
+        this.first[i] = original == 0;
+      }
     }
-    double m = (colorB * (x - Math.floor(x))) + (colorA * (Math.ceil(x) - x));
-    double n = (colorD * (x - Math.floor(x))) + (colorC * (Math.ceil(x) - x));
-    return (int) Math.round(n * (y - Math.floor(y)) + (m * (Math.ceil(y) - y)));
   }
 }
@@ -0,0 +1,46 @@
+package model;
+
+/**
+ * Enumeration to represent the ways a filter can treat the neighbors of a pixel that fall outside
+ * of the image. Each enumeration maps a position outside of the image either to a position inside of
+ * it or to no pixel at all.<p>ZERO treats missing neighbors as having channel values of 0 (the
+ * original behavior of a Filter).</p><p>CLAMP repeats the pixel on the nearest edge.</p><p>MIRROR
+ * reflects the image about its edge pixels.</p><p>WRAP continues from the opposite side of the
+ * image.</p>
+ */
+public enum EdgeMode {
+  ZERO, CLAMP, MIRROR, WRAP;
+
+  /**
+   * Finds the index within the image that stands in for the given index along one dimension.
+   *
+   * @param index  the index of the neighbor, which may fall outside of the image
+   * @param length the length of the image along this dimension (must be positive)
+   * @return the index to read in place of the given index, or -1 if no pixel should be read
+   */
+  public int resolve(int index, int length) {
+    if (index >= 0 && index < length) {
+      return index;
+    }
+    switch (this) {
+      case CLAMP:
+        return index < 0 ? 0 : length - 1;
+      case MIRROR:
+        if (length == 1) {
+          return 0;
+        }
+        int period = 2 * (length - 1);
+        int reflected = Math.floorMod(index, period);
+        return reflected < length ? reflected : period - reflected;
+      case WRAP:
+        return Math.floorMod(index, length);
+      default:
+        return -1;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return this.name().toLowerCase();
+  }
+}
@@ -0,0 +1,300 @@
+package model;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Applies a kernel to a packed raster by multiplying in the frequency domain. The image is cut into
+ * square tiles, each tile is transformed with a 2D FFT, multiplied with the spectrum of the kernel
+ * and transformed back, and the overlapping results of neighboring tiles are added together
+ * (overlap-add). Since the kernel is real, two channels are carried through each complex transform,
+ * one as the real part and one as the imaginary part.<p>The cost per pixel depends only on the size
+ * of the FFT and not on the area of the kernel, which makes this much faster than a direct
+ * convolution for large kernels. Products are summed unrounded and rounded once per channel, like
+ * the separable path of the ConvolutionEngine.</p><p>Kernel spectra are cached by the contents of
+ * the kernel, so applying the same kernel again only pays for the tiles.</p>
+ */
+class FftConvolution {
+
+  private static final int MAX_FFT_SIZE = 256;
+  private static final int SPECTRUM_CACHE_SIZE = 8;
+  // kernel spectra keyed by the kernel values and the FFT size
+  private static final Map<KernelKey, double[][]> SPECTRA =
+      new LinkedHashMap<KernelKey, double[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<KernelKey, double[][]> eldest) {
+          return this.size() > SPECTRUM_CACHE_SIZE;
+        }
+      };
+
+  private final int size;
+  private final int radius;
+  private final int fftSize;
+  private final int tileSize;
+  private final double[] kernelRe;
+  private final double[] kernelIm;
+  private final EdgeMode edgeMode;
+
+  /**
+   * Creates an FFT convolution for the given kernel. The kernel values are read once here, so later
+   * changes to the kernel are not seen by this convolution.
+   *
+   * @param kernel   the kernel to be applied
+   * @param edgeMode how neighbors outside of the image are treated
+   */
+  FftConvolution(KernelMatrix kernel, EdgeMode edgeMode) {
+    this.size = kernel.getKernel().length;
+    this.radius = this.size / 2;
+    this.fftSize = fftSizeFor(this.size);
+    this.tileSize = this.fftSize - this.size + 1;
+    this.edgeMode = edgeMode;
+    double[][] spectrum = spectrumOf(kernel.getKernel(), this.fftSize);
+    this.kernelRe = spectrum[0];
+    this.kernelIm = spectrum[1];
+  }
+
+  /**
+   * Estimates the work needed per pixel and channel to apply a kernel of the given size through
+   * this FFT convolution, counted in butterflies of the FFT.
+   *
+   * @param kernelSize the width and height of the kernel
+   * @return the estimated work per pixel and channel
+   */
+  static double costPerPixel(int kernelSize) {
+    return costPerPixel(kernelSize, fftSizeFor(kernelSize));
+  }
+
+  // forward and inverse 2D transforms plus the spectrum product, shared by two channels
+  private static double costPerPixel(int kernelSize, int fftSize) {
+    int tile = fftSize - kernelSize + 1;
+    double log = Integer.numberOfTrailingZeros(fftSize);
+    return (2.0 * fftSize * fftSize * log + fftSize * fftSize) / (2.0 * tile * tile);
+  }
+
+  // picks the power of two FFT size with the lowest cost per pixel for the kernel size
+  private static int fftSizeFor(int kernelSize) {
+    int best = Integer.highestOneBit(kernelSize) * 2;
+    for (int candidate = best * 2; candidate <= MAX_FFT_SIZE; candidate *= 2) {
+      if (costPerPixel(kernelSize, candidate) < costPerPixel(kernelSize, best)) {
+        best = candidate;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Applies the kernel to the selected channels of a range of rows of the source raster, writing
+   * those rows of the result. Channels that are not selected are copied from the source unchanged.
+   *
+   * @param source   the packed source raster in row-major order
+   * @param width    the width of the raster
+   * @param height   the height of the raster
+   * @param red      true to apply the kernel to the red channel
+   * @param green    true to apply the kernel to the green channel
+   * @param blue     true to apply the kernel to the blue channel
+   * @param firstRow the first row of the result to write
+   * @param lastRow  the row after the last row of the result to write
+   * @param result   the packed result raster
+   */
+  void convolve(int[] source, int width, int height, boolean red, boolean green, boolean blue,
+      int firstRow, int lastRow, int[] result) {
+    int[] shifts = new int[3];
+    int channels = 0;
+    if (red) {
+      shifts[channels++] = 16;
+    }
+    if (green) {
+      shifts[channels++] = 8;
+    }
+    if (blue) {
+      shifts[channels++] = 0;
+    }
+
+    // the image is convolved as if it were surrounded by a border of the kernel radius filled in
+    // by the edge mode, and the full convolution of that padded image holds pixel (x, y) at
+    // (x + 2r, y + 2r)
+    int paddedWidth = width + 2 * this.radius;
+    int paddedHeight = height + 2 * this.radius;
+    int offset = 2 * this.radius;
+    int bandHeight = this.tileSize + this.size - 1;
+
+    // tiles always lie on the same grid over the whole padded image, starting from the first one
+    // that reaches the first row, so every row sums the same tiles in the same order no matter
+    // which range of rows is asked for
+    int firstTile = Math.max(0, firstRow + offset - (bandHeight - 1) + this.tileSize - 1)
+        / this.tileSize * this.tileSize;
+    int[] columns = new int[paddedWidth];
+    for (int px = 0; px < paddedWidth; px++) {
+      columns[px] = this.edgeMode.resolve(px - this.radius, width);
+    }
+
+    int area = this.fftSize * this.fftSize;
+    double[] re = new double[area];
+    double[] im = new double[area];
+    double[] scratchRe = new double[this.fftSize];
+    double[] scratchIm = new double[this.fftSize];
+    double[][] bands = new double[channels][bandHeight * paddedWidth];
+
+    for (int ty = firstTile; ty < paddedHeight && ty < lastRow + offset; ty += this.tileSize) {
+      for (int tx = 0; tx < paddedWidth; tx += this.tileSize) {
+        int tileWidth = Math.min(this.tileSize, paddedWidth - tx);
+        int tileHeight = Math.min(this.tileSize, paddedHeight - ty);
+        for (int c = 0; c < channels; c += 2) {
+          boolean paired = c + 1 < channels;
+          Arrays.fill(re, 0);
+          Arrays.fill(im, 0);
+          for (int j = 0; j < tileHeight; j++) {
+            int sourceRow = this.edgeMode.resolve(ty + j - this.radius, height);
+            if (sourceRow == -1) {
+              continue;
+            }
+            int rowStart = sourceRow * width;
+            for (int i = 0; i < tileWidth; i++) {
+              int column = columns[tx + i];
+              if (column == -1) {
+                continue;
+              }
+              int rgb = source[rowStart + column];
+              re[j * this.fftSize + i] = (rgb >> shifts[c]) & 0xFF;
+              if (paired) {
+                im[j * this.fftSize + i] = (rgb >> shifts[c + 1]) & 0xFF;
+              }
+            }
+          }
+
+          transform(re, im, this.fftSize, tileHeight, scratchRe, scratchIm, false);
+          for (int k = 0; k < area; k++) {
+            double productRe = re[k] * this.kernelRe[k] - im[k] * this.kernelIm[k];
+            im[k] = re[k] * this.kernelIm[k] + im[k] * this.kernelRe[k];
+            re[k] = productRe;
+          }
+          transform(re, im, this.fftSize, this.fftSize, scratchRe, scratchIm, true);
+
+          // overlap-add the tile result into the band of rows starting at ty
+          int outWidth = Math.min(tileWidth + this.size - 1, paddedWidth - tx);
+          double[] bandA = bands[c];
+          double[] bandB = paired ? bands[c + 1] : null;
+          for (int j = 0; j < tileHeight + this.size - 1; j++) {
+            int bandRow = j * paddedWidth + tx;
+            int tileRow = j * this.fftSize;
+            for (int i = 0; i < outWidth; i++) {
+              bandA[bandRow + i] += re[tileRow + i];
+              if (paired) {
+                bandB[bandRow + i] += im[tileRow + i];
+              }
+            }
+          }
+        }
+      }
+
+      // the first rows of the band are now complete, write them out and shift the rest up
+      for (int j = 0; j < this.tileSize; j++) {
+        int y = ty + j - offset;
+        if (y < firstRow || y >= lastRow) {
+          continue;
+        }
+        for (int x = 0; x < width; x++) {
+          int rgb = source[y * width + x];
+          for (int c = 0; c < channels; c++) {
+            double sum = bands[c][j * paddedWidth + x + offset];
+            int value = PackedImage.clamp((int) Math.round(sum));
+            rgb = (rgb & ~(0xFF << shifts[c])) | (value << shifts[c]);
+          }
+          result[y * width + x] = rgb;
+        }
+      }
+      for (int c = 0; c < channels; c++) {
+        double[] band = bands[c];
+        System.arraycopy(band, this.tileSize * paddedWidth, band, 0,
+            (bandHeight - this.tileSize) * paddedWidth);
+        Arrays.fill(band, (bandHeight - this.tileSize) * paddedWidth, band.length, 0);
+      }
+    }
+  }
+
+  // 2D FFT of the buffers, only the first rows are transformed row-wise as the rest are zero
+  private static void transform(double[] re, double[] im, int n, int rows, double[] scratchRe,
+      double[] scratchIm, boolean inverse) {
+    for (int j = 0; j < rows; j++) {
+      fft(re, im, j * n, n, inverse);
+    }
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        scratchRe[j] = re[j * n + i];
+        scratchIm[j] = im[j * n + i];
+      }
+      fft(scratchRe, scratchIm, 0, n, inverse);
+      for (int j = 0; j < n; j++) {
+        re[j * n + i] = scratchRe[j];
+        im[j * n + i] = scratchIm[j];
+      }
+    }
+  }
+
+  // in place iterative radix-2 FFT of the n values starting at offset, without scaling
+  private static void fft(double[] re, double[] im, int offset, int n, boolean inverse) {
+    for (int i = 1, j = 0; i < n; i++) {
+      int bit = n >> 1;
+      for (; (j & bit) != 0; bit >>= 1) {
+        j ^= bit;
+      }
+      j ^= bit;
+      if (i < j) {
+        double tempRe = re[offset + i];
+        re[offset + i] = re[offset + j];
+        re[offset + j] = tempRe;
+        double tempIm = im[offset + i];
+        im[offset + i] = im[offset + j];
+        im[offset + j] = tempIm;
+      }
+    }
+    for (int length = 2; length <= n; length <<= 1) {
+      double angle = 2 * Math.PI / length * (inverse ? 1 : -1);
+      double stepRe = Math.cos(angle);
+      double stepIm = Math.sin(angle);
+      int half = length >> 1;
+      for (int start = offset; start < offset + n; start += length) {
+        double wRe = 1;
+        double wIm = 0;
+        for (int k = start; k < start + half; k++) {
+          double oddRe = re[k + half] * wRe - im[k + half] * wIm;
+          double oddIm = re[k + half] * wIm + im[k + half] * wRe;
+          re[k + half] = re[k] - oddRe;
+          im[k + half] = im[k] - oddIm;
+          re[k] += oddRe;
+          im[k] += oddIm;
+          double nextRe = wRe * stepRe - wIm * stepIm;
+          wIm = wRe * stepIm + wIm * stepRe;
+          wRe = nextRe;
+        }
+      }
+    }
+  }
+
+  // spectrum of the flipped kernel, scaled so the inverse transform needs no scaling of its own
+  private static double[][] spectrumOf(double[][] kernel, int fftSize) {
+    KernelKey key = new KernelKey(kernel, fftSize);
+    synchronized (SPECTRA) {
+      double[][] cached = SPECTRA.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    int size = kernel.length;
+    double scale = 1.0 / ((double) fftSize * fftSize);
+    double[] re = new double[fftSize * fftSize];
+    double[] im = new double[fftSize * fftSize];
+    for (int v = 0; v < size; v++) {
+      for (int u = 0; u < size; u++) {
+        re[v * fftSize + u] = kernel[size - 1 - u][size - 1 - v] * scale;
+      }
+    }
+    transform(re, im, fftSize, size, new double[fftSize], new double[fftSize], false);
+    double[][] spectrum = {re, im};
+    synchronized (SPECTRA) {
+      SPECTRA.put(key, spectrum);
+    }
+    return spectrum;
+  }
+}
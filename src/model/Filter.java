@@ -8,17 +8,69 @@ package model;
  * the value of the neighboring pixels channel with the corresponding value at the same position in
  * the kernel given. These values added together create the new channel value for this pixel.</p>
  * <p>If a pixel is near the edge of an image in which there are no neighboring pixels present on a
- * given side, the values for the neighboring pixels channels remain zero as to not be included
- * in the calculation of new RGB values.</p>
+ * given side, the missing neighbors are filled in according to the edge mode of this filter. By
+ * default the values for the neighboring pixels channels remain zero as to not be included in the
+ * calculation of new RGB values.</p>
  */
 public class Filter implements ITransform {
 
+  private final EdgeMode edgeMode;
+  private final ConvolutionStrategy strategy;
+  private final ParallelExecutor executor;
+
   /**
    * Constructs a filter object. Used in order to dynamically dispatch the application of image
-   * transformations to this specific class.
+   * transformations to this specific class. Neighbors outside of the image are treated as zero.
    */
   public Filter() {
-    // empty constructor: creates Filter object with no fields needed
+    this(EdgeMode.ZERO, ConvolutionStrategy.AUTO);
+  }
+
+  /**
+   * Constructs a filter object that treats neighbors outside of the image according to the given
+   * edge mode.
+   *
+   * @param edgeMode how neighbors outside of the image are filled in
+   * @throws IllegalArgumentException if the edge mode is null
+   */
+  public Filter(EdgeMode edgeMode) throws IllegalArgumentException {
+    this(edgeMode, ConvolutionStrategy.AUTO);
+  }
+
+  /**
+   * Constructs a filter object that treats neighbors outside of the image according to the given
+   * edge mode and carries out the convolution according to the given strategy. Use
+   * {@link ConvolutionStrategy#DIRECT} for results that are exactly those of a per-pixel filter.
+   *
+   * @param edgeMode how neighbors outside of the image are filled in
+   * @param strategy how the kernel is applied to the image
+   * @throws IllegalArgumentException if the edge mode or strategy is null
+   */
+  public Filter(EdgeMode edgeMode, ConvolutionStrategy strategy)
+      throws IllegalArgumentException {
+    this(edgeMode, strategy, ParallelExecutor.common());
+  }
+
+  /**
+   * Constructs a filter object with the given edge mode and strategy that splits its work between
+   * threads through the given executor. The result does not depend on the executor.
+   *
+   * @param edgeMode how neighbors outside of the image are filled in
+   * @param strategy how the kernel is applied to the image
+   * @param executor how the rows of the result are split between threads
+   * @throws IllegalArgumentException if the edge mode, strategy or executor is null
+   */
+  public Filter(EdgeMode edgeMode, ConvolutionStrategy strategy, ParallelExecutor executor)
+      throws IllegalArgumentException {
+    if (edgeMode == null || strategy == null) {
+      throw new IllegalArgumentException("Edge mode and strategy cannot be null.");
+    }
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor cannot be null.");
+    }
+    this.edgeMode = edgeMode;
+    this.strategy = strategy;
+    this.executor = executor;
   }
 
   @Override
@@ -27,18 +79,52 @@ public class Filter implements ITransform {
     if (image == null || kernel == null || color == null) {
       throw new IllegalArgumentException("Fields cannot be null.");
     }
-    IPixel[][] newImagePixels = new IPixel[image.getPixels().length][image
-        .getPixels()[0].length];
-
-    // iterates through all values in 2D array
-    for (int i = 0; i < image.getPixels()[0].length; i++) {
-      for (int j = 0; j < image.getPixels().length; j++) {
-        IPixel pixel = image.getPixels()[j][i];
-        KernelMatrix pixelNeighbors = image
-            .findNeighbors(pixel, color, kernel.getKernel().length);
-        newImagePixels[j][i] = pixel.applyKernelFilter(kernel, pixelNeighbors, color);
-      }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] result = this.engineFor(kernel).convolve(image.getRaster(), width, height, color);
+    return image.getImage(width, height, result);
+  }
+
+  @Override
+  public IImage apply(IImage image, KernelMatrix kernel) throws IllegalArgumentException {
+    if (image == null || kernel == null) {
+      throw new IllegalArgumentException("Fields cannot be null.");
     }
-    return image.getImage(newImagePixels);
+
+    // each neighborhood is read once and all three channels are computed from it
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] result = this.engineFor(kernel).convolve(image.getRaster(), width, height);
+    return image.getImage(width, height, result);
+  }
+
+  /**
+   * Gets how this filter treats neighbors outside of the image.
+   *
+   * @return the edge mode of this filter
+   */
+  EdgeMode edgeMode() {
+    return this.edgeMode;
+  }
+
+  /**
+   * Gets how this filter chooses to carry out its convolutions.
+   *
+   * @return the convolution strategy of this filter
+   */
+  ConvolutionStrategy strategy() {
+    return this.strategy;
+  }
+
+  /**
+   * Creates the engine that applies the given kernel with the edge mode, strategy and executor of
+   * this filter.
+   *
+   * @param kernel the kernel to be applied
+   * @return the engine for the kernel
+   */
+  ConvolutionEngine engineFor(KernelMatrix kernel) {
+    return new ConvolutionEngine(kernel, this.edgeMode, this.strategy.choose(kernel),
+        this.executor);
   }
 }
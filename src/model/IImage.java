@@ -50,12 +50,36 @@ public interface IImage {
       throws IllegalArgumentException;
 
   /**
-   * Gets the pixels from this image object.
+   * Gets the pixels from this image object. Images backed by a packed raster build this array on
+   * every call, so it should only be used where a per-pixel object view is actually needed.
    *
    * @return the images pixels represented as a 2D array of IPixels
    */
   IPixel[][] getPixels();
 
+  /**
+   * Gets the width of this image in pixels.
+   *
+   * @return the width of this image, or 0 if this image has no pixels
+   */
+  int getWidth();
+
+  /**
+   * Gets the height of this image in pixels.
+   *
+   * @return the height of this image, or 0 if this image has no pixels
+   */
+  int getHeight();
+
+  /**
+   * Gets the pixels of this image as a packed raster. Each entry holds one pixel as 0xRRGGBB and
+   * the entries are stored in row-major order, so the pixel at (x, y) is found at index
+   * {@code y * getWidth() + x}. The returned array must be treated as read-only.
+   *
+   * @return the packed raster of this image, or null if this image has no pixels
+   */
+  int[] getRaster();
+
   /**
    * Factory method to create an image object based on the original image before applying a
    * transformation.
@@ -65,6 +89,18 @@ public interface IImage {
    */
   IImage getImage(IPixel[][] pixels);
 
+  /**
+   * Factory method to create an image object from a packed raster based on the original image
+   * before applying a transformation.
+   *
+   * @param width  the width of the image being created
+   * @param height the height of the image being created
+   * @param raster the packed 0xRRGGBB pixels of the image in row-major order
+   * @return a new image object created through dynamic dispatch to the proper IImage class
+   * @throws IllegalArgumentException if the raster is null or does not match the given dimensions
+   */
+  IImage getImage(int width, int height, int[] raster) throws IllegalArgumentException;
+
   /**
    * Creates a string representation of this image.
    *
@@ -108,4 +144,13 @@ public interface IImage {
    * @return a BufferedImage representation of this image
    */
   BufferedImage convertImage();
+
+  /**
+   * Creates a copy of this image with the same name and visibility that shares the pixels of this
+   * image instead of copying them. Pixels are never changed in place, since transformations always
+   * make a new image, so renaming, hiding or transforming either image leaves the other as it is.
+   *
+   * @return a copy of this image
+   */
+  IImage copy();
 }
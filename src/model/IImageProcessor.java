@@ -1,12 +1,15 @@
 package model;
 
+import java.util.List;
+
 /**
  * Interface to represent the state of the image processor.
  */
 public interface IImageProcessor extends IImageProcessorState {
 
   /**
-   * Adds a layer to the multi-layer image.
+   * Adds a layer to the multi-layer image. An image that is already a layer is added as a copy
+   * that shares its pixels, so the two layers can be renamed and hidden apart.
    *
    * @param layer a layer within this multi-layer image
    * @throws IllegalArgumentException if the provided layer is null or is not of the same dimension
@@ -32,6 +35,16 @@ public interface IImageProcessor extends IImageProcessorState {
   void replaceLayer(IImage layerToRemove, IImage layerToAdd)
       throws IllegalArgumentException;
 
+  /**
+   * Replaces every layer of the multi-layer image with the given layers, as a single change that
+   * one undo reverts. An image given more than once is added as copies that share its pixels.
+   *
+   * @param layers the new layers, from the bottom layer to the top layer
+   * @throws IllegalArgumentException if the list or any layer in it is null, or the layers are not
+   *                                  all of the same dimensions
+   */
+  void setLayers(List<IImage> layers) throws IllegalArgumentException;
+
   /**
    * Applies a transformation to a layer of the multi-layer image.
    *
@@ -46,4 +59,95 @@ public interface IImageProcessor extends IImageProcessorState {
   void transformLayer(IImage layer, ITransform transformation, KernelMatrix kernel,
       boolean replace, String newName) throws IllegalArgumentException;
 
+  /**
+   * Adds a copy of a layer on top of the multi-layer image under a new name. The copy shares the
+   * pixels of the layer until either of them is transformed or replaced.
+   *
+   * @param layer   a layer within the multi-layer image
+   * @param newName the name of the copy
+   * @throws IllegalArgumentException if either argument is null or the layer is not in the image
+   */
+  void duplicateLayer(IImage layer, String newName) throws IllegalArgumentException;
+
+  /**
+   * Gets the number of bytes of pixels held by the layers, at four bytes a pixel. Pixels shared by
+   * several layers are counted once.
+   *
+   * @return the bytes of pixels held by the layers
+   */
+  long getPixelBytes();
+
+  /**
+   * Gets the number of bytes of pixels that are shared by more than one layer, at four bytes a
+   * pixel and counted once. These bytes are part of those counted by getPixelBytes.
+   *
+   * @return the bytes of pixels shared between layers
+   */
+  long getSharedBytes();
+
+  /**
+   * Chooses whether transformed layers are computed right away or only once their pixels are
+   * needed. In lazy mode a transformed layer holds its source and the transformations to apply to
+   * it, which are run when the layer is saved, displayed or transformed in a way that needs its
+   * pixels, and never run at all if the layer is replaced or removed first.
+   *
+   * @param lazy true to compute transformed layers only once their pixels are needed
+   */
+  void setLazy(boolean lazy);
+
+  /**
+   * Sets the number of bytes of transformed pixels kept to answer repeated transformations. When
+   * a layer is transformed in the same way as pixels identical to its own were before, the kept
+   * result is used instead of computing it again. The least recently used results are dropped once
+   * the results kept take up more than the budget.
+   *
+   * @param bytes the most bytes the kept results may take up, 0 to keep none
+   * @throws IllegalArgumentException if the budget is negative
+   */
+  void setCacheBudget(long bytes) throws IllegalArgumentException;
+
+  /**
+   * Gets the number of transformations that were answered with a kept result.
+   *
+   * @return the number of cache hits
+   */
+  long getCacheHits();
+
+  /**
+   * Gets the number of transformations that could have been answered with a kept result but were
+   * computed, as none was kept for them.
+   *
+   * @return the number of cache misses
+   */
+  long getCacheMisses();
+
+  /**
+   * Undoes the most recent change to the layers that was not undone yet, putting back the layer
+   * that was replaced or removed, or removing the layer that was added. Undoing the most recent
+   * change only puts the layer back, while older changes are read back from compacted snapshots.
+   *
+   * @return true if a change was undone, false if there was nothing to undo
+   * @throws IllegalArgumentException if the snapshot of the change can not be read back
+   */
+  boolean undo() throws IllegalArgumentException;
+
+  /**
+   * Redoes the most recently undone change to the layers. Making a new change forgets every change
+   * that was undone.
+   *
+   * @return true if a change was redone, false if there was nothing to redo
+   * @throws IllegalArgumentException if the snapshot of the change can not be read back
+   */
+  boolean redo() throws IllegalArgumentException;
+
+  /**
+   * Sets the number of bytes of compacted snapshots of past changes kept in memory. The snapshots
+   * of the oldest changes beyond the budget are written to a temporary file instead.
+   *
+   * @param bytes the most bytes the snapshots in memory may take up, 0 to write every snapshot to
+   *              the file
+   * @throws IllegalArgumentException if the budget is negative
+   */
+  void setHistoryBudget(long bytes) throws IllegalArgumentException;
+
 }
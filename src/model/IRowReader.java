@@ -0,0 +1,34 @@
+package model;
+
+import java.io.Closeable;
+
+/**
+ * Represents an image that is read one row at a time, from the top row down, so that only the rows
+ * being worked on have to be held in memory. Closing the reader releases the file it reads from.
+ */
+public interface IRowReader extends Closeable {
+
+  /**
+   * Gets the width of the image being read.
+   *
+   * @return the number of pixels in each row
+   */
+  int getWidth();
+
+  /**
+   * Gets the height of the image being read.
+   *
+   * @return the number of rows
+   */
+  int getHeight();
+
+  /**
+   * Reads the next row of the image into the given array as packed 0xRRGGBB pixels.
+   *
+   * @param pixels the array the row is read into
+   * @param offset the index in the array of the first pixel of the row
+   * @throws IllegalArgumentException if every row has been read already or the row can not be
+   *                                  read
+   */
+  void readRow(int[] pixels, int offset) throws IllegalArgumentException;
+}
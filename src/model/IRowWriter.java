@@ -0,0 +1,21 @@
+package model;
+
+import java.io.Closeable;
+
+/**
+ * Represents an image that is written one row at a time, from the top row down, so that only the
+ * rows being worked on have to be held in memory. Closing the writer finishes the file it writes
+ * to.
+ */
+public interface IRowWriter extends Closeable {
+
+  /**
+   * Writes the next row of the image from the given array of packed 0xRRGGBB pixels.
+   *
+   * @param pixels the array holding the row
+   * @param offset the index in the array of the first pixel of the row
+   * @throws IllegalArgumentException if every row has been written already or the row can not be
+   *                                  written
+   */
+  void writeRow(int[] pixels, int offset) throws IllegalArgumentException;
+}
@@ -19,4 +19,16 @@ public interface ITransform {
    */
   IImage apply(IImage image, KernelMatrix kernel, Channel color)
       throws IllegalArgumentException;
+
+  /**
+   * Applies a given kernel to all three channels of an image. The result is the same as applying
+   * the kernel to the red, green and blue channels one after another, but implementations may do
+   * so in a single pass over the image.
+   *
+   * @param image  the image to apply the transformation to
+   * @param kernel the 2D kernel matrix to be applied to the image
+   * @return a new image created by the kernel being applied to the original image
+   * @throws IllegalArgumentException if either image or kernel are null
+   */
+  IImage apply(IImage image, KernelMatrix kernel) throws IllegalArgumentException;
 }
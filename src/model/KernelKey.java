@@ -0,0 +1,44 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Key under which something computed from the values of a kernel is cached. A KernelMatrix can be
+ * changed after it is created, so the key holds its own copy of the values rather than the kernel
+ * itself, and two kernels with the same values share the same key.
+ */
+final class KernelKey {
+
+  private final double[][] values;
+  private final int variant;
+  private final int hash;
+
+  /**
+   * Creates a key for the current values of the given kernel.
+   *
+   * @param kernel  the values of the kernel, indexed as [x][y]
+   * @param variant distinguishes different results computed from the same kernel values
+   */
+  KernelKey(double[][] kernel, int variant) {
+    this.values = new double[kernel.length][];
+    for (int x = 0; x < kernel.length; x++) {
+      this.values[x] = kernel[x].clone();
+    }
+    this.variant = variant;
+    this.hash = 31 * Arrays.deepHashCode(this.values) + variant;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof KernelKey)) {
+      return false;
+    }
+    KernelKey that = (KernelKey) other;
+    return this.variant == that.variant && Arrays.deepEquals(this.values, that.values);
+  }
+
+  @Override
+  public int hashCode() {
+    return this.hash;
+  }
+}
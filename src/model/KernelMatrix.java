@@ -9,6 +9,8 @@ public class KernelMatrix {
 
   private final double[][] array;
   private final int size;
+  private double[][] analyzedArray;
+  private double[][] separableFactors;
 
   /**
    * Builds a valid kernel of specified size dimensions. A kernel in code is a 2D-array of doubles
@@ -52,4 +54,82 @@ public class KernelMatrix {
   public double[][] getKernel() {
     return this.array;
   }
+
+  /**
+   * Determines whether this kernel is separable, meaning that it is the outer product of a
+   * horizontal and a vertical 1D kernel.
+   *
+   * @return true if this kernel is separable, false otherwise
+   */
+  public boolean isSeparable() {
+    return this.getSeparableFactors() != null;
+  }
+
+  /**
+   * Finds the 1D kernels this kernel is the outer product of, using a rank-1 decomposition. The
+   * value at position (x, y) of this kernel equals horizontal[x] * vertical[y]. The decomposition
+   * is done on first use and is redone only if the values of this kernel change afterwards.
+   *
+   * @return an array holding the horizontal kernel followed by the vertical kernel, or null if this
+   *         kernel is not separable
+   */
+  public double[][] getSeparableFactors() {
+    if (this.analyzedArray == null || !sameValues(this.analyzedArray, this.array)) {
+      this.analyzedArray = new double[this.size][];
+      for (int x = 0; x < this.size; x++) {
+        this.analyzedArray[x] = this.array[x].clone();
+      }
+      this.separableFactors = decompose(this.analyzedArray);
+    }
+    return this.separableFactors;
+  }
+
+  private static boolean sameValues(double[][] array1, double[][] array2) {
+    for (int x = 0; x < array1.length; x++) {
+      for (int y = 0; y < array1.length; y++) {
+        if (Double.compare(array1[x][y], array2[x][y]) != 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static double[][] decompose(double[][] values) {
+    int size = values.length;
+
+    // the largest value is used as the pivot to keep the division well conditioned
+    int pivotX = 0;
+    int pivotY = 0;
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        if (Math.abs(values[x][y]) > Math.abs(values[pivotX][pivotY])) {
+          pivotX = x;
+          pivotY = y;
+        }
+      }
+    }
+    double pivot = values[pivotX][pivotY];
+    if (pivot == 0 || Double.isNaN(pivot) || Double.isInfinite(pivot)) {
+      return null;
+    }
+
+    double[] horizontal = new double[size];
+    double[] vertical = new double[size];
+    for (int i = 0; i < size; i++) {
+      horizontal[i] = values[i][pivotY];
+      vertical[i] = values[pivotX][i] / pivot;
+    }
+
+    // the kernel is only separable if the outer product reproduces every value
+    double tolerance = Math.abs(pivot) * 1e-9;
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        if (Math.abs(horizontal[x] * vertical[y] - values[x][y]) > tolerance) {
+          return null;
+        }
+      }
+    }
+    return new double[][]{horizontal, vertical};
+  }
 }
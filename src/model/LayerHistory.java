@@ -0,0 +1,434 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+
+/**
+ * Keeps the steps that changed the layers of an image, so they can be undone and redone. A step is
+ * made of one or more changes, each a layer put in place of another, added or removed at an index,
+ * and each change is kept as the layer that is not in the image at the moment, called the held
+ * layer, next to the layer that is. The changes of a step are undone and redone together.<p>The
+ * most recent step on either side keeps its held layers themselves, so undoing or redoing it only
+ * puts the layers back. Once another step goes on top of it, each held layer is compacted: each
+ * row of its pixels is stored as its difference from the same row of the layer in the image, from
+ * the pixel to its left, or the difference of those two, whichever is smallest, and deflated.
+ * Bands of rows are compressed independently and in parallel. Lazy layers whose steps have not
+ * run are held as they are until their pixels are known.</p><p>Compacted steps are kept in memory
+ * up to the budget of the history, and the oldest ones beyond it are written to a temporary file
+ * and read back when they are undone. At most a fixed number of steps are kept, the oldest ones
+ * being forgotten first.</p>
+ */
+final class LayerHistory {
+
+  /**
+   * The most steps kept to be undone.
+   */
+  static final int MAX_STEPS = 100;
+
+  // rows compressed together, so large layers are compressed in parallel
+  private static final int BAND_ROWS = 64;
+
+  private final Deque<Entry> undos;
+  private final Deque<Entry> redos;
+  private long budget;
+  private long bytes;
+  private int spilled;
+  private FileChannel spill;
+
+  /**
+   * Creates an empty history.
+   *
+   * @param budget the most bytes of compacted steps kept in memory
+   */
+  LayerHistory(long budget) {
+    this.undos = new ArrayDeque<>();
+    this.redos = new ArrayDeque<>();
+    this.budget = budget;
+  }
+
+  /**
+   * Records a change that was just made to the layers as a step of its own, and forgets every step
+   * that was undone.
+   *
+   * @param index  the index of the layer that changed
+   * @param before the layer at the index before the change, null if the change added it
+   * @param after  the layer at the index after the change, null if the change removed it
+   */
+  void record(int index, IImage before, IImage after) {
+    this.record(index, before, after, false);
+  }
+
+  /**
+   * Records a change that was just made to the layers, and forgets every step that was undone.
+   *
+   * @param index  the index of the layer that changed
+   * @param before the layer at the index before the change, null if the change added it
+   * @param after  the layer at the index after the change, null if the change removed it
+   * @param joined true if the change is part of the same step as the change recorded before it
+   */
+  void record(int index, IImage before, IImage after, boolean joined) {
+    for (Entry entry : this.redos) {
+      this.release(entry);
+    }
+    this.redos.clear();
+    this.undos.push(new Entry(index, before, before != null, after, after != null,
+        joined && !this.undos.isEmpty()));
+    while (countSteps(this.undos) > MAX_STEPS) {
+      // the oldest step is forgotten along with every change joined to it
+      this.release(this.undos.removeLast());
+      while (!this.undos.isEmpty() && this.undos.peekLast().joined) {
+        this.release(this.undos.removeLast());
+      }
+    }
+    this.compact();
+  }
+
+  /**
+   * Undoes the most recent step that was not undone yet.
+   *
+   * @param layers the layers of the image, which are changed in place
+   * @return true if a step was undone, false if there was none
+   * @throws IllegalArgumentException if the step can not be read back
+   */
+  boolean undo(List<IImage> layers) throws IllegalArgumentException {
+    return this.flip(this.undos, this.redos, layers);
+  }
+
+  /**
+   * Redoes the most recently undone step.
+   *
+   * @param layers the layers of the image, which are changed in place
+   * @return true if a step was redone, false if there was none
+   * @throws IllegalArgumentException if the step can not be read back
+   */
+  boolean redo(List<IImage> layers) throws IllegalArgumentException {
+    return this.flip(this.redos, this.undos, layers);
+  }
+
+  /**
+   * Changes the most bytes of compacted steps kept in memory, writing the oldest steps to the
+   * temporary file until the rest fit.
+   *
+   * @param budget the new budget, 0 to keep every compacted step in the file
+   */
+  void setBudget(long budget) {
+    this.budget = budget;
+    this.enforceBudget();
+  }
+
+  /**
+   * Gets the number of steps that can be undone.
+   *
+   * @return the number of steps
+   */
+  int getUndoCount() {
+    return countSteps(this.undos);
+  }
+
+  /**
+   * Gets the number of steps that can be redone.
+   *
+   * @return the number of steps
+   */
+  int getRedoCount() {
+    return countSteps(this.redos);
+  }
+
+  // each step has exactly one change that is not joined to the change below it
+  private static int countSteps(Deque<Entry> side) {
+    int steps = 0;
+    for (Entry entry : side) {
+      if (!entry.joined) {
+        steps++;
+      }
+    }
+    return steps;
+  }
+
+  /**
+   * Gets the number of bytes of compacted steps kept in memory.
+   *
+   * @return the bytes counted against the budget
+   */
+  long getBytes() {
+    return this.bytes;
+  }
+
+  // puts the held layers of the newest step of one side back, newest change first, and moves the
+  // step to the other side, now holding the layers they took the place of
+  private boolean flip(Deque<Entry> from, Deque<Entry> to, List<IImage> layers)
+      throws IllegalArgumentException {
+    if (from.isEmpty()) {
+      return false;
+    }
+    boolean joined;
+    boolean first = true;
+    do {
+      Entry entry = from.poll();
+      joined = entry.joined;
+      this.flip(entry, from, to, layers, !first);
+      first = false;
+    } while (joined);
+    this.compact();
+    return true;
+  }
+
+  // puts the held layer of one change back and pushes the change on the other side, where the
+  // changes of a step end up in the opposite order
+  private void flip(Entry entry, Deque<Entry> from, Deque<Entry> to, List<IImage> layers,
+      boolean joined) throws IllegalArgumentException {
+    IImage current = entry.presentExists ? layers.get(entry.index) : null;
+    IImage restored;
+    try {
+      restored = this.restore(entry, current);
+    } catch (IllegalArgumentException e) {
+      // the older steps on this side can only be reached through this one
+      this.release(entry);
+      while (!from.isEmpty()) {
+        this.release(from.poll());
+      }
+      throw e;
+    }
+    this.release(entry);
+    if (current != null && restored != null) {
+      layers.set(entry.index, restored);
+    } else if (current != null) {
+      layers.remove(entry.index);
+    } else if (restored != null) {
+      layers.add(entry.index, restored);
+    }
+    to.push(new Entry(entry.index, current, current != null, restored, restored != null,
+        joined));
+  }
+
+  // the held layer of a change, read back against the layer now in the image if it was compacted
+  private IImage restore(Entry entry, IImage current) throws IllegalArgumentException {
+    if (!entry.heldExists || entry.held != null) {
+      return entry.held;
+    }
+    byte[] data = entry.data;
+    if (data == null) {
+      data = this.readSpilled(entry.offset, entry.bands[entry.bands.length - 1]);
+    }
+    int[] base = entry.relative ? current.getRaster() : null;
+    IImage image = new PackedImage(entry.width, entry.height,
+        decompress(data, entry.bands, entry.width, entry.height, base));
+    image.setName(entry.name);
+    image.setVisibility(entry.visible);
+    return image;
+  }
+
+  // compacts every step below the newest one on each side whose layers have known pixels
+  private void compact() {
+    for (Deque<Entry> side : List.of(this.undos, this.redos)) {
+      Iterator<Entry> entries = side.iterator();
+      while (entries.hasNext() && entries.next().joined) {
+        // the changes of the newest step are kept as they are
+      }
+      while (entries.hasNext()) {
+        Entry entry = entries.next();
+        if (entry.held == null) {
+          entry.present = null;
+        } else if (isKnown(entry.held) && (entry.present == null || isKnown(entry.present))) {
+          this.compact(entry);
+        }
+      }
+    }
+    this.enforceBudget();
+  }
+
+  private void compact(Entry entry) {
+    IImage held = entry.held;
+    int[] raster = held.getRaster();
+    if (raster == null) {
+      // layers without pixels are small enough to hold as they are
+      entry.present = null;
+      return;
+    }
+    int width = held.getWidth();
+    int height = held.getHeight();
+    int[] base = null;
+    if (entry.present != null && entry.present.getWidth() == width
+        && entry.present.getHeight() == height) {
+      base = entry.present.getRaster();
+    }
+    entry.width = width;
+    entry.height = height;
+    entry.name = held.getName();
+    entry.visible = held.getVisibility();
+    entry.relative = base != null;
+    compress(entry, raster, base);
+    entry.held = null;
+    entry.present = null;
+    this.bytes += entry.data.length;
+  }
+
+  // an image whose pixels can be read without running the steps of a lazy image
+  private static boolean isKnown(IImage image) {
+    return !(image instanceof LazyImage) || ((LazyImage) image).isEvaluated();
+  }
+
+  // writes the oldest compacted steps in memory to the file until the rest fit in the budget
+  private void enforceBudget() {
+    Iterator<Entry> undone = this.undos.descendingIterator();
+    Iterator<Entry> redone = this.redos.descendingIterator();
+    while (this.bytes > this.budget && (undone.hasNext() || redone.hasNext())) {
+      Entry entry = undone.hasNext() ? undone.next() : redone.next();
+      if (entry.data == null) {
+        continue;
+      }
+      try {
+        entry.offset = this.writeSpilled(entry.data);
+        this.spilled++;
+        this.bytes -= entry.data.length;
+        entry.data = null;
+      } catch (IOException e) {
+        // steps below this one need it to be undone, so they are forgotten along with it
+        this.forgetFrom(entry);
+        return;
+      }
+    }
+  }
+
+  private void forgetFrom(Entry oldest) {
+    Deque<Entry> side = this.undos.contains(oldest) ? this.undos : this.redos;
+    while (!side.isEmpty()) {
+      Entry entry = side.removeLast();
+      this.release(entry);
+      if (entry == oldest) {
+        break;
+      }
+    }
+  }
+
+  private void release(Entry entry) {
+    if (entry.data != null) {
+      this.bytes -= entry.data.length;
+    }
+    entry.data = null;
+    entry.held = null;
+    entry.present = null;
+    if (entry.offset < 0) {
+      return;
+    }
+    entry.offset = -1;
+    if (--this.spilled == 0) {
+      // nothing in the file is needed any more, so its space is given back
+      try {
+        this.spill.truncate(0);
+      } catch (IOException e) {
+        // the file is only used again from its end
+      }
+    }
+  }
+
+  private long writeSpilled(byte[] data) throws IOException {
+    if (this.spill == null) {
+      Path file = Files.createTempFile("history", ".tmp");
+      this.spill = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+          StandardOpenOption.DELETE_ON_CLOSE);
+      file.toFile().deleteOnExit();
+    }
+    long offset = this.spill.size();
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    while (buffer.hasRemaining()) {
+      this.spill.write(buffer, offset + buffer.position());
+    }
+    return offset;
+  }
+
+  private byte[] readSpilled(long offset, int length) throws IllegalArgumentException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    try {
+      while (buffer.hasRemaining()) {
+        if (this.spill.read(buffer, offset + buffer.position()) < 0) {
+          throw new IllegalArgumentException("History file is truncated.");
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("History file could not be read.");
+    }
+    return buffer.array();
+  }
+
+  // deflates the bands of rows of the raster at the same time and joins them, keeping where each
+  // band ends
+  private static void compress(Entry entry, int[] raster, int[] base) {
+    int width = entry.width;
+    int bandCount = (entry.height + BAND_ROWS - 1) / BAND_ROWS;
+    byte[][] blocks = new byte[bandCount][];
+    IntStream.range(0, bandCount).parallel().forEach(band -> blocks[band] = RowDeltaCodec.deflate(
+        raster, base, width, band * BAND_ROWS, Math.min(entry.height, (band + 1) * BAND_ROWS)));
+    entry.bands = new int[bandCount];
+    int length = 0;
+    for (int band = 0; band < bandCount; band++) {
+      length += blocks[band].length;
+      entry.bands[band] = length;
+    }
+    entry.data = new byte[length];
+    for (int band = 0, start = 0; band < bandCount; start = entry.bands[band++]) {
+      System.arraycopy(blocks[band], 0, entry.data, start, blocks[band].length);
+    }
+  }
+
+  // inflates the bands at the same time, each against the layer now in the image if it was
+  // compacted against it
+  private static int[] decompress(byte[] data, int[] bands, int width, int height, int[] base)
+      throws IllegalArgumentException {
+    int[] raster = new int[width * height];
+    IntStream.range(0, bands.length).parallel().forEach(band -> {
+      int from = band == 0 ? 0 : bands[band - 1];
+      try {
+        if (!RowDeltaCodec.inflate(ByteBuffer.wrap(data, from, bands[band] - from), raster, base,
+            width, band * BAND_ROWS, Math.min(height, (band + 1) * BAND_ROWS))) {
+          throw new IllegalArgumentException("History step is truncated.");
+        }
+      } catch (DataFormatException e) {
+        throw new IllegalArgumentException("History step is corrupt.");
+      }
+    });
+    return raster;
+  }
+
+  /**
+   * One step of the history, held either as the layers themselves or compacted.
+   */
+  private static final class Entry {
+
+    private final int index;
+    private final boolean joined;
+    private final boolean heldExists;
+    private final boolean presentExists;
+    private IImage held;
+    private IImage present;
+    private int width;
+    private int height;
+    private String name;
+    private boolean visible;
+    private boolean relative;
+    private byte[] data;
+    private int[] bands;
+    private long offset;
+
+    private Entry(int index, IImage held, boolean heldExists, IImage present,
+        boolean presentExists, boolean joined) {
+      this.index = index;
+      this.joined = joined;
+      this.held = held;
+      this.heldExists = heldExists;
+      this.present = present;
+      this.presentExists = presentExists;
+      this.offset = -1;
+    }
+  }
+}
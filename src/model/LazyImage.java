@@ -0,0 +1,302 @@
+package model;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class to represent an image that is only computed when its pixels are needed. A lazy image
+ * holds a recipe made of a source image and the transformations to apply to it in order, and
+ * applying another transformation only adds a step to a copy of the recipe. The steps are run the
+ * first time the pixels, the string form or a buffered image of the lazy image are asked for, and
+ * the result is kept in place of the recipe. A lazy image that is thrown away before then never
+ * costs the work of its steps.<p>When the recipe is run, color transformations and filters whose
+ * kernel leaves every pixel as it is are skipped. The steps left are run as a TransformChain, so
+ * no whole intermediate images are made between them and the result is exactly that of running
+ * the steps one after another.</p><p>Copies of a lazy
+ * image share its recipe, so the steps are run once for all of them.</p>
+ */
+public class LazyImage implements IImage {
+
+  private final Recipe recipe;
+  private String name;
+  private boolean visible;
+
+  /**
+   * Constructs a lazy image with no steps yet, taking the name and visibility of the source.
+   *
+   * @param source the image the steps are applied to
+   * @throws IllegalArgumentException if the source is null
+   */
+  public LazyImage(IImage source) throws IllegalArgumentException {
+    this(source, List.of());
+  }
+
+  private LazyImage(IImage source, List<Step> steps) throws IllegalArgumentException {
+    if (source == null) {
+      throw new IllegalArgumentException("Source image cannot be null.");
+    }
+    this.recipe = new Recipe(source, steps);
+    this.name = source.getName();
+    this.visible = source.getVisibility();
+  }
+
+  // constructor for a copy, which shares the recipe of the image it copies
+  private LazyImage(Recipe recipe, String name, boolean visible) {
+    this.recipe = recipe;
+    this.name = name;
+    this.visible = visible;
+  }
+
+  /**
+   * Checks whether the steps of this image have been run.
+   *
+   * @return true if the pixels of this image have been computed
+   */
+  public boolean isEvaluated() {
+    synchronized (this.recipe) {
+      return this.recipe.steps.isEmpty();
+    }
+  }
+
+  /**
+   * Gets the image the steps of this image are applied to, or the result once they have run.
+   *
+   * @return the source of the recipe
+   */
+  IImage source() {
+    synchronized (this.recipe) {
+      return this.recipe.source;
+    }
+  }
+
+  private IImage evaluate() {
+    return this.recipe.evaluate();
+  }
+
+  // runs the steps of a recipe the first time they are needed and keeps the result as the new
+  // source
+  private static IImage evaluate(IImage source, List<Step> steps) {
+    IImage image = source;
+    List<ITransform> transforms = new ArrayList<>();
+    List<KernelMatrix> kernels = new ArrayList<>();
+    for (Step step : steps) {
+      if (step.isIdentity()) {
+        continue;
+      }
+      if (step.channel != null) {
+        image = applyChain(image, transforms, kernels);
+        image = image.applyTransformation(step.transform, step.kernel, step.channel);
+        continue;
+      }
+      transforms.add(step.transform);
+      kernels.add(step.kernel);
+    }
+    return applyChain(image, transforms, kernels);
+  }
+
+  // applies the collected steps on all three channels as one chain and clears them
+  private static IImage applyChain(IImage image, List<ITransform> transforms,
+      List<KernelMatrix> kernels) {
+    if (transforms.isEmpty()) {
+      return image;
+    }
+    IImage result = image.applyTransformation(new TransformChain(transforms, kernels),
+        kernels.get(0));
+    transforms.clear();
+    kernels.clear();
+    return result;
+  }
+
+  // adds a step to a copy of the recipe, or starts a new recipe from the result once it is known
+  private IImage then(ITransform transform, KernelMatrix kernel, Channel channel) {
+    List<Step> next;
+    IImage start;
+    synchronized (this.recipe) {
+      start = this.recipe.source;
+      next = new ArrayList<>(this.recipe.steps);
+    }
+    next.add(new Step(transform, kernel, channel));
+    LazyImage image = new LazyImage(start, List.copyOf(next));
+    image.name = this.name;
+    image.visible = this.visible;
+    return image;
+  }
+
+  @Override
+  public IImage applyTransformation(ITransform transform, KernelMatrix kernel, Channel color)
+      throws IllegalArgumentException {
+    if (transform == null || kernel == null || color == null) {
+      throw new IllegalArgumentException("Fields cannot be null.");
+    }
+    return this.then(transform, kernel, color);
+  }
+
+  @Override
+  public IImage applyTransformation(ITransform transform, KernelMatrix kernel)
+      throws IllegalArgumentException {
+    if (transform == null || kernel == null) {
+      throw new IllegalArgumentException("Transform object or kernel cannot be null.");
+    }
+    return this.then(transform, kernel, null);
+  }
+
+  @Override
+  public KernelMatrix findNeighbors(IPixel pixel, Channel color, int size)
+      throws IllegalArgumentException {
+    return this.evaluate().findNeighbors(pixel, color, size);
+  }
+
+  @Override
+  public IPixel[][] getPixels() {
+    return this.evaluate().getPixels();
+  }
+
+  // filters and color transformations keep the size, so it is known without running them
+  @Override
+  public int getWidth() {
+    synchronized (this.recipe) {
+      return this.keepsSize() ? this.recipe.source.getWidth() : this.evaluate().getWidth();
+    }
+  }
+
+  @Override
+  public int getHeight() {
+    synchronized (this.recipe) {
+      return this.keepsSize() ? this.recipe.source.getHeight() : this.evaluate().getHeight();
+    }
+  }
+
+  private boolean keepsSize() {
+    synchronized (this.recipe) {
+      for (Step step : this.recipe.steps) {
+        if (!(step.transform instanceof Filter) && !(step.transform instanceof ColorTransform)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  @Override
+  public int[] getRaster() {
+    return this.evaluate().getRaster();
+  }
+
+  @Override
+  public IImage getImage(IPixel[][] pixels) {
+    return this.evaluate().getImage(pixels);
+  }
+
+  @Override
+  public IImage getImage(int width, int height, int[] raster) throws IllegalArgumentException {
+    return this.evaluate().getImage(width, height, raster);
+  }
+
+  @Override
+  public String sendToString() {
+    return this.evaluate().sendToString();
+  }
+
+  @Override
+  public boolean getVisibility() {
+    return this.visible;
+  }
+
+  @Override
+  public void setVisibility(boolean newVisibility) {
+    this.visible = newVisibility;
+  }
+
+  @Override
+  public String getName() {
+    return this.name;
+  }
+
+  @Override
+  public void setName(String newName) throws IllegalArgumentException {
+    if (newName == null) {
+      throw new IllegalArgumentException("New name can't be null.");
+    }
+    this.name = newName;
+  }
+
+  @Override
+  public BufferedImage convertImage() {
+    return this.evaluate().convertImage();
+  }
+
+  @Override
+  public IImage copy() {
+    return new LazyImage(this.recipe, this.name, this.visible);
+  }
+
+  /**
+   * The source and steps of a lazy image, shared with its copies.
+   */
+  private static final class Recipe {
+
+    private IImage source;
+    private List<Step> steps;
+
+    private Recipe(IImage source, List<Step> steps) {
+      this.source = source;
+      this.steps = steps;
+    }
+
+    private synchronized IImage evaluate() {
+      if (!this.steps.isEmpty()) {
+        this.source = LazyImage.evaluate(this.source, this.steps);
+        this.steps = List.of();
+      }
+      return this.source;
+    }
+  }
+
+  /**
+   * One transformation in the recipe of a lazy image. The kernel is copied, so later changes to
+   * the kernel given are not seen by the step.
+   */
+  private static final class Step {
+
+    private final ITransform transform;
+    private final KernelMatrix kernel;
+    private final Channel channel;
+
+    private Step(ITransform transform, KernelMatrix kernel, Channel channel) {
+      double[][] values = kernel.getKernel();
+      this.transform = transform;
+      this.kernel = new KernelMatrix(values.length);
+      for (int i = 0; i < values.length; i++) {
+        for (int j = 0; j < values.length; j++) {
+          this.kernel.setValue(new Posn(i, j), values[i][j]);
+        }
+      }
+      this.channel = channel;
+    }
+
+    // a color transformation of all three channels
+    private boolean isColor() {
+      return this.transform instanceof ColorTransform && this.channel == null
+          && this.kernel.getKernel().length == 3;
+    }
+
+    // a filter or color transformation that leaves every pixel as it is
+    private boolean isIdentity() {
+      if (!(this.transform instanceof Filter) && !this.isColor()) {
+        return false;
+      }
+      double[][] values = this.kernel.getKernel();
+      int middle = values.length / 2;
+      for (int i = 0; i < values.length; i++) {
+        for (int j = 0; j < values.length; j++) {
+          boolean kept = this.transform instanceof Filter ? i == middle && j == middle : i == j;
+          if (values[i][j] != (kept ? 1 : 0)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+}
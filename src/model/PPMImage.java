@@ -144,16 +144,7 @@ public class PPMImage implements IImage {
     if (transform == null || kernel == null) {
       throw new IllegalArgumentException("Transform object or kernel cannot be null.");
     }
-    if (transform instanceof Filter) {
-      IImage newImage = this.applyTransformation(transform, kernel, Channel.RED);
-      IImage newImageV2 = newImage.applyTransformation(transform, kernel, Channel.GREEN);
-      return newImageV2.applyTransformation(transform, kernel, Channel.BLUE);
-    } else {
-
-      // do this when transform is a color transformation since channel does not matter and we only
-      // need to apply the transformation once
-      return this.applyTransformation(transform, kernel, Channel.RED);
-    }
+    return transform.apply(this, kernel);
   }
 
   @Override
@@ -168,30 +159,34 @@ public class PPMImage implements IImage {
     KernelMatrix neighborsMatrix = new KernelMatrix(size);
     int radius = size / 2;
 
-    // iterates through all values in 2D array
+    int width = this.pixels.length;
+    int height = this.pixels[0].length;
+
+    // iterates through all values in 2D array, neighbors outside of this image are left as 0.0
     for (int i = radius * -1; i <= radius; i++) {
+      if (middleY + i < 0 || middleY + i >= height) {
+        continue;
+      }
       for (int j = radius * -1; j <= radius; j++) {
-        try {
-          IPixel neighborPixel = this.pixels[middleX + j][middleY + i];
-          double value;
-          switch (color) {
-            case RED:
-              value = neighborPixel.getR();
-              break;
-            case GREEN:
-              value = neighborPixel.getG();
-              break;
-            case BLUE:
-              value = neighborPixel.getB();
-              break;
-            default:
-              throw new IllegalArgumentException("Must be a valid 8-bit color channel.");
-          }
-          neighborsMatrix.setValue(new Posn(j + size / 2, i + size / 2), value);
-        } catch (IndexOutOfBoundsException e) {
-          // left intentionally blank to explicitly do nothing. KernelMatrix will be left as 0.0
-          // which is what we want in the case of no neighbor being present.
+        if (middleX + j < 0 || middleX + j >= width) {
+          continue;
         }
+        IPixel neighborPixel = this.pixels[middleX + j][middleY + i];
+        double value;
+        switch (color) {
+          case RED:
+            value = neighborPixel.getR();
+            break;
+          case GREEN:
+            value = neighborPixel.getG();
+            break;
+          case BLUE:
+            value = neighborPixel.getB();
+            break;
+          default:
+            throw new IllegalArgumentException("Must be a valid 8-bit color channel.");
+        }
+        neighborsMatrix.setValue(new Posn(j + size / 2, i + size / 2), value);
       }
     }
     return neighborsMatrix;
@@ -202,11 +197,60 @@ public class PPMImage implements IImage {
     return this.pixels;
   }
 
+  @Override
+  public int getWidth() {
+    if (this.pixels == null) {
+      return 0;
+    }
+    return this.pixels.length;
+  }
+
+  @Override
+  public int getHeight() {
+    if (this.pixels == null) {
+      return 0;
+    }
+    return this.pixels[0].length;
+  }
+
+  @Override
+  public int[] getRaster() {
+    if (this.pixels == null) {
+      return null;
+    }
+    int width = this.pixels.length;
+    int height = this.pixels[0].length;
+    int[] raster = new int[width * height];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        IPixel pixel = this.pixels[j][i];
+        raster[i * width + j] = PackedImage.pack(pixel.getR(), pixel.getG(), pixel.getB());
+      }
+    }
+    return raster;
+  }
+
   @Override
   public IImage getImage(IPixel[][] pixels) {
     return new PPMImage(pixels);
   }
 
+  @Override
+  public IImage getImage(int width, int height, int[] raster) throws IllegalArgumentException {
+    if (raster == null || width < 1 || height < 1 || raster.length != width * height) {
+      throw new IllegalArgumentException("Raster does not match the image dimensions.");
+    }
+    IPixel[][] newPixels = new IPixel[width][height];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int rgb = raster[i * width + j];
+        newPixels[j][i] = new Pixel(new Posn(j, i), (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF,
+            rgb & 0xFF);
+      }
+    }
+    return new PPMImage(newPixels);
+  }
+
   @Override
   public String sendToString() {
     StringBuilder stringOutput = new StringBuilder();
@@ -260,22 +304,15 @@ public class PPMImage implements IImage {
 
   @Override
   public BufferedImage convertImage() {
-    BufferedImage newImage;
     IPixel[][] pixels = this.getPixels();
-    int imageWidth = pixels.length;
-    int imageHeight = pixels[0].length;
-    newImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+    return PackedImage.toBufferedImage(pixels.length, pixels[0].length, this.getRaster());
+  }
 
-    for (int i = 0; i < imageHeight; i++) {
-      for (int j = 0; j < imageWidth; j++) {
-        IPixel p = pixels[j][i];
-        int r = p.getR();
-        int g = p.getG();
-        int b = p.getB();
-        int rgb = new Color(r, g, b).getRGB();
-        newImage.setRGB(j, i, rgb);
-      }
-    }
-    return newImage;
+  @Override
+  public IImage copy() {
+    PPMImage copy = this.pixels == null ? new PPMImage() : new PPMImage(this.pixels);
+    copy.name = this.name;
+    copy.visible = this.visible;
+    return copy;
   }
 }
@@ -0,0 +1,377 @@
+package model;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * A class to represent an image whose pixels are stored in a single packed raster. Each pixel is
+ * held as one int in the form 0xRRGGBB and the pixels are stored in row-major order, so the
+ * position of a pixel is implied by its index rather than stored alongside it. Transformations work
+ * directly on the raster, and the 2D array of IPixels returned by getPixels is only built on
+ * request as a compatibility view.<p>Checkerboards with the same tiles and colors share one raster
+ * for as long as any of them is in use.</p>
+ */
+public class PackedImage implements IImage {
+
+  // rasters of the checkerboards in use, keyed by their tile size, tile count and colors
+  private static final Map<List<Integer>, WeakReference<int[]>> CHECKERBOARDS = new HashMap<>();
+
+  private final int width;
+  private final int height;
+  private final int[] raster;
+  private String name;
+  private boolean visible;
+
+  /**
+   * Constructor to create a PackedImage from an already packed raster. The raster is used as is
+   * and is not copied.
+   *
+   * @param width  the width of the image (must be positive)
+   * @param height the height of the image (must be positive)
+   * @param raster the packed 0xRRGGBB pixels of the image in row-major order
+   * @throws IllegalArgumentException if the raster is null or its length does not match the given
+   *                                  dimensions
+   */
+  public PackedImage(int width, int height, int[] raster) throws IllegalArgumentException {
+    if (raster == null) {
+      throw new IllegalArgumentException("Image raster cannot be null.");
+    }
+    if (width < 1 || height < 1 || raster.length != width * height) {
+      throw new IllegalArgumentException("Raster does not match the image dimensions.");
+    }
+    this.width = width;
+    this.height = height;
+    this.raster = raster;
+    this.name = null;
+    this.visible = true;
+  }
+
+  /**
+   * Constructor to create a PackedImage based on a 2D array of IPixels.
+   *
+   * @param pixels the 2D array of pixels, indexed as [x][y]
+   * @throws IllegalArgumentException if the 2D array of IPixels is null
+   */
+  public PackedImage(IPixel[][] pixels) throws IllegalArgumentException {
+    if (pixels == null) {
+      throw new IllegalArgumentException("Image pixels cannot be null.");
+    }
+    this.width = pixels.length;
+    this.height = pixels[0].length;
+    this.raster = new int[this.width * this.height];
+    for (int i = 0; i < this.height; i++) {
+      for (int j = 0; j < this.width; j++) {
+        IPixel pixel = pixels[j][i];
+        this.raster[i * this.width + j] = pack(pixel.getR(), pixel.getG(), pixel.getB());
+      }
+    }
+    this.name = null;
+    this.visible = true;
+  }
+
+  /**
+   * Constructor to create a PackedImage based on a file being imported into the program.
+   *
+   * @param file the ppm image file represented as a string
+   * @throws IllegalArgumentException if the file is null
+   */
+  public PackedImage(String file) throws IllegalArgumentException {
+    if (file == null) {
+      throw new IllegalArgumentException("Filename cannot be null.");
+    }
+    Scanner sc = new Scanner(file);
+
+    String token = sc.next();
+    this.width = sc.nextInt();
+    this.height = sc.nextInt();
+    int maxValue = sc.nextInt();
+    this.raster = new int[this.width * this.height];
+    for (int i = 0; i < this.raster.length; i++) {
+      int r = sc.nextInt();
+      int g = sc.nextInt();
+      int b = sc.nextInt();
+      this.raster[i] = pack(r, g, b);
+    }
+    sc.close();
+    this.name = null;
+    this.visible = true;
+  }
+
+  /**
+   * Programmatically creates and constructs a checkerboard image. Produces the same layout of tiles
+   * as the checkerboard constructor of PPMImage.
+   *
+   * @param tileSize number of pixels length wise of a single tile (must be positive)
+   * @param numTiles number of tiles across a single row of the checkerboard image (must be
+   *                 positive)
+   * @param color1   the first color to be used in this checkerboard image
+   * @param color2   the second color to be used in this checkerboard image
+   * @throws IllegalArgumentException when tileSize or numTiles is not positive or when either color
+   *                                  object given is null
+   */
+  public PackedImage(int tileSize, int numTiles, Color color1, Color color2)
+      throws IllegalArgumentException {
+    if (tileSize < 1 || numTiles < 1) {
+      throw new IllegalArgumentException("Size of checkerboard must be positive.");
+    }
+    if (color1 == null || color2 == null) {
+      throw new IllegalArgumentException("Colors must not be null.");
+    }
+    int boardSize = tileSize * numTiles;
+    int tile1 = pack(color1.getRed(), color1.getGreen(), color1.getBlue());
+    int tile2 = pack(color2.getRed(), color2.getGreen(), color2.getBlue());
+    this.width = boardSize;
+    this.height = boardSize;
+    this.raster = checkerboard(tileSize, numTiles, tile1, tile2);
+    this.name = null;
+    this.visible = true;
+  }
+
+  // the raster of a checkerboard in use with the same tiles and colors, or a new one
+  private static int[] checkerboard(int tileSize, int numTiles, int tile1, int tile2) {
+    List<Integer> key = List.of(tileSize, numTiles, tile1, tile2);
+    synchronized (CHECKERBOARDS) {
+      WeakReference<int[]> shared = CHECKERBOARDS.get(key);
+      int[] raster = shared == null ? null : shared.get();
+      if (raster != null) {
+        return raster;
+      }
+      CHECKERBOARDS.values().removeIf(reference -> reference.get() == null);
+    }
+    int boardSize = tileSize * numTiles;
+    int[] raster = new int[boardSize * boardSize];
+
+    // to switch colors after every full row of this tile is completed
+    int colorIndicator = 0;
+    for (int i = 0; i < boardSize; i++) {
+      for (int j = 0; j < boardSize; j++) {
+        // checks if this checkerboard has even or odd tile dimensions
+        if (numTiles % 2 != 0) {
+          // effectively switches colors when numTiles is odd
+          if ((j % tileSize == 0 && j != 0) || (i % tileSize == 0 && j % tileSize == 0)) {
+            colorIndicator++;
+          }
+        } else {
+          if (j % tileSize == 0 && !(j == 0 && i % tileSize == 0)) {
+            colorIndicator++;
+          }
+        }
+        raster[i * boardSize + j] = colorIndicator % 2 == 0 ? tile1 : tile2;
+      }
+    }
+    synchronized (CHECKERBOARDS) {
+      CHECKERBOARDS.put(key, new WeakReference<>(raster));
+    }
+    return raster;
+  }
+
+  /**
+   * Packs the given channel values into a single 0xRRGGBB int. Channel values are clamped to be
+   * between 0 and 255 in the same way as a Pixel.
+   *
+   * @param r amount representing red
+   * @param g amount representing green
+   * @param b amount representing blue
+   * @return the packed pixel
+   */
+  static int pack(int r, int g, int b) {
+    return (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+  }
+
+  /**
+   * Clamps a channel value to be between 0 and 255 inclusive.
+   *
+   * @param value the channel value to clamp
+   * @return the clamped channel value
+   */
+  static int clamp(int value) {
+    if (value < 0) {
+      return 0;
+    } else if (value > 255) {
+      return 255;
+    }
+    return value;
+  }
+
+  /**
+   * Gets the bit offset of the given channel within a packed pixel.
+   *
+   * @param color the channel to locate
+   * @return the number of bits the channel is shifted by
+   * @throws IllegalArgumentException if the channel is not a valid 8-bit color channel
+   */
+  static int shift(Channel color) throws IllegalArgumentException {
+    switch (color) {
+      case RED:
+        return 16;
+      case GREEN:
+        return 8;
+      case BLUE:
+        return 0;
+      default:
+        throw new IllegalArgumentException("Must be a valid 8-bit color channel.");
+    }
+  }
+
+  @Override
+  public IImage applyTransformation(ITransform transform, KernelMatrix kernel, Channel color)
+      throws IllegalArgumentException {
+    if (transform == null || kernel == null || color == null) {
+      throw new IllegalArgumentException("Fields cannot be null.");
+    }
+    return transform.apply(this, kernel, color);
+  }
+
+  @Override
+  public IImage applyTransformation(ITransform transform, KernelMatrix kernel)
+      throws IllegalArgumentException {
+    if (transform == null || kernel == null) {
+      throw new IllegalArgumentException("Transform object or kernel cannot be null.");
+    }
+    return transform.apply(this, kernel);
+  }
+
+  @Override
+  public KernelMatrix findNeighbors(IPixel pixel, Channel color, int size)
+      throws IllegalArgumentException {
+    if (pixel == null || color == null) {
+      throw new IllegalArgumentException("Pixel and/or color cannot be null.");
+    }
+    int shift = shift(color);
+    Posn position = pixel.getPosition();
+    int middleX = position.getX();
+    int middleY = position.getY();
+    KernelMatrix neighborsMatrix = new KernelMatrix(size);
+    double[][] neighbors = neighborsMatrix.getKernel();
+    int radius = size / 2;
+
+    // neighbors outside of this image are left as 0.0
+    for (int i = radius * -1; i <= radius; i++) {
+      int y = middleY + i;
+      if (y < 0 || y >= this.height) {
+        continue;
+      }
+      for (int j = radius * -1; j <= radius; j++) {
+        int x = middleX + j;
+        if (x >= 0 && x < this.width) {
+          neighbors[j + radius][i + radius] = (this.raster[y * this.width + x] >> shift) & 0xFF;
+        }
+      }
+    }
+    return neighborsMatrix;
+  }
+
+  @Override
+  public IPixel[][] getPixels() {
+    IPixel[][] pixels = new IPixel[this.width][this.height];
+    for (int i = 0; i < this.height; i++) {
+      for (int j = 0; j < this.width; j++) {
+        int rgb = this.raster[i * this.width + j];
+        pixels[j][i] = new Pixel(new Posn(j, i), (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF,
+            rgb & 0xFF);
+      }
+    }
+    return pixels;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int[] getRaster() {
+    return this.raster;
+  }
+
+  @Override
+  public IImage getImage(IPixel[][] pixels) {
+    return new PackedImage(pixels);
+  }
+
+  @Override
+  public IImage getImage(int width, int height, int[] raster) throws IllegalArgumentException {
+    return new PackedImage(width, height, raster);
+  }
+
+  @Override
+  public String sendToString() {
+    StringBuilder stringOutput = new StringBuilder();
+
+    stringOutput.append("P3 \n");
+    stringOutput.append("# Created by Christopher Burke and Jonathan Truong \n");
+    stringOutput.append(this.width).append(" ");
+    stringOutput.append(this.height).append(" \n");
+    stringOutput.append("255 \n");
+
+    for (int rgb : this.raster) {
+      stringOutput.append((rgb >> 16) & 0xFF).append(" \n");
+      stringOutput.append((rgb >> 8) & 0xFF).append(" \n");
+      stringOutput.append(rgb & 0xFF).append(" \n");
+    }
+    return stringOutput.toString();
+  }
+
+  @Override
+  public boolean getVisibility() {
+    return this.visible;
+  }
+
+  @Override
+  public void setVisibility(boolean newVisibility) {
+    this.visible = newVisibility;
+  }
+
+  @Override
+  public String getName() {
+    return this.name;
+  }
+
+  @Override
+  public void setName(String newName) throws IllegalArgumentException {
+    if (newName == null) {
+      throw new IllegalArgumentException("New name can't be null.");
+    }
+    this.name = newName;
+  }
+
+  @Override
+  public BufferedImage convertImage() {
+    return toBufferedImage(this.width, this.height, this.raster);
+  }
+
+  @Override
+  public IImage copy() {
+    PackedImage copy = new PackedImage(this.width, this.height, this.raster);
+    copy.name = this.name;
+    copy.visible = this.visible;
+    return copy;
+  }
+
+  /**
+   * Builds a buffered image from a packed raster by copying the raster straight into the data bank
+   * of the new image, which uses the same 0xRRGGBB layout.
+   *
+   * @param width  the width of the raster
+   * @param height the height of the raster
+   * @param raster the packed raster in row-major order
+   * @return a new RGB buffered image holding the raster
+   */
+  static BufferedImage toBufferedImage(int width, int height, int[] raster) {
+    BufferedImage newImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] data = ((DataBufferInt) newImage.getRaster().getDataBuffer()).getData();
+    System.arraycopy(raster, 0, data, 0, width * height);
+    return newImage;
+  }
+}
@@ -0,0 +1,142 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class to represent the way a transformation divides its work between threads. The rows of the
+ * result are split into bands, and the bands are run as fork/join tasks on a ForkJoinPool. Every
+ * band writes only its own rows of the result, and every row is computed the same way no matter
+ * which band it falls in, so the result is identical to running the transformation on a single
+ * thread.<p>Images with fewer pixels than the minimum work of this executor are not split at all,
+ * as the cost of scheduling the tasks would outweigh the gain for them.</p>
+ */
+public class ParallelExecutor {
+
+  /**
+   * The default minimum number of pixels a band is given before it is worth running on a thread
+   * of its own.
+   */
+  public static final int DEFAULT_MINIMUM_PIXELS = 1 << 16;
+
+  private static final ParallelExecutor SEQUENTIAL = new ParallelExecutor();
+  private static final ParallelExecutor COMMON =
+      new ParallelExecutor(ForkJoinPool.commonPool(), DEFAULT_MINIMUM_PIXELS);
+
+  // bands handed out per thread of the pool, so threads that finish early can take more work
+  private static final int BANDS_PER_THREAD = 4;
+
+  private final ForkJoinPool pool;
+  private final int minimumPixels;
+
+  /**
+   * Constructs an executor that runs bands of at least the given number of pixels on the given
+   * pool.
+   *
+   * @param pool          the pool to run the bands on
+   * @param minimumPixels the smallest number of pixels worth running as a band of its own (must be
+   *                      positive)
+   * @throws IllegalArgumentException if the pool is null or the minimum is not positive
+   */
+  public ParallelExecutor(ForkJoinPool pool, int minimumPixels) throws IllegalArgumentException {
+    if (pool == null) {
+      throw new IllegalArgumentException("Pool cannot be null.");
+    }
+    if (minimumPixels < 1) {
+      throw new IllegalArgumentException("Minimum pixels must be positive.");
+    }
+    this.pool = pool;
+    this.minimumPixels = minimumPixels;
+  }
+
+  // constructor for the sequential executor, which has no pool
+  private ParallelExecutor() {
+    this.pool = null;
+    this.minimumPixels = Integer.MAX_VALUE;
+  }
+
+  /**
+   * Gets an executor that runs every transformation on the calling thread.
+   *
+   * @return the sequential executor
+   */
+  public static ParallelExecutor sequential() {
+    return SEQUENTIAL;
+  }
+
+  /**
+   * Gets an executor that runs on the common ForkJoinPool with the default minimum work. This is
+   * the executor used by transformations unless they are given one.
+   *
+   * @return the executor on the common pool
+   */
+  public static ParallelExecutor common() {
+    return COMMON;
+  }
+
+  /**
+   * Runs the given band over all rows of a result of the given size. The band may be called once
+   * for all rows or several times, possibly at once, for disjoint ranges of rows that together
+   * cover every row.
+   *
+   * @param width  the width of the result in pixels
+   * @param height the height of the result in pixels
+   * @param band   the work to run for each range of rows
+   */
+  void forEachBand(int width, int height, RowBand band) {
+    long pixels = (long) width * height;
+    if (this.pool == null || pixels < 2L * this.minimumPixels || height < 2) {
+      band.apply(0, height);
+      return;
+    }
+    int bands = (int) Math.min(pixels / this.minimumPixels,
+        (long) this.pool.getParallelism() * BANDS_PER_THREAD);
+    int rowsPerBand = Math.max(1, (height + bands - 1) / bands);
+    this.pool.invoke(new BandTask(band, 0, height, rowsPerBand));
+  }
+
+  /**
+   * Work done for a range of rows of a result.
+   */
+  interface RowBand {
+
+    /**
+     * Computes the rows of the result from the first row up to, but not including, the last row.
+     *
+     * @param firstRow the first row to compute
+     * @param lastRow  the row after the last row to compute
+     */
+    void apply(int firstRow, int lastRow);
+  }
+
+  /**
+   * Fork/join task that halves its range of rows until it is no larger than a band.
+   */
+  private static final class BandTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RowBand band;
+    private final int firstRow;
+    private final int lastRow;
+    private final int rowsPerBand;
+
+    private BandTask(RowBand band, int firstRow, int lastRow, int rowsPerBand) {
+      this.band = band;
+      this.firstRow = firstRow;
+      this.lastRow = lastRow;
+      this.rowsPerBand = rowsPerBand;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.lastRow - this.firstRow <= this.rowsPerBand) {
+        this.band.apply(this.firstRow, this.lastRow);
+        return;
+      }
+      int middle = (this.firstRow + this.lastRow) >>> 1;
+      invokeAll(new BandTask(this.band, this.firstRow, middle, this.rowsPerBand),
+          new BandTask(this.band, middle, this.lastRow, this.rowsPerBand));
+    }
+  }
+}
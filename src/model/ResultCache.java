@@ -0,0 +1,279 @@
+package model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps the pixels of recent transformation results, so applying the same transformation to the
+ * same pixels again returns right away. A result is found by two independent hashes of the pixels
+ * of the source along with its size, the type of the transformation and its parameters, such as the
+ * edge mode of a filter or the ratio of a downsize, and the values of the kernel. The second hash
+ * is a polynomial modulo a prime in a base picked at random when the program starts, so no fixed
+ * pair of rasters collides in both hashes and the chance of any pair doing so is far below that of
+ * a hardware fault. Results are dropped, least recently used first, once they take up more bytes
+ * than the budget of the cache.<p>Rasters are read-only, so a result hands out the cached raster
+ * itself rather than a copy, and the hashes of a raster are kept for as long as the raster is in
+ * use so they are only worked out once.</p><p>Only
+ * filters, color transformations and downsizes are cached, as the parameters of other
+ * transformations are not known. Lazy images are passed straight through, since hashing them would
+ * run their steps.</p>
+ */
+final class ResultCache {
+
+  // each entry is counted as its raster plus a rough allowance for the key and entry objects
+  private static final int ENTRY_OVERHEAD = 256;
+  // the Mersenne prime 2^61 - 1 and a random base below it for the second hash
+  private static final long PRIME = (1L << 61) - 1;
+  private static final long BASE = ThreadLocalRandom.current().nextLong(2, PRIME - 1);
+
+  private final Map<Key, Result> results;
+  private final Map<int[], long[]> hashes;
+  private long budget;
+  private long bytes;
+  private long hits;
+  private long misses;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param budget the most bytes the cached results may take up, 0 to cache nothing
+   */
+  ResultCache(long budget) {
+    this.results = new LinkedHashMap<>(16, 0.75f, true);
+    // arrays hash by identity, so this holds the hashes of each raster until it is thrown away
+    this.hashes = new WeakHashMap<>();
+    this.budget = budget;
+  }
+
+  /**
+   * Applies a transformation to all three channels of an image, or returns the cached result of
+   * applying the same transformation to the same pixels before.
+   *
+   * @param image     the image to transform
+   * @param transform the transformation to apply
+   * @param kernel    the kernel to apply
+   * @return the transformed image
+   * @throws IllegalArgumentException if the transformation can not be applied to the image
+   */
+  IImage apply(IImage image, ITransform transform, KernelMatrix kernel)
+      throws IllegalArgumentException {
+    List<Object> parameters = parametersOf(transform);
+    if (this.budget == 0 || parameters == null || image instanceof LazyImage
+        || image.getRaster() == null) {
+      return image.applyTransformation(transform, kernel);
+    }
+    long[] hashes = this.hashesOf(image.getRaster());
+    Key key = new Key(hashes[0], hashes[1], image.getWidth(), image.getHeight(),
+        transform.getClass(), parameters, new KernelKey(kernel.getKernel(), 0));
+    Result result = this.results.get(key);
+    if (result != null) {
+      this.hits++;
+      return image.getImage(result.width, result.height, result.raster);
+    }
+    this.misses++;
+    IImage transformed = image.applyTransformation(transform, kernel);
+    int[] raster = transformed.getRaster();
+    long size = (long) raster.length * Integer.BYTES + ENTRY_OVERHEAD;
+    if (size <= this.budget) {
+      this.results.put(key, new Result(transformed.getWidth(), transformed.getHeight(), raster));
+      this.bytes += size;
+      this.evict();
+    }
+    return transformed;
+  }
+
+  /**
+   * Changes the most bytes the cached results may take up, dropping the least recently used
+   * results until they fit.
+   *
+   * @param budget the new budget, 0 to drop every result and cache nothing
+   */
+  void setBudget(long budget) {
+    this.budget = budget;
+    this.evict();
+  }
+
+  /**
+   * Gets the number of transformations answered from the cache.
+   *
+   * @return the number of hits
+   */
+  long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Gets the number of transformations that could be cached but had to be computed.
+   *
+   * @return the number of misses
+   */
+  long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Gets the number of bytes the cached results take up.
+   *
+   * @return the bytes counted against the budget
+   */
+  long getBytes() {
+    return this.bytes;
+  }
+
+  private void evict() {
+    Iterator<Result> eldest = this.results.values().iterator();
+    while (this.bytes > this.budget && eldest.hasNext()) {
+      this.bytes -= (long) eldest.next().raster.length * Integer.BYTES + ENTRY_OVERHEAD;
+      eldest.remove();
+    }
+  }
+
+  // the parameters besides the kernel that the result of a transformation depends on, or null if
+  // they are not known; the executor never changes the result
+  private static List<Object> parametersOf(ITransform transform) {
+    if (transform.getClass() == Filter.class) {
+      Filter filter = (Filter) transform;
+      return List.of(filter.edgeMode(), filter.strategy());
+    }
+    if (transform.getClass() == ColorTransform.class) {
+      return List.of();
+    }
+    if (transform.getClass() == DownSize.class) {
+      DownSize downSize = (DownSize) transform;
+      return List.of(downSize.ratio(), downSize.width(), downSize.height());
+    }
+    return null;
+  }
+
+  private long[] hashesOf(int[] raster) {
+    long[] hashes = this.hashes.get(raster);
+    if (hashes == null) {
+      hashes = new long[]{hash(raster), polynomialHash(raster)};
+      this.hashes.put(raster, hashes);
+    }
+    return hashes;
+  }
+
+  // polynomial hash over four interleaved lanes, which keeps the multiplications independent, so
+  // two rasters that differ in a single pixel always hash differently
+  private static long hash(int[] raster) {
+    long multiplier = 0x9E3779B97F4A7C15L;
+    long a = 1;
+    long b = 2;
+    long c = 3;
+    long d = 4;
+    int i = 0;
+    for (; i + 3 < raster.length; i += 4) {
+      a = a * multiplier + raster[i];
+      b = b * multiplier + raster[i + 1];
+      c = c * multiplier + raster[i + 2];
+      d = d * multiplier + raster[i + 3];
+    }
+    for (; i < raster.length; i++) {
+      a = a * multiplier + raster[i];
+    }
+    long hash = ((a * multiplier + b) * multiplier + c) * multiplier + d + raster.length;
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    return hash ^ (hash >>> 33);
+  }
+
+  // the pixels as the coefficients of a polynomial evaluated at the random base modulo the prime,
+  // over four lanes that step by the fourth power of the base so the result is the same as one
+  // lane; rasters of the same length that differ only collide for a few of the possible bases
+  private static long polynomialHash(int[] raster) {
+    long base2 = multiplyMod(BASE, BASE);
+    long base4 = multiplyMod(base2, base2);
+    long a = 0;
+    long b = 0;
+    long c = 0;
+    long d = 0;
+    int i = 0;
+    for (; i + 3 < raster.length; i += 4) {
+      a = addMod(multiplyMod(a, base4), raster[i] & 0xFFFFFFFFL);
+      b = addMod(multiplyMod(b, base4), raster[i + 1] & 0xFFFFFFFFL);
+      c = addMod(multiplyMod(c, base4), raster[i + 2] & 0xFFFFFFFFL);
+      d = addMod(multiplyMod(d, base4), raster[i + 3] & 0xFFFFFFFFL);
+    }
+    long hash = addMod(multiplyMod(addMod(multiplyMod(addMod(multiplyMod(a, BASE), b), BASE), c),
+        BASE), d);
+    for (; i < raster.length; i++) {
+      hash = addMod(multiplyMod(hash, BASE), raster[i] & 0xFFFFFFFFL);
+    }
+    return hash;
+  }
+
+  // both values are below the prime, and 2^61 is 1 modulo the prime, so the high bits of the
+  // product fold back onto the low 61 bits
+  private static long multiplyMod(long x, long y) {
+    long high = Math.multiplyHigh(x, y);
+    long low = x * y;
+    return addMod(low & PRIME, (high << 3) | (low >>> 61));
+  }
+
+  private static long addMod(long x, long y) {
+    long sum = x + y;
+    return sum >= PRIME ? sum - PRIME : sum;
+  }
+
+  /**
+   * What a cached result was computed from.
+   */
+  private static final class Key {
+
+    private final long hash;
+    private final long check;
+    private final int width;
+    private final int height;
+    private final Class<?> type;
+    private final List<Object> parameters;
+    private final KernelKey kernel;
+
+    private Key(long hash, long check, int width, int height, Class<?> type,
+        List<Object> parameters, KernelKey kernel) {
+      this.hash = hash;
+      this.check = check;
+      this.width = width;
+      this.height = height;
+      this.type = type;
+      this.parameters = parameters;
+      this.kernel = kernel;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) other;
+      return this.hash == that.hash && this.check == that.check && this.width == that.width
+          && this.height == that.height && this.type == that.type
+          && this.parameters.equals(that.parameters) && this.kernel.equals(that.kernel);
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (this.hash ^ (this.hash >>> 32)) * 31 + this.kernel.hashCode();
+    }
+  }
+
+  /**
+   * The pixels of a cached result.
+   */
+  private static final class Result {
+
+    private final int width;
+    private final int height;
+    private final int[] raster;
+
+    private Result(int width, int height, int[] raster) {
+      this.width = width;
+      this.height = height;
+      this.raster = raster;
+    }
+  }
+}
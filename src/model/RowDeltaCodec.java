@@ -0,0 +1,160 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses rows of a packed raster by filtering them and deflating the filtered bytes. A row is
+ * written as the red, green and blue bytes of its pixels, each minus the same byte of the pixel to
+ * its left, so the smooth parts of an image turn into runs of small bytes that deflate well.<p>When
+ * a base raster of the same size is given, each row is instead written as a byte naming its filter
+ * followed by the filtered bytes, the filter being whichever is closest to zero of the difference
+ * from the pixel to the left, the difference from the same pixel of the base, or the difference of
+ * those two. Rows written against a base can only be read back against the same base.</p>
+ */
+public final class RowDeltaCodec {
+
+  private static final byte LEFT = 0;
+  private static final byte DELTA = 1;
+  private static final byte DELTA_LEFT = 2;
+
+  private RowDeltaCodec() {
+  }
+
+  /**
+   * Filters and deflates rows of a raster into a single deflate stream.
+   *
+   * @param raster   the packed raster to be compressed
+   * @param base     a packed raster of the same size the rows are filtered against, or null to
+   *                 only filter rows against the pixel to the left
+   * @param width    the width of both rasters
+   * @param firstRow the first row to be compressed
+   * @param lastRow  the row after the last row to be compressed
+   * @return the deflated rows
+   */
+  public static byte[] deflate(int[] raster, int[] base, int width, int firstRow, int lastRow) {
+    int offset = base == null ? 0 : 1;
+    byte[][] rows = new byte[base == null ? 1 : 3][width * 3 + offset];
+    for (byte filter = 0; filter < rows.length && offset == 1; filter++) {
+      rows[filter][0] = filter;
+    }
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    byte[] output = new byte[Math.max(64, (lastRow - firstRow) * width)];
+    int length = 0;
+    for (int y = firstRow; y < lastRow; y++) {
+      int start = y * width;
+      int previous = 0;
+      int previousDelta = 0;
+      for (int x = 0; x < width; x++) {
+        int rgb = raster[start + x];
+        for (int shift = 16, i = 3 * x + offset; shift >= 0; shift -= 8, i++) {
+          rows[LEFT][i] = (byte) ((rgb >> shift) - (previous >> shift));
+        }
+        if (base != null) {
+          int other = base[start + x];
+          int delta = 0;
+          for (int shift = 16, i = 3 * x + 1; shift >= 0; shift -= 8, i++) {
+            int channel = ((rgb >> shift) - (other >> shift)) & 0xFF;
+            rows[DELTA][i] = (byte) channel;
+            rows[DELTA_LEFT][i] = (byte) (channel - ((previousDelta >> shift) & 0xFF));
+            delta |= channel << shift;
+          }
+          previousDelta = delta;
+        }
+        previous = rgb;
+      }
+      boolean last = y == lastRow - 1;
+      deflater.setInput(rows[closestToZero(rows, offset)]);
+      if (last) {
+        deflater.finish();
+      }
+      while (!deflater.needsInput() || (last && !deflater.finished())) {
+        if (length == output.length) {
+          output = Arrays.copyOf(output, output.length * 2);
+        }
+        length += deflater.deflate(output, length, output.length - length);
+      }
+    }
+    deflater.end();
+    return Arrays.copyOf(output, length);
+  }
+
+  private static byte closestToZero(byte[][] rows, int offset) {
+    byte best = 0;
+    long bestSum = Long.MAX_VALUE;
+    for (byte filter = 0; filter < rows.length; filter++) {
+      long sum = 0;
+      for (int i = offset; i < rows[filter].length; i++) {
+        sum += Math.abs(rows[filter][i]);
+      }
+      if (sum < bestSum) {
+        bestSum = sum;
+        best = filter;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Inflates rows written by deflate into a raster and undoes their filters.
+   *
+   * @param input    the deflated rows, from its position to its limit
+   * @param raster   the packed raster the rows are read into
+   * @param base     the packed raster the rows were filtered against, or null if there was none
+   * @param width    the width of both rasters
+   * @param firstRow the first row to be read
+   * @param lastRow  the row after the last row to be read
+   * @return true if every row was read, false if the input ended first
+   * @throws DataFormatException if the input is not a deflate stream or names an unknown filter
+   */
+  public static boolean inflate(ByteBuffer input, int[] raster, int[] base, int width,
+      int firstRow, int lastRow) throws DataFormatException {
+    int offset = base == null ? 0 : 1;
+    byte[] row = new byte[width * 3 + offset];
+    Inflater inflater = new Inflater();
+    inflater.setInput(input);
+    try {
+      for (int y = firstRow; y < lastRow; y++) {
+        int filled = 0;
+        while (filled < row.length) {
+          int read = inflater.inflate(row, filled, row.length - filled);
+          if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+            return false;
+          }
+          filled += read;
+        }
+        byte filter = offset == 0 ? LEFT : row[0];
+        if (filter != LEFT && filter != DELTA && filter != DELTA_LEFT) {
+          throw new DataFormatException("Unknown row filter " + filter + ".");
+        }
+        int start = y * width;
+        int previous = 0;
+        int previousDelta = 0;
+        for (int x = 0; x < width; x++) {
+          int rgb = 0;
+          int delta = 0;
+          for (int shift = 16, i = 3 * x + offset; shift >= 0; shift -= 8, i++) {
+            int channel;
+            if (filter == LEFT) {
+              channel = row[i] + (previous >> shift);
+            } else {
+              int change = filter == DELTA ? row[i] : row[i] + (previousDelta >> shift);
+              delta |= (change & 0xFF) << shift;
+              channel = change + (base[start + x] >> shift);
+            }
+            rgb |= (channel & 0xFF) << shift;
+          }
+          raster[start + x] = rgb;
+          previous = rgb;
+          previousDelta = delta;
+        }
+      }
+    } finally {
+      inflater.end();
+    }
+    return true;
+  }
+}
@@ -1,20 +1,47 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The SimpleImageProcessor class is an implementation of the IImageProcessor interface. It supports
- * the ability to manipulate layers.
+ * the ability to manipulate layers.<p>Results of transforming layers are kept in a cache keyed by
+ * the pixels of the layer, the transformation and its kernel, so repeating a transformation on the
+ * same pixels does not compute it again.</p><p>Every layer added, removed or replaced, including by
+ * a transformation, is recorded in a history of compacted snapshots, so it can be undone and
+ * redone.</p><p>Layers share their pixels copy-on-write: a duplicated layer, a layer added twice
+ * and a transformation that changes nothing all reference the pixels they were made from rather
+ * than a copy of them, and renaming or hiding a layer never copies its pixels.</p>
  */
 public class SimpleImageProcessor implements IImageProcessor {
 
+  /**
+   * The default number of bytes of transformed pixels kept in the result cache.
+   */
+  public static final long DEFAULT_CACHE_BUDGET = 128L << 20;
+
+  /**
+   * The default number of bytes of compacted history snapshots kept in memory.
+   */
+  public static final long DEFAULT_HISTORY_BUDGET = 256L << 20;
+
   private final ArrayList<IImage> layers;
+  private final ResultCache cache;
+  private final LayerHistory history;
+  private boolean lazy;
 
   /**
    * Default constructor to construct a simple image processing model.
    */
   public SimpleImageProcessor() {
     this.layers = new ArrayList<>();
+    this.cache = new ResultCache(DEFAULT_CACHE_BUDGET);
+    this.history = new LayerHistory(DEFAULT_HISTORY_BUDGET);
   }
 
   @Override
@@ -22,19 +49,54 @@ public class SimpleImageProcessor implements IImageProcessor {
     if (layer == null) {
       throw new IllegalArgumentException("Layers is null");
     }
-    if (!this.layers.isEmpty() && layer.getPixels() != null) {
-      IImage firstLayer = this.layers.get(0);
-      int width = firstLayer.getPixels().length;
-      int height = firstLayer.getPixels()[0].length;
+    for (IImage other : this.layers) {
+      if (other == layer) {
+        // the same image twice would be renamed and hidden together, so it gets a copy instead
+        layer = layer.copy();
+        break;
+      }
+    }
+    if (!this.layers.isEmpty()) {
+      checkDimensions(this.layers.get(0), layer);
+    }
+    this.layers.add(layer);
+    this.history.record(this.layers.size() - 1, null, layer);
+  }
 
-      int width2 = layer.getPixels().length;
-      int height2 = layer.getPixels()[0].length;
+  private static void checkDimensions(IImage firstLayer, IImage layer)
+      throws IllegalArgumentException {
+    if (layer.getWidth() != 0 && (firstLayer.getWidth() != layer.getWidth()
+        || firstLayer.getHeight() != layer.getHeight())) {
+      throw new IllegalArgumentException("Layer is not of same dimensions.");
+    }
+  }
 
-      if (width != width2 || height != height2) {
-        throw new IllegalArgumentException("Layer is not of same dimensions.");
+  @Override
+  public void setLayers(List<IImage> layers) throws IllegalArgumentException {
+    if (layers == null) {
+      throw new IllegalArgumentException("Layers is null");
+    }
+    for (IImage layer : layers) {
+      if (layer == null) {
+        throw new IllegalArgumentException("Layers is null");
       }
+      checkDimensions(layers.get(0), layer);
+    }
+    // every removal and addition is recorded as part of one step, so one undo reverts them all
+    boolean joined = false;
+    for (int i = this.layers.size() - 1; i >= 0; i--) {
+      this.history.record(i, this.layers.remove(i), null, joined);
+      joined = true;
+    }
+    Set<IImage> added = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (IImage layer : layers) {
+      if (!added.add(layer)) {
+        layer = layer.copy();
+      }
+      this.layers.add(layer);
+      this.history.record(this.layers.size() - 1, null, layer, joined);
+      joined = true;
     }
-    this.layers.add(layer);
   }
 
   @Override
@@ -42,7 +104,11 @@ public class SimpleImageProcessor implements IImageProcessor {
     if (layer == null) {
       throw new IllegalArgumentException("Layers is null");
     }
-    this.layers.remove(layer);
+    int index = this.layers.indexOf(layer);
+    if (index != -1) {
+      this.layers.remove(index);
+      this.history.record(index, layer, null);
+    }
   }
 
   @Override
@@ -52,7 +118,10 @@ public class SimpleImageProcessor implements IImageProcessor {
       throw new IllegalArgumentException("Layer to remove or layer to add cannot be null");
     }
     int index = getIndex(layerToRemove);
-    this.layers.set(index, layerToAdd);
+    IImage removed = this.layers.set(index, layerToAdd);
+    if (removed != layerToAdd) {
+      this.history.record(index, removed, layerToAdd);
+    }
   }
 
   @Override
@@ -65,7 +134,13 @@ public class SimpleImageProcessor implements IImageProcessor {
     int index = getIndex(layer);
 
     IImage targetLayer = this.layers.get(index);
-    IImage transformedLayer = targetLayer.applyTransformation(transformation, kernel);
+    if (this.lazy && !(targetLayer instanceof LazyImage)) {
+      targetLayer = new LazyImage(targetLayer);
+    }
+    IImage transformedLayer = this.cache.apply(targetLayer, transformation, kernel);
+    if (isUnchanged(targetLayer, transformedLayer)) {
+      transformedLayer = targetLayer.copy();
+    }
     transformedLayer.setName(newName);
 
     if (replace) {
@@ -76,6 +151,95 @@ public class SimpleImageProcessor implements IImageProcessor {
     }
   }
 
+  // a transformation that left every pixel as it was, so its result can share the layer pixels
+  private static boolean isUnchanged(IImage layer, IImage transformed) {
+    if (layer instanceof LazyImage || layer.getWidth() != transformed.getWidth()
+        || layer.getHeight() != transformed.getHeight()) {
+      return false;
+    }
+    int[] raster = layer.getRaster();
+    return raster != null && Arrays.equals(raster, transformed.getRaster());
+  }
+
+  @Override
+  public void duplicateLayer(IImage layer, String newName) throws IllegalArgumentException {
+    if (layer == null || newName == null) {
+      throw new IllegalArgumentException("Layer or new name cannot be null.");
+    }
+    IImage copy = this.layers.get(getIndex(layer)).copy();
+    copy.setName(newName);
+    addLayer(copy);
+  }
+
+  @Override
+  public long getPixelBytes() {
+    return this.pixelBytes(false);
+  }
+
+  @Override
+  public long getSharedBytes() {
+    return this.pixelBytes(true);
+  }
+
+  // adds up the bytes of each distinct storage of pixels held by the layers, or only of those held
+  // by more than one layer, at four bytes a pixel
+  private long pixelBytes(boolean sharedOnly) {
+    Map<Object, Integer> users = new IdentityHashMap<>();
+    long bytes = 0;
+    for (IImage layer : this.layers) {
+      // a lazy layer holds the pixels of its source until its steps are run
+      while (layer instanceof LazyImage) {
+        layer = ((LazyImage) layer).source();
+      }
+      Object storage = layer instanceof PackedImage ? layer.getRaster() : layer.getPixels();
+      if (storage != null && users.merge(storage, 1, Integer::sum) == (sharedOnly ? 2 : 1)) {
+        bytes += (long) layer.getWidth() * layer.getHeight() * Integer.BYTES;
+      }
+    }
+    return bytes;
+  }
+
+  @Override
+  public void setLazy(boolean lazy) {
+    this.lazy = lazy;
+  }
+
+  @Override
+  public void setCacheBudget(long bytes) throws IllegalArgumentException {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("Cache budget cannot be negative.");
+    }
+    this.cache.setBudget(bytes);
+  }
+
+  @Override
+  public long getCacheHits() {
+    return this.cache.getHits();
+  }
+
+  @Override
+  public long getCacheMisses() {
+    return this.cache.getMisses();
+  }
+
+  @Override
+  public boolean undo() throws IllegalArgumentException {
+    return this.history.undo(this.layers);
+  }
+
+  @Override
+  public boolean redo() throws IllegalArgumentException {
+    return this.history.redo(this.layers);
+  }
+
+  @Override
+  public void setHistoryBudget(long bytes) throws IllegalArgumentException {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("History budget cannot be negative.");
+    }
+    this.history.setBudget(bytes);
+  }
+
   @Override
   public IImage findTopMostLayer() throws IllegalStateException {
     for (int i = this.layers.size() - 1; i >= 0; i--) {
@@ -0,0 +1,394 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class to represent a chain of image transformations applied as one. Consecutive filters and color
+ * transformations are run strip by strip: a strip is a band of whole rows of the result, and every
+ * step computes only the rows of the strip plus the halo of rows the steps after it read, so the
+ * intermediate images only ever exist as a few small strip buffers instead of whole images.
+ * Neighbors outside of the image are resolved through the edge mode of each filter while the halo
+ * is worked out, so rows read from the far side of the image are computed as well.<p>Every row is
+ * computed by the same code as when the steps are applied one after another, so the result is
+ * identical to applying them in order. Steps that can not be run on strips, such as a downsize or
+ * a filter that uses an FFT convolution, are applied to the whole image on their own between the
+ * strip runs.</p><p>The kernel given to apply is not used, as every step has its own kernel.</p>
+ * <p>A chain of filters and color transformations can also be streamed from a row reader to a row
+ * writer. Each step then keeps a small ring of the rows it reads, and hands each row it computes on
+ * to the next step as soon as it is done, so only a few rows per step are ever held in memory.</p>
+ */
+public class TransformChain implements ITransform {
+
+  // pixels of each intermediate strip buffer aimed for, so the buffers of a strip stay in cache
+  private static final int STRIP_PIXELS = 1 << 18;
+  // rows each step of a stream computes at once, past the rows its kernel reads around them
+  private static final int STREAM_ROWS = 32;
+
+  private final List<ITransform> transforms;
+  private final List<KernelMatrix> kernels;
+  private final ParallelExecutor executor;
+
+  /**
+   * Constructs a chain that applies each transformation with its kernel in order.
+   *
+   * @param transforms the transformations to apply, first to last
+   * @param kernels    the kernel of each transformation
+   * @throws IllegalArgumentException if either list or any of their elements is null, the lists
+   *                                  are empty or their sizes differ
+   */
+  public TransformChain(List<ITransform> transforms, List<KernelMatrix> kernels)
+      throws IllegalArgumentException {
+    this(transforms, kernels, ParallelExecutor.common());
+  }
+
+  /**
+   * Constructs a chain that applies each transformation with its kernel in order, splitting the
+   * strips between threads through the given executor. The result does not depend on the
+   * executor.
+   *
+   * @param transforms the transformations to apply, first to last
+   * @param kernels    the kernel of each transformation
+   * @param executor   how the rows of the result are split between threads
+   * @throws IllegalArgumentException if either list or any of their elements is null, the lists
+   *                                  are empty or their sizes differ, or the executor is null
+   */
+  public TransformChain(List<ITransform> transforms, List<KernelMatrix> kernels,
+      ParallelExecutor executor) throws IllegalArgumentException {
+    if (transforms == null || kernels == null) {
+      throw new IllegalArgumentException("Transforms and kernels cannot be null.");
+    }
+    for (int i = 0; i < Math.min(transforms.size(), kernels.size()); i++) {
+      if (transforms.get(i) == null || kernels.get(i) == null) {
+        throw new IllegalArgumentException("Transforms and kernels cannot be null.");
+      }
+    }
+    if (transforms.isEmpty() || transforms.size() != kernels.size()) {
+      throw new IllegalArgumentException("Every transform needs exactly one kernel.");
+    }
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor cannot be null.");
+    }
+    this.transforms = List.copyOf(transforms);
+    this.kernels = List.copyOf(kernels);
+    this.executor = executor;
+  }
+
+  @Override
+  public IImage apply(IImage image, KernelMatrix kernel, Channel color)
+      throws IllegalArgumentException {
+    if (image == null || kernel == null || color == null) {
+      throw new IllegalArgumentException("Fields cannot be null.");
+    }
+    if (color != Channel.RED && color != Channel.GREEN && color != Channel.BLUE) {
+      throw new IllegalArgumentException("Must be a valid 8-bit color channel.");
+    }
+    return this.applyChain(image, color);
+  }
+
+  @Override
+  public IImage apply(IImage image, KernelMatrix kernel) throws IllegalArgumentException {
+    if (image == null || kernel == null) {
+      throw new IllegalArgumentException("Fields cannot be null.");
+    }
+    return this.applyChain(image, null);
+  }
+
+  /**
+   * Applies this chain to an image read one row at a time, writing each row of the result as soon
+   * as it is known. Every step holds only the rows its kernel reads plus a few rows it computes at
+   * once, so the memory used grows with the width of the image and the heights of the kernels but
+   * not with the height of the image. The rows written are the same as the rows of the image that
+   * applying the chain to the whole image gives. Neither the reader nor the writer is closed.
+   *
+   * @param reader the image to transform
+   * @param writer where the rows of the result are written, which must take as many rows of the
+   *               same width as the reader has
+   * @throws IllegalArgumentException if either argument is null, a row can not be read or
+   *                                  written, or a step can not be streamed: only filters that do
+   *                                  not wrap around the image or use an FFT convolution, and
+   *                                  color transformations, can be
+   */
+  public void stream(IRowReader reader, IRowWriter writer) throws IllegalArgumentException {
+    if (reader == null || writer == null) {
+      throw new IllegalArgumentException("Fields cannot be null.");
+    }
+    List<Stage> stages = this.streamStages();
+    if (stages == null) {
+      throw new IllegalArgumentException("Transform cannot be streamed.");
+    }
+
+    int width = reader.getWidth();
+    int height = reader.getHeight();
+    StreamStage first = null;
+    for (int k = stages.size() - 1; k >= 0; k--) {
+      first = new StreamStage(stages.get(k), width, height, first, writer);
+    }
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      reader.readRow(row, 0);
+      first.accept(row, 0);
+    }
+  }
+
+  /**
+   * Checks whether every step of this chain can be streamed, that is whether each is a color
+   * transformation or a filter that neither wraps around the image nor uses an FFT convolution.
+   *
+   * @return true if this chain can be streamed
+   */
+  public boolean canStream() {
+    return this.streamStages() != null;
+  }
+
+  // the stages of a stream, or null if a step can not be streamed
+  private List<Stage> streamStages() {
+    List<Stage> stages = new ArrayList<>();
+    for (int i = 0; i < this.transforms.size(); i++) {
+      Stage stage = this.stageAt(i);
+      // a wrapped row near the top of the image is read from the bottom, which is not read yet
+      if (stage == null || stage.edgeMode == EdgeMode.WRAP) {
+        return null;
+      }
+      stages.add(stage);
+    }
+    return stages;
+  }
+
+  // runs each run of steps that can share strips together, and every other step on its own
+  private IImage applyChain(IImage image, Channel color) {
+    IImage current = image;
+    int i = 0;
+    while (i < this.transforms.size()) {
+      List<Stage> stages = new ArrayList<>();
+      for (Stage stage = this.stageAt(i); stage != null; stage = this.stageAt(i + stages.size())) {
+        stages.add(stage);
+      }
+      if (stages.size() > 1) {
+        current = this.applyStrips(current, stages, color);
+        i += stages.size();
+        continue;
+      }
+      ITransform transform = this.transforms.get(i);
+      KernelMatrix kernel = this.kernels.get(i);
+      current = color == null ? transform.apply(current, kernel)
+          : transform.apply(current, kernel, color);
+      i++;
+    }
+    return current;
+  }
+
+  // the step at the given index as a stage of a strip run, or null if it can not be run on strips
+  private Stage stageAt(int index) {
+    if (index >= this.transforms.size()) {
+      return null;
+    }
+    ITransform transform = this.transforms.get(index);
+    KernelMatrix kernel = this.kernels.get(index);
+    if (transform instanceof ColorTransform) {
+      if (kernel.getKernel().length != 3) {
+        throw new IllegalArgumentException("Kernel must be 3x3 in size.");
+      }
+      return new Stage(null, null, ColorTable.of(kernel));
+    }
+    if (transform instanceof Filter) {
+      Filter filter = (Filter) transform;
+      ConvolutionEngine engine = filter.engineFor(kernel);
+      return engine.isFft() ? null : new Stage(engine, filter.edgeMode(), null);
+    }
+    return null;
+  }
+
+  private IImage applyStrips(IImage image, List<Stage> stages, Channel color) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] source = image.getRaster();
+    int[] result = new int[width * height];
+    boolean red = color == null || color == Channel.RED;
+    boolean green = color == null || color == Channel.GREEN;
+    boolean blue = color == null || color == Channel.BLUE;
+
+    // strips are made tall enough that the halos recomputed by neighboring strips stay small
+    int halo = 0;
+    for (Stage stage : stages) {
+      halo += stage.radius();
+    }
+    int stripRows = Math.max(Math.max(1, STRIP_PIXELS / width), 4 * halo);
+
+    this.executor.forEachBand(width, height, (firstRow, lastRow) -> {
+      int[][] buffers = new int[stages.size()][0];
+      for (int y = firstRow; y < lastRow; y += stripRows) {
+        runStrip(source, width, height, stages, red, green, blue, y,
+            Math.min(y + stripRows, lastRow), buffers, result);
+      }
+    });
+    return image.getImage(width, height, result);
+  }
+
+  // computes the rows of a strip of the result, working out first which rows every stage needs
+  private static void runStrip(int[] source, int width, int height, List<Stage> stages,
+      boolean red, boolean green, boolean blue, int firstRow, int lastRow, int[][] buffers,
+      int[] result) {
+    int count = stages.size();
+    int[][] needed = new int[count][];
+    int[] rows = new int[lastRow - firstRow];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = firstRow + i;
+    }
+    needed[count - 1] = rows;
+    for (int k = count - 1; k > 0; k--) {
+      needed[k - 1] = stages.get(k).inputRows(needed[k], height);
+    }
+
+    ConvolutionEngine.RowLayout wholeRows = row -> row * width;
+    for (int k = 0; k < count; k++) {
+      int[] input = k == 0 ? source : buffers[k - 1];
+      ConvolutionEngine.RowLayout inputRows = k == 0 ? wholeRows : layoutOf(needed[k - 1], width);
+      int[] output = result;
+      ConvolutionEngine.RowLayout outputRows = wholeRows;
+      if (k < count - 1) {
+        if (buffers[k].length < needed[k].length * width) {
+          buffers[k] = new int[needed[k].length * width];
+        }
+        output = buffers[k];
+        outputRows = layoutOf(needed[k], width);
+      }
+
+      // rows read from the far side of the image leave gaps, so each run of rows is done apart
+      int[] stageRows = needed[k];
+      for (int start = 0, end = 1; start < stageRows.length; start = end++) {
+        while (end < stageRows.length && stageRows[end] == stageRows[end - 1] + 1) {
+          end++;
+        }
+        stages.get(k).apply(input, inputRows, width, height, red, green, blue,
+            stageRows[start], stageRows[end - 1] + 1, output, outputRows);
+      }
+    }
+  }
+
+  // rows stored one after another in the order of the given sorted row numbers
+  private static ConvolutionEngine.RowLayout layoutOf(int[] rows, int width) {
+    return row -> Arrays.binarySearch(rows, row) * width;
+  }
+
+  /**
+   * A step of a stream, which keeps the rows it has been given in a ring. A filter reads at most
+   * its radius of rows above and below each row it computes under every edge mode but WRAP, so
+   * the ring only needs room for the rows computed at once plus twice the radius. Rows are
+   * computed once enough rows below them have arrived, and all rows left are computed once the
+   * last row arrives.
+   */
+  private static final class StreamStage {
+
+    private final Stage stage;
+    private final int width;
+    private final int height;
+    private final int capacity;
+    private final int[] rows;
+    private final int[] output;
+    private final StreamStage next;
+    private final IRowWriter writer;
+    private int received;
+    private int produced;
+
+    private StreamStage(Stage stage, int width, int height, StreamStage next,
+        IRowWriter writer) {
+      int radius = stage.radius();
+      this.stage = stage;
+      this.width = width;
+      this.height = height;
+      this.capacity = STREAM_ROWS + 2 * radius;
+      this.rows = new int[this.capacity * width];
+      this.output = new int[(STREAM_ROWS + radius) * width];
+      this.next = next;
+      this.writer = writer;
+    }
+
+    // takes the next row, which replaces a row in the ring that no row left to compute reads
+    private void accept(int[] pixels, int offset) {
+      System.arraycopy(pixels, offset, this.rows, (this.received % this.capacity) * this.width,
+          this.width);
+      this.received++;
+      int ready = this.received == this.height ? this.height
+          : this.received - this.stage.radius();
+      if (ready - this.produced < STREAM_ROWS && this.received < this.height) {
+        return;
+      }
+
+      int firstRow = this.produced;
+      int width = this.width;
+      int capacity = this.capacity;
+      this.stage.apply(this.rows, row -> (row % capacity) * width, width, this.height, true,
+          true, true, firstRow, ready, this.output, row -> (row - firstRow) * width);
+      this.produced = ready;
+      for (int row = firstRow; row < ready; row++) {
+        if (this.next == null) {
+          this.writer.writeRow(this.output, (row - firstRow) * width);
+        } else {
+          this.next.accept(this.output, (row - firstRow) * width);
+        }
+      }
+    }
+  }
+
+  /**
+   * A step of a strip run or a stream: either a filter, applied through its convolution engine,
+   * or a color transformation, applied through its table.
+   */
+  private static final class Stage {
+
+    private final ConvolutionEngine engine;
+    private final EdgeMode edgeMode;
+    private final ColorTable table;
+
+    private Stage(ConvolutionEngine engine, EdgeMode edgeMode, ColorTable table) {
+      this.engine = engine;
+      this.edgeMode = edgeMode;
+      this.table = table;
+    }
+
+    private int radius() {
+      return this.engine == null ? 0 : this.engine.radius();
+    }
+
+    // the sorted rows of the input this stage reads to compute the given sorted rows
+    private int[] inputRows(int[] rows, int height) {
+      int radius = this.radius();
+      if (radius == 0) {
+        return rows;
+      }
+      int[] read = new int[rows.length * (2 * radius + 1)];
+      int count = 0;
+      for (int row : rows) {
+        for (int dy = -radius; dy <= radius; dy++) {
+          int resolved = this.edgeMode.resolve(row + dy, height);
+          if (resolved != -1) {
+            read[count++] = resolved;
+          }
+        }
+      }
+      Arrays.sort(read, 0, count);
+      int unique = 0;
+      for (int i = 0; i < count; i++) {
+        if (unique == 0 || read[i] != read[unique - 1]) {
+          read[unique++] = read[i];
+        }
+      }
+      return Arrays.copyOf(read, unique);
+    }
+
+    private void apply(int[] input, ConvolutionEngine.RowLayout inputRows, int width, int height,
+        boolean red, boolean green, boolean blue, int firstRow, int lastRow, int[] output,
+        ConvolutionEngine.RowLayout outputRows) {
+      if (this.engine != null) {
+        this.engine.convolveRows(input, inputRows, width, height, red, green, blue, firstRow,
+            lastRow, output, outputRows);
+        return;
+      }
+      for (int row = firstRow; row < lastRow; row++) {
+        this.table.apply(input, inputRows.rowStart(row), output, outputRows.rowStart(row), width);
+      }
+    }
+  }
+}
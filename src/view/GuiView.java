@@ -272,7 +272,7 @@ public class GuiView extends JFrame implements IView, ActionListener, ItemListen
       case "Save all":
         fileSaveAllDisplay
             .setText(JOptionPane.showInputDialog("Please enter a folder name to put images in."));
-        String[] fileTypeOptions = {"JPG", "PNG", "PPM"};
+        String[] fileTypeOptions = {"JPG", "PNG", "PPM", "QOI", "PROJECT"};
         JComboBox<String> combobox = new JComboBox<>();
         for (String option : fileTypeOptions) {
           combobox.addItem(option);
@@ -480,4 +480,4 @@ public class GuiView extends JFrame implements IView, ActionListener, ItemListen
   public void registerViewEventListener(IViewListener listener) {
     this.viewListener = listener;
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import controller.AbstractIOFile;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import javax.imageio.ImageIO;
+import model.IImage;
+import model.PackedImage;
+import org.junit.Test;
+
+/**
+ * Test class for AbstractIOFile: Unit tests to ensure PNG files are read into and written from the
+ * correct images.
+ */
+public class AbstractIOFileTest {
+
+  private static File tempFile() throws IOException {
+    File file = File.createTempFile("ioimage", ".png");
+    file.deleteOnExit();
+    return file;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    IImage image = new PackedImage(3, 2, new int[]{0xFF000A, 0x010203, 0x808080, 0, 0xFFFFFF,
+        0x123456});
+    File file = tempFile();
+    new AbstractIOFile().saveImage(image, file.getPath(), "png", false);
+    IImage loaded = new AbstractIOFile().loadImage(file.getPath());
+    assertEquals(3, loaded.getWidth());
+    assertEquals(2, loaded.getHeight());
+    assertArrayEquals(image.getRaster(), loaded.getRaster());
+  }
+
+  // the reader decodes every third column and row of the region straight from the file
+  @Test
+  public void testRegionAndSubsampling() throws IOException {
+    int[] raster = new int[50];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = i * 0x030507;
+    }
+    File file = tempFile();
+    new AbstractIOFile().saveImage(new PackedImage(10, 5, raster), file.getPath(), "png", false);
+    IImage loaded = new AbstractIOFile().loadImage(file.getPath(), new Rectangle(2, 1, 8, 4), 3);
+    assertEquals(3, loaded.getWidth());
+    assertEquals(2, loaded.getHeight());
+    assertArrayEquals(new int[]{raster[12], raster[15], raster[18], raster[42], raster[45],
+        raster[48]}, loaded.getRaster());
+  }
+
+  // images larger than one block are compressed in pieces, which must give the same file on any
+  // number of threads
+  @Test
+  public void testParallelCompression() throws IOException {
+    int[] raster = new int[400 * 300];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = ((i % 400) * 0x010203 + (i / 400) * 0x030201) & 0xFFFFFF;
+    }
+    IImage image = new PackedImage(400, 300, raster);
+    File single = tempFile();
+    File parallel = tempFile();
+    new AbstractIOFile(9, 1).saveImage(image, single.getPath(), "png", false);
+    new AbstractIOFile(9, 4).saveImage(image, parallel.getPath(), "png", false);
+    assertArrayEquals(Files.readAllBytes(single.toPath()), Files.readAllBytes(parallel.toPath()));
+    assertArrayEquals(raster, new AbstractIOFile().loadImage(parallel.getPath()).getRaster());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCompressionLevel() {
+    new AbstractIOFile(10, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidThreads() {
+    new AbstractIOFile(6, 0);
+  }
+
+  // byte interleaved images with an alpha channel are read from their data bank without the alpha
+  @Test
+  public void testAlphaImage() throws IOException {
+    BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_4BYTE_ABGR);
+    image.setRGB(0, 0, 0xFF102030);
+    image.setRGB(1, 0, 0xFFFEDCBA);
+    File file = tempFile();
+    ImageIO.write(image, "png", file);
+    assertArrayEquals(new int[]{0x102030, 0xFEDCBA},
+        new AbstractIOFile().loadImage(file.getPath()).getRaster());
+  }
+
+  // grey images still go through the color conversion of the buffered image
+  @Test
+  public void testGreyImage() throws IOException {
+    BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_BYTE_GRAY);
+    image.getRaster().setSample(0, 0, 0, 0);
+    image.getRaster().setSample(1, 0, 0, 255);
+    File file = tempFile();
+    ImageIO.write(image, "png", file);
+    BufferedImage expected = ImageIO.read(file);
+    int[] raster = new AbstractIOFile().loadImage(file.getPath()).getRaster();
+    for (int x = 0; x < 2; x++) {
+      assertEquals(new Color(expected.getRGB(x, 0)).getRGB() & 0xFFFFFF, raster[x]);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotAnImage() throws IOException {
+    new AbstractIOFile().loadImage(tempFile().getPath());
+  }
+}
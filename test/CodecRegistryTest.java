@@ -0,0 +1,172 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import controller.AbstractIOFile;
+import controller.CodecRegistry;
+import controller.FileType;
+import controller.IOPPMFile;
+import controller.ImageCodec;
+import controller.SimpleImageProcessorController;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import model.IImage;
+import model.PackedImage;
+import model.SimpleImageProcessor;
+import org.junit.Test;
+
+/**
+ * Test class for CodecRegistry: Unit tests to ensure files are read and written with the right
+ * codec.
+ */
+public class CodecRegistryTest {
+
+  private static File writeTemp(String suffix, String contents) throws IOException {
+    File file = File.createTempFile("codec", suffix);
+    file.deleteOnExit();
+    Files.write(file.toPath(), contents.getBytes(StandardCharsets.US_ASCII));
+    return file;
+  }
+
+  @Test
+  public void testForExtension() {
+    CodecRegistry registry = CodecRegistry.getDefault();
+    assertEquals(IOPPMFile.class, registry.forExtension("ppm").getClass());
+    assertEquals(IOPPMFile.class, registry.forExtension("PGM").getClass());
+    assertEquals(AbstractIOFile.class, registry.forExtension("jpg").getClass());
+    assertEquals(AbstractIOFile.class, registry.forExtension("png").getClass());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownExtension() {
+    CodecRegistry.getDefault().forExtension("gif");
+  }
+
+  // the contents of a file decide its codec before its name does
+  @Test
+  public void testMagicBytesBeforeExtension() throws IOException {
+    File file = writeTemp(".png", "P3\n1 1\n255\n1 2 3\n");
+    assertEquals(IOPPMFile.class, CodecRegistry.getDefault().forFile(file.getPath(), "png")
+        .getClass());
+    assertArrayEquals(new int[]{0x010203},
+        CodecRegistry.getDefault().loadImage(file.getPath(), "png").getRaster());
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    IImage image = new PackedImage(2, 1, new int[]{0x102030, 0xFEDCBA});
+    File file = File.createTempFile("codec", ".png");
+    file.deleteOnExit();
+    CodecRegistry.getDefault().saveImage(image, file.getPath(), "png", false);
+    assertArrayEquals(image.getRaster(),
+        CodecRegistry.getDefault().loadImage(file.getPath(), "ppm").getRaster());
+  }
+
+  // a codec registered later takes over the extensions it shares with earlier ones
+  @Test
+  public void testRegisteredCodecReplacesEarlier() {
+    CodecRegistry registry = new CodecRegistry();
+    registry.register(new IOPPMFile());
+    ImageCodec replacement = new IOPPMFile(true);
+    registry.register(replacement);
+    assertSame(replacement, registry.forExtension("ppm"));
+  }
+
+  // a codec for an extension the FileType enum does not know of, as a plugin would add
+  private static final class TestCodec extends IOPPMFile {
+
+    @Override
+    public List<String> getExtensions() {
+      return List.of("tst");
+    }
+  }
+
+  // the controller finds codecs by extension in its registry, not only the built in file types
+  @Test
+  public void testControllerLoadsRegisteredExtension() throws IOException {
+    CodecRegistry registry = new CodecRegistry();
+    registry.register(new TestCodec());
+    File file = writeTemp(".tst", "P3\n1 1\n255\n1 2 3\n");
+    SimpleImageProcessor model = new SimpleImageProcessor();
+    StringBuilder output = new StringBuilder();
+    new SimpleImageProcessorController(model, new StringReader(
+        "create a\ncurrent a\nload " + file.getPath() + "\nclose\n"), output, registry)
+        .startImageProcessor();
+    assertTrue(output.toString().contains("Layer successfully loaded."));
+    assertArrayEquals(new int[]{0x010203}, model.getLayer("a").getRaster());
+  }
+
+  // a codec written against the first version of the interface, which only decodes whole files
+  private static final class WholeFileCodec implements ImageCodec {
+
+    private final ImageCodec ppm = new IOPPMFile();
+
+    @Override
+    public List<String> getExtensions() {
+      return List.of("tst");
+    }
+
+    @Override
+    public boolean matches(byte[] header) {
+      return false;
+    }
+
+    @Override
+    public boolean supportsStreaming() {
+      return false;
+    }
+
+    @Override
+    public boolean supportsRegionRead() {
+      return false;
+    }
+
+    @Override
+    public IImage loadImage(String filename) {
+      return this.ppm.loadImage(filename);
+    }
+
+    @Override
+    public void saveImage(IImage image, String fileName, String extension, boolean binary) {
+      this.ppm.saveImage(image, fileName, "ppm", binary);
+    }
+  }
+
+  // codecs that only decode whole files still read sizes and regions
+  @Test
+  public void testDefaultRegionRead() throws IOException {
+    File file = writeTemp(".tst", "P3\n3 2\n255\n1 1 1 2 2 2 3 3 3\n4 4 4 5 5 5 6 6 6\n");
+    ImageCodec codec = new WholeFileCodec();
+    assertEquals(new Dimension(3, 2), codec.readSize(file.getPath()));
+    IImage image = codec.loadImage(file.getPath(), new Rectangle(1, 0, 2, 2), 2);
+    assertEquals(1, image.getWidth());
+    assertArrayEquals(new int[]{0x020202}, image.getRaster());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDefaultOpenRows() throws IOException {
+    File file = writeTemp(".tst", "P3\n1 1\n255\n1 2 3\n");
+    new WholeFileCodec().openRows(file.getPath());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyRegistry() throws IOException {
+    File file = writeTemp(".ppm", "P3\n1 1\n255\n1 2 3\n");
+    new CodecRegistry().forFile(file.getPath(), "ppm");
+  }
+
+  @Test
+  public void testFileTypeFromExtension() {
+    assertEquals(FileType.JPEG, FileType.fromExtension("JPG"));
+    assertEquals(FileType.PGM, FileType.fromExtension("pgm"));
+    assertEquals("jpeg", FileType.JPEG.toString());
+    assertEquals(List.of("ppm", "pgm"), new IOPPMFile().getExtensions());
+  }
+}
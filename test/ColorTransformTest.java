@@ -9,6 +9,8 @@ import model.IPixel;
 import model.ITransform;
 import model.KernelMatrix;
 import model.PPMImage;
+import model.PackedImage;
+import model.Posn;
 import org.junit.Test;
 
 /**
@@ -87,6 +89,80 @@ public class ColorTransformTest {
     assertEquals(255, sepiaPixels[2][0].getG());
   }
 
+  // the precomputed tables give exactly the rounding of the sum of the three products
+  @Test
+  public void testMatchesDirectComputation() {
+    int[] raster = TestImages.raster(64 * 64, 104729 * 7);
+    IImage image = new PackedImage(64, 64, raster);
+    double[][] sepia = sepiaKernel.getKernel();
+    int[] result = colorTransformObject.apply(image, sepiaKernel).getRaster();
+
+    for (int i = 0; i < raster.length; i++) {
+      int r = (raster[i] >> 16) & 0xFF;
+      int g = (raster[i] >> 8) & 0xFF;
+      int b = raster[i] & 0xFF;
+      int newR = (int) Math.round(sepia[0][0] * r + sepia[1][0] * g + sepia[2][0] * b);
+      int newG = (int) Math.round(sepia[0][1] * r + sepia[1][1] * g + sepia[2][1] * b);
+      int newB = (int) Math.round(sepia[0][2] * r + sepia[1][2] * g + sepia[2][2] * b);
+      assertEquals(Math.min(255, newR), (result[i] >> 16) & 0xFF);
+      assertEquals(Math.min(255, newG), (result[i] >> 8) & 0xFF);
+      assertEquals(Math.min(255, newB), result[i] & 0xFF);
+    }
+  }
+
+  // tables are cached by the values of a kernel, so changing the kernel changes the result
+  @Test
+  public void testChangedKernelIsNotStale() {
+    KernelMatrix kernel = new KernelMatrix(3);
+    kernel.setValue(new Posn(0, 0), 1);
+    kernel.setValue(new Posn(1, 1), 1);
+    kernel.setValue(new Posn(2, 2), 1);
+    IImage image = new PackedImage(1, 1, new int[]{0x102030});
+    assertEquals(0x102030, colorTransformObject.apply(image, kernel).getRaster()[0]);
+
+    kernel.setValue(new Posn(0, 0), 0.5);
+    assertEquals(0x082030, colorTransformObject.apply(image, kernel).getRaster()[0]);
+  }
+
+  @Test
+  public void testFuseMultipliesKernels() {
+    KernelMatrix swap = new KernelMatrix(3);
+    swap.setValue(new Posn(0, 1), 1);
+    swap.setValue(new Posn(1, 0), 1);
+    swap.setValue(new Posn(2, 2), 0.5);
+    double[][] fused = ColorTransform.fuse(swap, swap).getKernel();
+    assertEquals(1, fused[0][0], 0.0);
+    assertEquals(0, fused[0][1], 0.0);
+    assertEquals(1, fused[1][1], 0.0);
+    assertEquals(0.25, fused[2][2], 0.0);
+
+    // greyscale maps every channel to the same value, so the red row of sepia sees it three times
+    double[][] greySepia = ColorTransform.fuse(greyKernel, sepiaKernel).getKernel();
+    assertEquals(0.2126 * (0.393 + 0.769 + 0.189), greySepia[0][0], 1e-12);
+  }
+
+  // fusing only rounds once, which keeps a fused chain within one of the step by step result when
+  // no channel is clamped in between
+  @Test
+  public void testFusedCloseToStrict() {
+    int[] raster = TestImages.raster(32 * 32, 104729 * 11);
+    IImage image = new PackedImage(32, 32, raster);
+    int[] strict = colorTransformObject.apply(
+        colorTransformObject.apply(image, greyKernel), sepiaKernel).getRaster();
+    int[] fused = colorTransformObject.apply(image, ColorTransform.fuse(greyKernel, sepiaKernel))
+        .getRaster();
+    for (int i = 0; i < raster.length; i++) {
+      for (int shift = 0; shift <= 16; shift += 8) {
+        assertEquals((strict[i] >> shift) & 0xFF, (fused[i] >> shift) & 0xFF, 1);
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFuseInvalidKernel() {
+    ColorTransform.fuse(greyKernel, sharpKernel);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testNullImage() {
     colorTransformObject.apply(null, greyKernel, Channel.RED);
@@ -107,4 +183,4 @@ public class ColorTransformTest {
   public void testInvalidKernel() {
     colorTransformObject.apply(checkerboard, sharpKernel, Channel.RED);
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import model.DefaultKernel;
+import model.DownSize;
+import model.IImage;
+import model.KernelMatrix;
+import model.PackedImage;
+import org.junit.Test;
+
+/**
+ * Test class for DownSize: Unit tests to ensure the accuracy of methods and constructors within the
+ * DownSize class.
+ */
+public class DownSizeTest {
+
+  KernelMatrix blankKernel = DefaultKernel.BLANK.getDefaultKernel();
+
+  // 4x4 grey gradient where each channel of pixel (x, y) is 10x + 40y
+  private static IImage createGradient() {
+    int[] raster = new int[16];
+    for (int y = 0; y < 4; y++) {
+      for (int x = 0; x < 4; x++) {
+        int value = 10 * x + 40 * y;
+        raster[y * 4 + x] = (value << 16) | (value << 8) | value;
+      }
+    }
+    return new PackedImage(4, 4, raster);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidRatio() {
+    new DownSize(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullImage() {
+    new DownSize(0.5).apply(null, blankKernel);
+  }
+
+  // every mapped location falls exactly on a pixel of the original image
+  @Test
+  public void testHalfSizeCopiesPixels() {
+    IImage image = createGradient();
+    IImage downSized = new DownSize(0.5).apply(image, blankKernel);
+    int[] raster = image.getRaster();
+
+    assertEquals(2, downSized.getWidth());
+    assertEquals(2, downSized.getHeight());
+    assertArrayEquals(new int[]{raster[0], raster[2], raster[8], raster[10]},
+        downSized.getRaster());
+  }
+
+  // mapped locations between pixels are interpolated from the four surrounding pixels
+  @Test
+  public void testInterpolation() {
+    IImage downSized = new DownSize(0.75).apply(createGradient(), blankKernel);
+
+    assertEquals(3, downSized.getWidth());
+    assertEquals(3, downSized.getHeight());
+    // (4/3, 4/3) maps to 10 * 4/3 + 40 * 4/3
+    assertEquals(67, downSized.getRaster()[4] & 0xFF);
+    // (8/3, 8/3) maps to 10 * 8/3 + 40 * 8/3
+    assertEquals(133, downSized.getRaster()[8] & 0xFF);
+    // the first row and column are copied from the original image
+    assertEquals(0, downSized.getRaster()[0] & 0xFF);
+    assertEquals(40, downSized.getRaster()[3] & 0xFF);
+  }
+
+  // a target size gives the same result as the ratio that leads to that size
+  @Test
+  public void testTargetSize() {
+    IImage byRatio = new DownSize(0.75).apply(createGradient(), blankKernel);
+    IImage bySize = new DownSize(3, 3).apply(createGradient(), blankKernel);
+
+    assertEquals(3, bySize.getWidth());
+    assertEquals(3, bySize.getHeight());
+    assertArrayEquals(byRatio.getRaster(), bySize.getRaster());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidTargetSize() {
+    new DownSize(0, 3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTargetLargerThanImage() {
+    new DownSize(5, 3).apply(createGradient(), blankKernel);
+  }
+}
@@ -0,0 +1,49 @@
+import static org.junit.Assert.assertEquals;
+
+import model.EdgeMode;
+import org.junit.Test;
+
+/**
+ * Test class for EdgeMode: Unit tests to ensure indices outside of an image are resolved properly
+ * for each edge mode.
+ */
+public class EdgeModeTest {
+
+  // indices inside of the image are never changed
+  @Test
+  public void testInsideIndex() {
+    for (EdgeMode mode : EdgeMode.values()) {
+      assertEquals(0, mode.resolve(0, 5));
+      assertEquals(3, mode.resolve(3, 5));
+    }
+  }
+
+  @Test
+  public void testZero() {
+    assertEquals(-1, EdgeMode.ZERO.resolve(-1, 5));
+    assertEquals(-1, EdgeMode.ZERO.resolve(5, 5));
+  }
+
+  @Test
+  public void testClamp() {
+    assertEquals(0, EdgeMode.CLAMP.resolve(-2, 5));
+    assertEquals(4, EdgeMode.CLAMP.resolve(6, 5));
+  }
+
+  @Test
+  public void testMirror() {
+    assertEquals(1, EdgeMode.MIRROR.resolve(-1, 5));
+    assertEquals(2, EdgeMode.MIRROR.resolve(-2, 5));
+    assertEquals(3, EdgeMode.MIRROR.resolve(5, 5));
+    assertEquals(2, EdgeMode.MIRROR.resolve(6, 5));
+    assertEquals(0, EdgeMode.MIRROR.resolve(-3, 1));
+    assertEquals(1, EdgeMode.MIRROR.resolve(-3, 2));
+  }
+
+  @Test
+  public void testWrap() {
+    assertEquals(4, EdgeMode.WRAP.resolve(-1, 5));
+    assertEquals(0, EdgeMode.WRAP.resolve(5, 5));
+    assertEquals(1, EdgeMode.WRAP.resolve(-4, 5));
+  }
+}
@@ -1,14 +1,18 @@
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.awt.Color;
 import model.Channel;
+import model.ConvolutionStrategy;
 import model.DefaultKernel;
+import model.EdgeMode;
 import model.Filter;
 import model.IImage;
 import model.IPixel;
 import model.ITransform;
 import model.KernelMatrix;
 import model.PPMImage;
+import model.PackedImage;
 import org.junit.Test;
 
 /**
@@ -87,6 +91,97 @@ public class FilterTest {
     assertEquals(255, blurredPixels[2][0].getG());
   }
 
+  // applying all three channels at once matches applying each channel one after another
+  @Test
+  public void testApplyAllChannelsMatchesPerChannel() {
+    IImage image = TestImages.image(7, 5, 7919 * 31);
+
+    for (KernelMatrix kernel : new KernelMatrix[]{blurKernel, sharpKernel}) {
+      IImage perChannel = filterObject.apply(filterObject.apply(
+          filterObject.apply(image, kernel, Channel.RED), kernel, Channel.GREEN), kernel,
+          Channel.BLUE);
+      assertArrayEquals(perChannel.getRaster(), filterObject.apply(image, kernel).getRaster());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullImageAllChannels() {
+    filterObject.apply(null, blurKernel);
+  }
+
+  // with clamped edges a uniform image stays uniform after blurring, unlike with zeroed edges
+  @Test
+  public void testApplyWithEdgeModes() {
+    int[] raster = new int[5 * 4];
+    java.util.Arrays.fill(raster, 0x101010);
+    IImage uniform = new PackedImage(5, 4, raster);
+
+    assertArrayEquals(raster, new Filter(EdgeMode.CLAMP).apply(uniform, blurKernel).getRaster());
+    assertArrayEquals(raster, new Filter(EdgeMode.MIRROR).apply(uniform, blurKernel).getRaster());
+    assertArrayEquals(raster, new Filter(EdgeMode.WRAP).apply(uniform, blurKernel).getRaster());
+    assertEquals(0x090909, new Filter(EdgeMode.ZERO).apply(uniform, blurKernel).getRaster()[0]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullEdgeMode() {
+    new Filter(null);
+  }
+
+  // the separable path rounds once per channel, while each of the nine terms of the direct path
+  // is rounded and may be off by up to one half
+  @Test
+  public void testSeparableCloseToDirect() {
+    int[] raster = TestImages.raster(9 * 6, 104729 * 17);
+    IImage image = new PackedImage(9, 6, raster);
+    int[] direct = new Filter(EdgeMode.MIRROR, ConvolutionStrategy.DIRECT)
+        .apply(image, blurKernel).getRaster();
+    int[] separable = new Filter(EdgeMode.MIRROR, ConvolutionStrategy.SEPARABLE)
+        .apply(image, blurKernel).getRaster();
+
+    for (int i = 0; i < raster.length; i++) {
+      for (int shift = 0; shift <= 16; shift += 8) {
+        assertEquals((direct[i] >> shift) & 0xFF, (separable[i] >> shift) & 0xFF, 4.5);
+      }
+    }
+  }
+
+  // the FFT and separable paths both round once per channel, so they only differ by the error of
+  // the floating point arithmetic
+  @Test
+  public void testFftMatchesSeparable() {
+    int[] raster = TestImages.raster(11 * 7, 104729 * 31);
+    IImage image = new PackedImage(11, 7, raster);
+    for (EdgeMode edgeMode : EdgeMode.values()) {
+      int[] separable = new Filter(edgeMode, ConvolutionStrategy.SEPARABLE)
+          .apply(image, blurKernel).getRaster();
+      int[] fft = new Filter(edgeMode, ConvolutionStrategy.FFT)
+          .apply(image, blurKernel).getRaster();
+      for (int i = 0; i < raster.length; i++) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+          assertEquals((separable[i] >> shift) & 0xFF, (fft[i] >> shift) & 0xFF, 1);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFftSingleChannel() {
+    int[] blurred = new Filter(EdgeMode.ZERO, ConvolutionStrategy.FFT)
+        .apply(checkerboard, blurKernel, Channel.GREEN).getRaster();
+    int[] original = checkerboard.getRaster();
+    for (int i = 0; i < original.length; i++) {
+      assertEquals(original[i] & 0xFF00FF, blurred[i] & 0xFF00FF);
+    }
+  }
+
+  // the default strategy keeps the 3x3 blur on the exact direct path
+  @Test
+  public void testAutoKeepsSmallKernelsExact() {
+    assertArrayEquals(
+        new Filter(EdgeMode.ZERO, ConvolutionStrategy.DIRECT).apply(checkerboard, blurKernel)
+            .getRaster(), filterObject.apply(checkerboard, blurKernel).getRaster());
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testNullImage() {
     filterObject.apply(null, blurKernel, Channel.RED);
@@ -0,0 +1,238 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import controller.IOPPMFile;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import model.IImage;
+import model.IRowReader;
+import model.IRowWriter;
+import model.PackedImage;
+import org.junit.Test;
+
+/**
+ * Test class for IOPPMFile: Unit tests to ensure PPM files are read into the correct images.
+ */
+public class IOPPMFileTest {
+
+  private static String writeTemp(String contents) throws IOException {
+    File file = File.createTempFile("ioppm", ".ppm");
+    file.deleteOnExit();
+    Files.write(file.toPath(), contents.getBytes(StandardCharsets.US_ASCII));
+    return file.getPath();
+  }
+
+  @Test
+  public void testLoadImage() throws IOException {
+    String file = writeTemp("P3\n2 1\n255\n255 0 10\n1 2 3\n");
+    IImage image = new IOPPMFile().loadImage(file);
+    assertEquals(2, image.getWidth());
+    assertEquals(1, image.getHeight());
+    assertArrayEquals(new int[]{0xFF000A, 0x010203}, image.getRaster());
+  }
+
+  // comments may start anywhere on a line and values may be split across lines in any way
+  @Test
+  public void testCommentsAndWhitespace() throws IOException {
+    String file = writeTemp("P3 # plain ppm\n# Created by hand\n1\t2 255\r\n7 8\n9 # first\n"
+        + "  10 11 12#second");
+    IImage image = new IOPPMFile().loadImage(file);
+    assertArrayEquals(new int[]{0x070809, 0x0A0B0C}, image.getRaster());
+  }
+
+  // a comment right after a value ends the value, and the values after it are still read
+  @Test
+  public void testCommentAfterValue() throws IOException {
+    String file = writeTemp("P3\n2 1\n255#max\n1 2 3#first\n4 5 6\n");
+    assertArrayEquals(new int[]{0x010203, 0x040506},
+        new IOPPMFile().loadImage(file).getRaster());
+  }
+
+  // large plain files are parsed in chunks, which must give the same image as reading in order
+  @Test
+  public void testLargePlainFile() throws IOException {
+    int width = 700;
+    int height = 600;
+    int[] expected = TestImages.raster(width * height, 40503);
+    StringBuilder contents = new StringBuilder("P3\n" + width + " " + height + "\n255\n");
+    for (int i = 0; i < expected.length; i++) {
+      contents.append((expected[i] >> 16) & 0xFF).append(i % 7 == 0 ? "\n" : " ")
+          .append((expected[i] >> 8) & 0xFF).append(i % 11 == 0 ? "#note 1 2\n" : " ")
+          .append(expected[i] & 0xFF).append(i % 5 == 0 ? "\n" : "  ");
+    }
+    assertArrayEquals(expected, new IOPPMFile().loadImage(writeTemp(contents.toString()))
+        .getRaster());
+  }
+
+  // every second column and row of the region from (1, 0), 3 pixels wide and 3 tall
+  @Test
+  public void testRegionAndSubsampling() throws IOException {
+    IImage image = new PackedImage(4, 3, new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+    for (boolean binary : new boolean[]{false, true}) {
+      File file = File.createTempFile("ioppm", ".ppm");
+      file.deleteOnExit();
+      new IOPPMFile().saveImage(image, file.getPath(), "ppm", binary);
+      IImage region = new IOPPMFile().loadImage(file.getPath(), new Rectangle(1, 0, 3, 3), 2);
+      assertEquals(2, region.getWidth());
+      assertEquals(2, region.getHeight());
+      assertArrayEquals(new int[]{2, 4, 10, 12}, region.getRaster());
+      assertEquals(new Dimension(4, 3), new IOPPMFile().readSize(file.getPath()));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegionOutsideImage() throws IOException {
+    String file = writeTemp("P3\n2 1\n255\n255 0 10\n1 2 3\n");
+    new IOPPMFile().loadImage(file, new Rectangle(2, 0, 1, 1), 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotPPM() throws IOException {
+    new IOPPMFile().loadImage(writeTemp("P4\n1 1\n0\n"));
+  }
+
+  @Test
+  public void testBinaryRoundTrip() throws IOException {
+    IImage image = new PackedImage(3, 2, new int[]{0xFF000A, 0x010203, 0x808080, 0, 0xFFFFFF,
+        0x123456});
+    File file = File.createTempFile("ioppm", ".ppm");
+    file.deleteOnExit();
+    new IOPPMFile().saveImage(image, file.getPath(), "ppm", true);
+
+    // 3 bytes per pixel after the header
+    assertEquals("P6\n3 2\n255\n".length() + 18, file.length());
+    assertArrayEquals(image.getRaster(), new IOPPMFile().loadImage(file.getPath()).getRaster());
+  }
+
+  // plain files are streamed straight from the raster with one pixel per line
+  @Test
+  public void testPlainRoundTrip() throws IOException {
+    IImage image = new PackedImage(2, 2, new int[]{0xFF000A, 0x010203, 0x808080, 0xFFFFFF});
+    File file = File.createTempFile("ioppm", ".ppm");
+    file.deleteOnExit();
+    new IOPPMFile().saveImage(image, file.getPath(), "ppm", false);
+
+    String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+    assertEquals(true, contents.startsWith("P3\n"));
+    assertEquals(true, contents.endsWith("\n1 2 3\n128 128 128\n255 255 255\n"));
+    assertArrayEquals(image.getRaster(), new IOPPMFile().loadImage(file.getPath()).getRaster());
+  }
+
+  // grey images are written as a single channel and read back with equal channels
+  @Test
+  public void testGreyRoundTrip() throws IOException {
+    IImage image = new PackedImage(2, 2, new int[]{0x000000, 0x404040, 0x808080, 0xFFFFFF});
+    for (boolean binary : new boolean[]{true, false}) {
+      File file = File.createTempFile("ioppm", ".pgm");
+      file.deleteOnExit();
+      new IOPPMFile().saveImage(image, file.getPath(), "pgm", binary);
+      assertArrayEquals(image.getRaster(), new IOPPMFile().loadImage(file.getPath()).getRaster());
+    }
+  }
+
+  // samples above a maximum value of 255 take two bytes and are scaled down to 0-255
+  @Test
+  public void testSixteenBitBinary() throws IOException {
+    File file = File.createTempFile("ioppm", ".pgm");
+    file.deleteOnExit();
+    byte[] header = "P5 # wide\n2 1\n65535\n".getBytes(StandardCharsets.US_ASCII);
+    byte[] contents = new byte[header.length + 4];
+    System.arraycopy(header, 0, contents, 0, header.length);
+    contents[header.length] = (byte) 0xFF;
+    contents[header.length + 1] = (byte) 0xFF;
+    contents[header.length + 2] = (byte) 0x80;
+    contents[header.length + 3] = (byte) 0x00;
+    Files.write(file.toPath(), contents);
+    assertArrayEquals(new int[]{0xFFFFFF, 0x808080},
+        new IOPPMFile().loadImage(file.getPath()).getRaster());
+  }
+
+  // plain and binary files with the same samples give the same pixels whatever their maximum
+  // value, whether read whole, by region or a row at a time
+  @Test
+  public void testMaximumValueBothEncodings() throws IOException {
+    int[] samples = {1023, 0, 512, 100, 1100, 3};
+    StringBuilder plain = new StringBuilder("P3\n2 1\n1023\n");
+    byte[] header = "P6\n2 1\n1023\n".getBytes(StandardCharsets.US_ASCII);
+    byte[] binary = new byte[header.length + samples.length * 2];
+    System.arraycopy(header, 0, binary, 0, header.length);
+    for (int i = 0; i < samples.length; i++) {
+      plain.append(samples[i]).append(i % 3 == 2 ? "\n" : " ");
+      binary[header.length + 2 * i] = (byte) (Math.min(samples[i], 1023) >> 8);
+      binary[header.length + 2 * i + 1] = (byte) Math.min(samples[i], 1023);
+    }
+    File binaryFile = File.createTempFile("ioppm", ".ppm");
+    binaryFile.deleteOnExit();
+    Files.write(binaryFile.toPath(), binary);
+
+    int[] expected = {0xFF0080, 0x19FF01};
+    for (String file : new String[]{writeTemp(plain.toString()), binaryFile.getPath()}) {
+      assertArrayEquals(expected, new IOPPMFile().loadImage(file).getRaster());
+      assertArrayEquals(new int[]{expected[1]},
+          new IOPPMFile().loadImage(file, new Rectangle(1, 0, 1, 1), 1).getRaster());
+      int[] row = new int[2];
+      try (IRowReader reader = new IOPPMFile().openRows(file)) {
+        reader.readRow(row, 0);
+      }
+      assertArrayEquals(expected, row);
+    }
+  }
+
+  // files written and read a row at a time are the same as files written and read whole
+  @Test
+  public void testRows() throws IOException {
+    IImage image = new PackedImage(3, 2, new int[]{0xFF000A, 0x010203, 0x808080, 0, 0xFFFFFF,
+        0x123456});
+    for (String extension : new String[]{"ppm", "pgm"}) {
+      for (boolean binary : new boolean[]{true, false}) {
+        File whole = File.createTempFile("ioppm", "." + extension);
+        File rows = File.createTempFile("ioppm", "." + extension);
+        whole.deleteOnExit();
+        rows.deleteOnExit();
+        new IOPPMFile().saveImage(image, whole.getPath(), extension, binary);
+        try (IRowWriter writer = new IOPPMFile().createRows(rows.getPath(), extension, binary,
+            3, 2)) {
+          writer.writeRow(image.getRaster(), 0);
+          writer.writeRow(image.getRaster(), 3);
+        }
+        assertArrayEquals(Files.readAllBytes(whole.toPath()), Files.readAllBytes(rows.toPath()));
+
+        int[] read = new int[6];
+        try (IRowReader reader = new IOPPMFile().openRows(rows.getPath())) {
+          assertEquals(3, reader.getWidth());
+          assertEquals(2, reader.getHeight());
+          reader.readRow(read, 0);
+          reader.readRow(read, 3);
+        }
+        assertArrayEquals(new IOPPMFile().loadImage(rows.getPath()).getRaster(), read);
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReadPastLastRow() throws IOException {
+    try (IRowReader reader = new IOPPMFile().openRows(writeTemp("P3\n1 1\n255\n1 2 3\n"))) {
+      reader.readRow(new int[2], 0);
+      reader.readRow(new int[2], 1);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedBinaryFile() throws IOException {
+    new IOPPMFile().loadImage(writeTemp("P6\n2 1\n255\nabcde"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedFile() throws IOException {
+    new IOPPMFile().loadImage(writeTemp("P3\n2 1\n255\n255 0 10\n1 2\n"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingFile() {
+    new IOPPMFile().loadImage("does/not/exist.ppm");
+  }
+}
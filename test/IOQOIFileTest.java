@@ -0,0 +1,87 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import controller.IOQOIFile;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import model.IImage;
+import model.PackedImage;
+import org.junit.Test;
+
+/**
+ * Test class for IOQOIFile: Unit tests to ensure QOI files are read into and written from the
+ * correct images.
+ */
+public class IOQOIFileTest {
+
+  private static File tempFile() throws IOException {
+    File file = File.createTempFile("ioqoi", ".qoi");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private static String writeTemp(byte[] contents) throws IOException {
+    File file = tempFile();
+    Files.write(file.toPath(), contents);
+    return file.getPath();
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    // long runs, repeated colors, small and large differences between neighbors
+    int[] raster = new int[40 * 30];
+    for (int i = 0; i < raster.length; i++) {
+      if (i < 200) {
+        raster[i] = 0x102030;
+      } else if (i % 3 == 0) {
+        raster[i] = 0xFF00FF;
+      } else {
+        raster[i] = (i * 40503) & 0xFFFFFF;
+      }
+    }
+    IImage image = new PackedImage(40, 30, raster);
+    File file = tempFile();
+    new IOQOIFile().saveImage(image, file.getPath(), "qoi", false);
+    IImage loaded = new IOQOIFile().loadImage(file.getPath());
+    assertEquals(40, loaded.getWidth());
+    assertEquals(30, loaded.getHeight());
+    assertArrayEquals(raster, loaded.getRaster());
+  }
+
+  // a file of a single color is one run per 62 pixels after the header
+  @Test
+  public void testRunsOfOneColor() throws IOException {
+    IImage image = new PackedImage(100, 1, new int[100]);
+    File file = tempFile();
+    new IOQOIFile().saveImage(image, file.getPath(), "qoi", false);
+    assertEquals(14 + 2 + 8, file.length());
+    assertArrayEquals(new int[100], new IOQOIFile().loadImage(file.getPath()).getRaster());
+  }
+
+  // every kind of chunk, including a color with alpha whose alpha is dropped
+  @Test
+  public void testDecodeChunks() throws IOException {
+    byte[] contents = {'q', 'o', 'i', 'f', 0, 0, 0, 6, 0, 0, 0, 1, 4, 0,
+        (byte) 0xFE, 10, 20, 30,
+        (byte) 0xFF, 1, 2, 3, (byte) 0x80,
+        (byte) 0x7F,
+        (byte) (0x80 | 40), (byte) 0x9A,
+        (byte) 0xC1,
+        0, 0, 0, 0, 0, 0, 0, 1};
+    assertArrayEquals(new int[]{0x0A141E, 0x010203, 0x020304, 0x0B0B0E, 0x0B0B0E, 0x0B0B0E},
+        new IOQOIFile().loadImage(writeTemp(contents)).getRaster());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotQoi() throws IOException {
+    new IOQOIFile().loadImage(writeTemp(new byte[]{'P', '3', '\n', '1', ' ', '1', '\n', '2', '5',
+        '5', '\n', '0', ' ', '0', ' ', '0', '\n'}));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedFile() throws IOException {
+    new IOQOIFile().loadImage(writeTemp(new byte[]{'q', 'o', 'i', 'f', 0, 0, 0, 2, 0, 0, 0, 1, 3,
+        0, (byte) 0xFE, 10, 20, 30, 0, 0, 0, 0, 0, 0, 0, 1}));
+  }
+}
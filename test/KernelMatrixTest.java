@@ -1,5 +1,8 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import model.DefaultKernel;
 import model.KernelMatrix;
 import model.Posn;
 import org.junit.Test;
@@ -89,4 +92,34 @@ public class KernelMatrixTest {
     assertEquals(-2.5, testKernel.getKernel()[2][1], 0.001);
     assertEquals(.15, testKernel.getKernel()[0][2], 0.001);
   }
-}
\ No newline at end of file
+
+  // the default blur is the outer product of [1/4, 1/2, 1/4] with itself
+  @Test
+  public void testSeparableBlur() {
+    KernelMatrix blur = DefaultKernel.BLUR.getDefaultKernel();
+    assertTrue(blur.isSeparable());
+    double[][] factors = blur.getSeparableFactors();
+    for (int x = 0; x < 3; x++) {
+      for (int y = 0; y < 3; y++) {
+        assertEquals(blur.getKernel()[x][y], factors[0][x] * factors[1][y], 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testNotSeparable() {
+    assertFalse(DefaultKernel.SHARPEN.getDefaultKernel().isSeparable());
+    assertFalse(new KernelMatrix(3).isSeparable());
+  }
+
+  // changing a value after the kernel was analyzed causes it to be analyzed again
+  @Test
+  public void testSeparableAfterChange() {
+    KernelMatrix kernel = new KernelMatrix(3);
+    kernel.setValue(new Posn(1, 1), 1.0);
+    assertTrue(kernel.isSeparable());
+    kernel.setValue(new Posn(0, 1), 1.0);
+    kernel.setValue(new Posn(1, 0), 1.0);
+    assertFalse(kernel.isSeparable());
+  }
+}
@@ -0,0 +1,108 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import model.ColorTransform;
+import model.DefaultKernel;
+import model.DownSize;
+import model.Filter;
+import model.IImage;
+import model.KernelMatrix;
+import model.LazyImage;
+import model.Posn;
+import model.SimpleImageProcessor;
+import org.junit.Test;
+
+/**
+ * Test class for LazyImage: Unit tests to ensure the steps of a lazy image are only run when its
+ * pixels are needed, and give the same image as running them right away.
+ */
+public class LazyImageTest {
+
+  private static IImage createImage() {
+    return TestImages.image("layer", 12, 9, 40503);
+  }
+
+  @Test
+  public void testMatchesEager() {
+    IImage image = createImage();
+    IImage eager = new DownSize(0.5).apply(new Filter().apply(image,
+        DefaultKernel.SHARPEN.getDefaultKernel()), DefaultKernel.BLANK.getDefaultKernel());
+    IImage lazy = new LazyImage(image)
+        .applyTransformation(new Filter(), DefaultKernel.SHARPEN.getDefaultKernel())
+        .applyTransformation(new DownSize(0.5), DefaultKernel.BLANK.getDefaultKernel());
+
+    assertFalse(((LazyImage) lazy).isEvaluated());
+    assertEquals("layer", lazy.getName());
+    assertArrayEquals(eager.getRaster(), lazy.getRaster());
+    assertTrue(((LazyImage) lazy).isEvaluated());
+    assertEquals(6, lazy.getWidth());
+  }
+
+  // filters and color transformations keep the size, so asking for it runs nothing
+  @Test
+  public void testSizeWithoutEvaluation() {
+    LazyImage lazy = (LazyImage) new LazyImage(createImage())
+        .applyTransformation(new Filter(), DefaultKernel.BLUR.getDefaultKernel());
+    assertEquals(12, lazy.getWidth());
+    assertEquals(9, lazy.getHeight());
+    assertFalse(lazy.isEvaluated());
+  }
+
+  // consecutive color transformations round after each step, as they do when run right away
+  @Test
+  public void testColorStepsMatchEager() {
+    IImage image = TestImages.image(20, 20, 104729 * 7);
+    KernelMatrix sepia = DefaultKernel.SEPIA.getDefaultKernel();
+    KernelMatrix grey = DefaultKernel.GREYSCALE.getDefaultKernel();
+    IImage eager = new ColorTransform().apply(new ColorTransform().apply(image, sepia), grey);
+    IImage lazy = new LazyImage(image).applyTransformation(new ColorTransform(), sepia)
+        .applyTransformation(new ColorTransform(), grey);
+    assertArrayEquals(eager.getRaster(), lazy.getRaster());
+  }
+
+  // steps that leave every pixel as it is are skipped
+  @Test
+  public void testIdentitySkipped() {
+    IImage image = createImage();
+    KernelMatrix identity = new KernelMatrix(3);
+    for (int i = 0; i < 3; i++) {
+      identity.setValue(new Posn(i, i), 1);
+    }
+    IImage lazy = new LazyImage(image).applyTransformation(new ColorTransform(), identity);
+    assertArrayEquals(image.getRaster(), lazy.getRaster());
+  }
+
+  // a transformed layer that is replaced is never computed
+  @Test
+  public void testLazyProcessor() {
+    SimpleImageProcessor model = new SimpleImageProcessor();
+    model.setLazy(true);
+    IImage image = createImage();
+    model.addLayer(image);
+    model.transformLayer(image, new Filter(), DefaultKernel.BLUR.getDefaultKernel(), true,
+        "layer");
+    IImage transformed = model.getLayer("layer");
+    assertTrue(transformed instanceof LazyImage);
+    assertFalse(((LazyImage) transformed).isEvaluated());
+
+    model.replaceLayer(transformed, createImage());
+    assertFalse(((LazyImage) transformed).isEvaluated());
+  }
+
+  // a copy shares the recipe, so running the steps for one runs them for both
+  @Test
+  public void testCopySharesRecipe() {
+    LazyImage lazy = (LazyImage) new LazyImage(createImage())
+        .applyTransformation(new Filter(), DefaultKernel.BLUR.getDefaultKernel());
+    LazyImage copy = (LazyImage) lazy.copy();
+    copy.setName("copy");
+    assertEquals("layer", lazy.getName());
+    assertFalse(lazy.isEvaluated());
+    int[] raster = copy.getRaster();
+    assertTrue(lazy.isEvaluated());
+    assertSame(raster, lazy.getRaster());
+  }
+}
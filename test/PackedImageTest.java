@@ -0,0 +1,108 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import model.Channel;
+import model.ColorTransform;
+import model.DefaultKernel;
+import model.DownSize;
+import model.Filter;
+import model.IImage;
+import model.IPixel;
+import model.KernelMatrix;
+import model.PPMImage;
+import model.PackedImage;
+import model.Pixel;
+import model.Posn;
+import org.junit.Test;
+
+/**
+ * Test class for PackedImage: Unit tests to ensure the accuracy of methods and constructors within
+ * the PackedImage class.
+ */
+public class PackedImageTest {
+
+  IImage checkerboard = new PackedImage(2, 2, Color.PINK, Color.YELLOW);
+  IImage ppmCheckerboard = new PPMImage(2, 2, Color.PINK, Color.YELLOW);
+  KernelMatrix blurKernel = DefaultKernel.BLUR.getDefaultKernel();
+  KernelMatrix sharpKernel = DefaultKernel.SHARPEN.getDefaultKernel();
+  KernelMatrix sepiaKernel = DefaultKernel.SEPIA.getDefaultKernel();
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullRaster() {
+    new PackedImage(2, 2, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMismatchedRaster() {
+    new PackedImage(2, 2, new int[3]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullPixels() {
+    new PackedImage((IPixel[][]) null);
+  }
+
+  // the raster is stored row-major with each pixel packed as 0xRRGGBB
+  @Test
+  public void testRasterLayout() {
+    IPixel[][] pixels = new IPixel[2][1];
+    pixels[0][0] = new Pixel(new Posn(0, 0), 1, 2, 3);
+    pixels[1][0] = new Pixel(new Posn(1, 0), 255, 128, 0);
+    IImage image = new PackedImage(pixels);
+
+    assertEquals(2, image.getWidth());
+    assertEquals(1, image.getHeight());
+    assertArrayEquals(new int[]{0x010203, 0xFF8000}, image.getRaster());
+  }
+
+  // the checkerboard layout matches the one created by PPMImage
+  @Test
+  public void testCheckerboardMatchesPPMImage() {
+    assertArrayEquals(ppmCheckerboard.getRaster(), checkerboard.getRaster());
+    assertArrayEquals(new PPMImage(3, 3, Color.GREEN, Color.BLUE).getRaster(),
+        new PackedImage(3, 3, Color.GREEN, Color.BLUE).getRaster());
+  }
+
+  @Test
+  public void testGetPixels() {
+    IPixel[][] pixels = checkerboard.getPixels();
+    assertEquals(255, pixels[0][0].getR());
+    assertEquals(175, pixels[0][0].getG());
+    assertEquals(255, pixels[2][0].getG());
+    assertEquals(0, pixels[3][1].getB());
+    assertEquals(3, pixels[3][1].getPosition().getX());
+    assertEquals(1, pixels[3][1].getPosition().getY());
+  }
+
+  // transformations on a packed image give the same result as on the equivalent PPMImage
+  @Test
+  public void testTransformationsMatchPPMImage() {
+    assertArrayEquals(ppmCheckerboard.applyTransformation(new Filter(), blurKernel).getRaster(),
+        checkerboard.applyTransformation(new Filter(), blurKernel).getRaster());
+    assertArrayEquals(ppmCheckerboard.applyTransformation(new Filter(), sharpKernel).getRaster(),
+        checkerboard.applyTransformation(new Filter(), sharpKernel).getRaster());
+    assertArrayEquals(
+        ppmCheckerboard.applyTransformation(new ColorTransform(), sepiaKernel).getRaster(),
+        checkerboard.applyTransformation(new ColorTransform(), sepiaKernel).getRaster());
+    assertArrayEquals(
+        ppmCheckerboard.applyTransformation(new DownSize(0.5), blurKernel).getRaster(),
+        checkerboard.applyTransformation(new DownSize(0.5), blurKernel).getRaster());
+  }
+
+  @Test
+  public void testTransformationKeepsPackedImage() {
+    IImage blurred = checkerboard.applyTransformation(new Filter(), blurKernel, Channel.RED);
+    assertEquals(PackedImage.class, blurred.getClass());
+  }
+
+  @Test
+  public void testConvertImage() {
+    BufferedImage converted = checkerboard.convertImage();
+    assertEquals(4, converted.getWidth());
+    assertEquals(4, converted.getHeight());
+    assertEquals(Color.PINK.getRGB(), converted.getRGB(0, 0));
+    assertEquals(Color.YELLOW.getRGB(), converted.getRGB(2, 0));
+  }
+}
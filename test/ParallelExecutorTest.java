@@ -0,0 +1,72 @@
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.concurrent.ForkJoinPool;
+import model.Channel;
+import model.ColorTransform;
+import model.ConvolutionStrategy;
+import model.DefaultKernel;
+import model.DownSize;
+import model.EdgeMode;
+import model.Filter;
+import model.IImage;
+import model.KernelMatrix;
+import model.ParallelExecutor;
+import org.junit.Test;
+
+/**
+ * Test class for ParallelExecutor: Unit tests to ensure that transformations split between threads
+ * produce exactly the same images as when they run on a single thread.
+ */
+public class ParallelExecutorTest {
+
+  // a minimum of a few pixels splits even these small images into many bands
+  ParallelExecutor parallel = new ParallelExecutor(new ForkJoinPool(4), 5);
+  ParallelExecutor sequential = ParallelExecutor.sequential();
+  IImage image = TestImages.image(23, 17, 104729 * 13);
+  KernelMatrix blurKernel = DefaultKernel.BLUR.getDefaultKernel();
+  KernelMatrix sharpKernel = DefaultKernel.SHARPEN.getDefaultKernel();
+  KernelMatrix sepiaKernel = DefaultKernel.SEPIA.getDefaultKernel();
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullPool() {
+    new ParallelExecutor(null, 5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonPositiveMinimum() {
+    new ParallelExecutor(ForkJoinPool.commonPool(), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new ColorTransform(null);
+  }
+
+  @Test
+  public void testFilterMatchesSequential() {
+    for (ConvolutionStrategy strategy : ConvolutionStrategy.values()) {
+      for (EdgeMode edgeMode : EdgeMode.values()) {
+        assertArrayEquals(
+            new Filter(edgeMode, strategy, sequential).apply(image, sharpKernel).getRaster(),
+            new Filter(edgeMode, strategy, parallel).apply(image, sharpKernel).getRaster());
+        assertArrayEquals(
+            new Filter(edgeMode, strategy, sequential).apply(image, blurKernel, Channel.GREEN)
+                .getRaster(),
+            new Filter(edgeMode, strategy, parallel).apply(image, blurKernel, Channel.GREEN)
+                .getRaster());
+      }
+    }
+  }
+
+  @Test
+  public void testColorTransformMatchesSequential() {
+    assertArrayEquals(new ColorTransform(sequential).apply(image, sepiaKernel).getRaster(),
+        new ColorTransform(parallel).apply(image, sepiaKernel).getRaster());
+  }
+
+  @Test
+  public void testDownSizeMatchesSequential() {
+    assertArrayEquals(new DownSize(0.6, sequential).apply(image, sepiaKernel).getRaster(),
+        new DownSize(0.6, parallel).apply(image, sepiaKernel).getRaster());
+  }
+}
@@ -0,0 +1,136 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import controller.ProjectFile;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import model.IImage;
+import model.PPMImage;
+import org.junit.Test;
+
+/**
+ * Test class for ProjectFile: Unit tests to ensure every layer of a project is written to and read
+ * back from a single file.
+ */
+public class ProjectFileTest {
+
+  private static File tempFile() throws IOException {
+    File file = File.createTempFile("project", ".ipp");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private static IImage layer(String name, int seed, boolean visible) {
+    IImage image = TestImages.image(name, 30, 20, seed);
+    image.setVisibility(visible);
+    return image;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<IImage> layers = List.of(layer("first", 40503, true), layer("second", 7, false),
+        layer("third", 0x010101, true));
+    File file = tempFile();
+    ProjectFile.save(layers, file.getPath());
+
+    List<IImage> loaded = new ProjectFile(file.getPath()).loadAll();
+    assertEquals(3, loaded.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(layers.get(i).getName(), loaded.get(i).getName());
+      assertEquals(layers.get(i).getVisibility(), loaded.get(i).getVisibility());
+      assertEquals(30, loaded.get(i).getWidth());
+      assertEquals(20, loaded.get(i).getHeight());
+      assertArrayEquals(layers.get(i).getRaster(), loaded.get(i).getRaster());
+    }
+  }
+
+  // a layer is found through the table and decoded on its own
+  @Test
+  public void testLoadSingleLayer() throws IOException {
+    IImage second = layer("second", 7, false);
+    File file = tempFile();
+    ProjectFile.save(List.of(layer("first", 40503, true), second), file.getPath());
+
+    ProjectFile project = new ProjectFile(file.getPath());
+    assertEquals(2, project.getLayerCount());
+    assertEquals(List.of("first", "second"), project.getLayerNames());
+    IImage loaded = project.loadLayer("second");
+    assertFalse(loaded.getVisibility());
+    assertArrayEquals(second.getRaster(), loaded.getRaster());
+    assertArrayEquals(second.getRaster(), project.loadLayer(1).getRaster());
+  }
+
+  // layers that were created but never loaded have no pixels
+  @Test
+  public void testEmptyLayer() throws IOException {
+    IImage empty = new PPMImage();
+    empty.setName("empty");
+    File file = tempFile();
+    ProjectFile.save(List.of(empty), file.getPath());
+
+    IImage loaded = new ProjectFile(file.getPath()).loadLayer(0);
+    assertEquals("empty", loaded.getName());
+    assertEquals(0, loaded.getWidth());
+  }
+
+  @Test
+  public void testExtensionAdded() throws IOException {
+    File file = tempFile();
+    String name = file.getPath().substring(0, file.getPath().length() - 4);
+    ProjectFile.save(List.of(layer("first", 3, true)), name);
+    assertTrue(file.length() > 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingLayer() throws IOException {
+    File file = tempFile();
+    ProjectFile.save(List.of(layer("first", 3, true)), file.getPath());
+    new ProjectFile(file.getPath()).loadLayer("second");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotAProject() throws IOException {
+    File file = tempFile();
+    Files.write(file.toPath(), new byte[]{'P', '3', '\n', '1', ' ', '1'});
+    new ProjectFile(file.getPath());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedProject() throws IOException {
+    File file = tempFile();
+    ProjectFile.save(List.of(layer("first", 40503, true)), file.getPath());
+    byte[] contents = Files.readAllBytes(file.toPath());
+    Files.write(file.toPath(), Arrays.copyOf(contents, contents.length - 10));
+    new ProjectFile(file.getPath()).loadLayer(0);
+  }
+
+  // a project saved over another takes its place whole, leaving no other file behind
+  @Test
+  public void testSaveReplacesProject() throws IOException {
+    Path directory = Files.createTempDirectory("project");
+    String name = directory.resolve("layers.ipp").toString();
+    ProjectFile.save(List.of(layer("first", 3, true), layer("second", 7, true)), name);
+    ProjectFile.save(List.of(layer("third", 11, false)), name);
+    assertEquals(List.of("third"), new ProjectFile(name).getLayerNames());
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  // a name length past the end of the file is rejected before an array of that length is made
+  @Test(expected = IllegalArgumentException.class)
+  public void testHugeNameLength() throws IOException {
+    File file = tempFile();
+    Files.write(file.toPath(), ByteBuffer.allocate(16).put(new byte[]{'I', 'P', 'P', 'J'})
+        .putInt(1).putInt(1).putInt(Integer.MAX_VALUE - 8).array());
+    new ProjectFile(file.getPath());
+  }
+}
@@ -0,0 +1,48 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import model.RowDeltaCodec;
+import org.junit.Test;
+
+/**
+ * Test class for RowDeltaCodec: Unit tests to ensure filtered and deflated rows read back to the
+ * same pixels.
+ */
+public class RowDeltaCodecTest {
+
+  @Test
+  public void testRoundTrip() throws DataFormatException {
+    int[] raster = TestImages.raster(7 * 5, 40503);
+    byte[] data = RowDeltaCodec.deflate(raster, null, 7, 0, 5);
+    int[] result = new int[raster.length];
+    assertTrue(RowDeltaCodec.inflate(ByteBuffer.wrap(data), result, null, 7, 0, 5));
+    assertArrayEquals(raster, result);
+  }
+
+  // rows filtered against a base read back against it, whichever filter each row chose
+  @Test
+  public void testRoundTripAgainstBase() throws DataFormatException {
+    int[] base = TestImages.raster(7 * 5, 40503);
+    int[] raster = base.clone();
+    for (int i = 7; i < 14; i++) {
+      raster[i] ^= 0x010101;
+    }
+    raster[30] = 0xFFFFFF;
+    byte[] data = RowDeltaCodec.deflate(raster, base, 7, 1, 5);
+    int[] result = new int[raster.length];
+    assertTrue(RowDeltaCodec.inflate(ByteBuffer.wrap(data), result, base, 7, 1, 5));
+    assertArrayEquals(Arrays.copyOfRange(raster, 7, 35), Arrays.copyOfRange(result, 7, 35));
+  }
+
+  @Test
+  public void testTruncated() throws DataFormatException {
+    int[] raster = TestImages.raster(7 * 5, 104729);
+    byte[] data = RowDeltaCodec.deflate(raster, null, 7, 0, 5);
+    ByteBuffer input = ByteBuffer.wrap(data, 0, data.length / 2);
+    assertFalse(RowDeltaCodec.inflate(input, new int[raster.length], null, 7, 0, 5));
+  }
+}
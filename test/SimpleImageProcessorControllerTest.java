@@ -0,0 +1,104 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import controller.SimpleImageProcessorController;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import model.SimpleImageProcessor;
+import org.junit.Test;
+
+/**
+ * Test class for SimpleImageProcessorController: Unit tests to ensure commands that write files
+ * never leave a file half written, and that loads print the files they read only when asked to.
+ */
+public class SimpleImageProcessorControllerTest {
+
+  private static final String IMAGE = "P3\n2 2\n255\n10 20 30\n40 50 60\n70 80 90\n100 110 120\n";
+
+  private static String run(String commands) {
+    StringBuilder output = new StringBuilder();
+    new SimpleImageProcessorController(new SimpleImageProcessor(), new StringReader(commands),
+        output).startImageProcessor();
+    return output.toString();
+  }
+
+  private static Path writeImage(Path directory) throws IOException {
+    Path file = directory.resolve("image.ppm");
+    Files.write(file, IMAGE.getBytes(StandardCharsets.US_ASCII));
+    return file;
+  }
+
+  // a verbose load prints the header and every pixel of the file, and other loads print nothing
+  @Test
+  public void testVerboseLoad() throws IOException {
+    Path file = writeImage(Files.createTempDirectory("load"));
+    PrintStream out = System.out;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+    try {
+      assertTrue(run("create a\ncurrent a\nload " + file + "\nclose\n")
+          .contains("Layer successfully loaded."));
+      assertEquals("", printed.toString(StandardCharsets.UTF_8));
+      assertTrue(run("create a\ncurrent a\nload " + file + " verbose\nclose\n")
+          .contains("Layer successfully loaded."));
+    } finally {
+      System.setOut(out);
+    }
+    String log = printed.toString(StandardCharsets.UTF_8);
+    assertTrue(log.contains("Width of image: 2"));
+    assertTrue(log.contains("Color of pixel (0,0): 10,20,30"));
+    assertTrue(log.contains("Color of pixel (1,1): 100,110,120"));
+  }
+
+  // streaming a file into itself would truncate the input before it is read
+  @Test
+  public void testStreamIntoItself() throws IOException {
+    Path directory = Files.createTempDirectory("stream");
+    Path file = writeImage(directory);
+    String output = run("stream " + file + " " + file + " blur\nclose\n");
+    assertTrue(output.contains("Failed to stream."));
+    assertArrayEquals(IMAGE.getBytes(StandardCharsets.US_ASCII), Files.readAllBytes(file));
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  // the output only takes the place of the old file once it is written in full
+  @Test
+  public void testStreamReplacesOutput() throws IOException {
+    Path directory = Files.createTempDirectory("stream");
+    Path file = writeImage(directory);
+    Path result = directory.resolve("result.ppm");
+    Files.write(result, "old".getBytes(StandardCharsets.US_ASCII));
+    String output = run("stream " + file + " " + result + " greyscale\nclose\n");
+    assertTrue(output.contains("Image successfully streamed."));
+    assertTrue(new String(Files.readAllBytes(result), StandardCharsets.US_ASCII)
+        .startsWith("P3"));
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(2, files.count());
+    }
+  }
+
+  // a stream that fails part of the way leaves the old output and no other file behind
+  @Test
+  public void testFailedStreamKeepsOutput() throws IOException {
+    Path directory = Files.createTempDirectory("stream");
+    Path file = directory.resolve("short.ppm");
+    Files.write(file, "P3\n2 2\n255\n10 20 30\n".getBytes(StandardCharsets.US_ASCII));
+    Path result = directory.resolve("result.ppm");
+    Files.write(result, "old".getBytes(StandardCharsets.US_ASCII));
+    String output = run("stream " + file + " " + result + " blur\nclose\n");
+    assertTrue(output.contains("Failed to stream."));
+    assertEquals("old", new String(Files.readAllBytes(result), StandardCharsets.US_ASCII));
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(2, files.count());
+    }
+  }
+}
@@ -0,0 +1,370 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import model.ColorTransform;
+import model.DefaultKernel;
+import model.DownSize;
+import model.EdgeMode;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import model.Filter;
+import model.IImage;
+import model.IImageProcessor;
+import model.ITransform;
+import model.KernelMatrix;
+import model.LazyImage;
+import model.PackedImage;
+import model.Posn;
+import model.SimpleImageProcessor;
+import org.junit.Test;
+
+/**
+ * Test class for SimpleImageProcessor: Unit tests to ensure repeated transformations of the same
+ * pixels are answered by the result cache with the same images as computing them, and that changes
+ * to the layers are undone and redone exactly, and that layers share their pixels until they are
+ * changed.
+ */
+public class SimpleImageProcessorTest {
+
+  private static IImage createImage(String name) {
+    return TestImages.image(name, 16, 12, 40503);
+  }
+
+  // black and white pixels in the order of the Thue-Morse sequence, or with the colors swapped,
+  // which a polynomial hash modulo 2^64 can not tell apart
+  private static IImage thueMorse(String name, boolean swapped) {
+    int[] raster = new int[128 * 128];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = (Integer.bitCount(i) % 2 == 1) != swapped ? 0xFFFFFF : 0;
+    }
+    IImage image = new PackedImage(128, 128, raster);
+    image.setName(name);
+    return image;
+  }
+
+  private static IImage blur(IImageProcessor model, String layer, String newName) {
+    model.transformLayer(model.getLayer(layer), new Filter(),
+        DefaultKernel.BLUR.getDefaultKernel(), false, newName);
+    return model.getLayer(newName);
+  }
+
+  // rasters whose first hashes collide are still told apart by the second
+  @Test
+  public void testHashCollisionMisses() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(thueMorse("layer", false));
+    model.addLayer(thueMorse("swapped", true));
+    blur(model, "layer", "first");
+    IImage second = blur(model, "swapped", "second");
+
+    assertEquals(2, model.getCacheMisses());
+    assertEquals(0, model.getCacheHits());
+    assertArrayEquals(new Filter().apply(thueMorse("swapped", true),
+        DefaultKernel.BLUR.getDefaultKernel()).getRaster(), second.getRaster());
+  }
+
+  @Test
+  public void testRepeatHits() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(createImage("layer"));
+    IImage first = blur(model, "layer", "first");
+    IImage second = blur(model, "layer", "second");
+
+    assertEquals(1, model.getCacheMisses());
+    assertEquals(1, model.getCacheHits());
+    assertSame(first.getRaster(), second.getRaster());
+    assertEquals("first", first.getName());
+    assertEquals("second", second.getName());
+    assertArrayEquals(new Filter().apply(createImage("layer"),
+        DefaultKernel.BLUR.getDefaultKernel()).getRaster(), second.getRaster());
+  }
+
+  // results are found by the pixels of a layer, not by the layer itself
+  @Test
+  public void testSamePixelsHit() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(createImage("one"));
+    model.addLayer(createImage("two"));
+    blur(model, "one", "blurredOne");
+    blur(model, "two", "blurredTwo");
+    assertEquals(1, model.getCacheHits());
+  }
+
+  // the edge mode, the kernel and the type of transformation are all part of what a result is
+  // found by
+  @Test
+  public void testParametersMiss() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(createImage("layer"));
+    IImage layer = model.getLayer("layer");
+    model.transformLayer(layer, new Filter(EdgeMode.ZERO),
+        DefaultKernel.BLUR.getDefaultKernel(), false, "zero");
+    model.transformLayer(layer, new Filter(EdgeMode.CLAMP),
+        DefaultKernel.BLUR.getDefaultKernel(), false, "clamp");
+    model.transformLayer(layer, new Filter(EdgeMode.CLAMP),
+        DefaultKernel.SHARPEN.getDefaultKernel(), false, "sharpen");
+    model.transformLayer(layer, new ColorTransform(), DefaultKernel.SEPIA.getDefaultKernel(),
+        false, "sepia");
+    assertEquals(0, model.getCacheHits());
+    assertEquals(4, model.getCacheMisses());
+  }
+
+  @Test
+  public void testDownSizeRatio() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(createImage("layer"));
+    for (double ratio : new double[]{0.5, 0.25, 0.5}) {
+      model.replaceLayer(model.getLayer("layer"), createImage("layer"));
+      model.transformLayer(model.getLayer("layer"), new DownSize(ratio),
+          DefaultKernel.BLANK.getDefaultKernel(), true, "layer");
+    }
+    assertEquals(1, model.getCacheHits());
+    assertEquals(2, model.getCacheMisses());
+    assertEquals(8, model.getLayer("layer").getWidth());
+  }
+
+  // the least recently used results are dropped once the budget is used up
+  @Test
+  public void testBudget() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(createImage("layer"));
+    model.setCacheBudget(1024);
+    IImage layer = model.getLayer("layer");
+    model.transformLayer(layer, new ColorTransform(), DefaultKernel.SEPIA.getDefaultKernel(),
+        false, "sepia");
+    model.transformLayer(layer, new ColorTransform(), DefaultKernel.GREYSCALE.getDefaultKernel(),
+        false, "greyscale");
+    model.transformLayer(layer, new ColorTransform(), DefaultKernel.GREYSCALE.getDefaultKernel(),
+        false, "greyscale2");
+    model.transformLayer(layer, new ColorTransform(), DefaultKernel.SEPIA.getDefaultKernel(),
+        false, "sepia2");
+    assertEquals(1, model.getCacheHits());
+    assertEquals(3, model.getCacheMisses());
+
+    model.setCacheBudget(0);
+    blur(model, "layer", "blurred");
+    blur(model, "layer", "blurred2");
+    assertEquals(1, model.getCacheHits());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeBudget() {
+    new SimpleImageProcessor().setCacheBudget(-1);
+  }
+
+  private static void transform(IImageProcessor model, ITransform transform,
+      KernelMatrix kernel) {
+    model.transformLayer(model.getLayer("layer"), transform, kernel, true, "layer");
+  }
+
+  // undoes a chain of replacing transformations back to the original layer and redoes it again,
+  // with every step but the newest read back from a compacted snapshot
+  private static void checkUndoChain(IImageProcessor model) {
+    model.addLayer(createImage("layer"));
+    ITransform[] transforms = {new Filter(), new ColorTransform(), new Filter(),
+        new ColorTransform()};
+    KernelMatrix[] kernels = {DefaultKernel.BLUR.getDefaultKernel(),
+        DefaultKernel.SEPIA.getDefaultKernel(), DefaultKernel.SHARPEN.getDefaultKernel(),
+        DefaultKernel.GREYSCALE.getDefaultKernel()};
+    int[][] rasters = new int[kernels.length + 1][];
+    rasters[0] = model.getLayer("layer").getRaster();
+    for (int i = 0; i < kernels.length; i++) {
+      transform(model, transforms[i], kernels[i]);
+      rasters[i + 1] = model.getLayer("layer").getRaster();
+    }
+    for (int i = kernels.length - 1; i >= 0; i--) {
+      assertTrue(model.undo());
+      assertEquals(1, model.getAllImages().size());
+      assertArrayEquals(rasters[i], model.getLayer("layer").getRaster());
+    }
+    for (int i = 1; i <= kernels.length; i++) {
+      assertTrue(model.redo());
+      assertArrayEquals(rasters[i], model.getLayer("layer").getRaster());
+    }
+    assertFalse(model.redo());
+    for (int i = 0; i <= kernels.length; i++) {
+      assertTrue(model.undo());
+    }
+    assertTrue(model.getAllImages().isEmpty());
+    assertFalse(model.undo());
+  }
+
+  @Test
+  public void testUndoChain() {
+    checkUndoChain(new SimpleImageProcessor());
+  }
+
+  // with no memory budget every compacted snapshot is read back from the history file
+  @Test
+  public void testUndoChainSpilled() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.setHistoryBudget(0);
+    checkUndoChain(model);
+  }
+
+  @Test
+  public void testUndoDownSize() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(createImage("layer"));
+    model.transformLayer(model.getLayer("layer"), new DownSize(0.5),
+        DefaultKernel.BLANK.getDefaultKernel(), true, "layer");
+    transform(model, new ColorTransform(), DefaultKernel.SEPIA.getDefaultKernel());
+    IImage sepia = model.getLayer("layer");
+    assertTrue(model.undo());
+    assertTrue(model.undo());
+    assertEquals(16, model.getLayer("layer").getWidth());
+    assertArrayEquals(createImage("layer").getRaster(), model.getLayer("layer").getRaster());
+    assertTrue(model.redo());
+    assertTrue(model.redo());
+    assertEquals(8, model.getLayer("layer").getWidth());
+    assertArrayEquals(sepia.getRaster(), model.getLayer("layer").getRaster());
+  }
+
+  // a removed layer comes back at its index, with its name and visibility
+  @Test
+  public void testUndoRemove() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(createImage("bottom"));
+    model.addLayer(createImage("middle"));
+    model.addLayer(createImage("top"));
+    model.getLayer("middle").setVisibility(true);
+    model.removeLayer(model.getLayer("middle"));
+    model.removeLayer(model.getLayer("top"));
+    assertTrue(model.undo());
+    assertTrue(model.undo());
+    assertEquals(3, model.getAllImages().size());
+    assertEquals("middle", model.getLayer(1).getName());
+    assertTrue(model.getLayer(1).getVisibility());
+    assertArrayEquals(createImage("middle").getRaster(), model.getLayer(1).getRaster());
+    assertTrue(model.redo());
+    assertEquals("top", model.getLayer(1).getName());
+  }
+
+  // a new change forgets the changes that were undone
+  @Test
+  public void testChangeForgetsRedo() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(createImage("layer"));
+    transform(model, new ColorTransform(), DefaultKernel.SEPIA.getDefaultKernel());
+    assertTrue(model.undo());
+    transform(model, new Filter(), DefaultKernel.BLUR.getDefaultKernel());
+    assertFalse(model.redo());
+    assertTrue(model.undo());
+    assertArrayEquals(createImage("layer").getRaster(), model.getLayer("layer").getRaster());
+  }
+
+  // lazy layers are held as they are until their pixels are known
+  @Test
+  public void testUndoLazy() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.setLazy(true);
+    model.addLayer(createImage("layer"));
+    transform(model, new Filter(), DefaultKernel.BLUR.getDefaultKernel());
+    transform(model, new ColorTransform(), DefaultKernel.SEPIA.getDefaultKernel());
+    IImage sepia = model.getLayer("layer");
+    assertTrue(model.undo());
+    assertTrue(model.getLayer("layer") instanceof LazyImage);
+    assertFalse(((LazyImage) model.getLayer("layer")).isEvaluated());
+    assertTrue(model.undo());
+    assertArrayEquals(createImage("layer").getRaster(), model.getLayer("layer").getRaster());
+    assertTrue(model.redo());
+    assertTrue(model.redo());
+    assertSame(sepia, model.getLayer("layer"));
+  }
+
+  // replacing every layer is one step, even with more layers than the history keeps steps
+  @Test
+  public void testUndoSetLayers() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(createImage("layer"));
+    transform(model, new ColorTransform(), DefaultKernel.SEPIA.getDefaultKernel());
+    model.addLayer(createImage("top"));
+    IImage sepia = model.getLayer(0);
+    List<IImage> layers = new ArrayList<>();
+    for (int i = 0; i < 150; i++) {
+      layers.add(createImage("layer" + i));
+    }
+    model.setLayers(layers);
+    assertEquals(150, model.getAllImages().size());
+    assertTrue(model.undo());
+    assertEquals(2, model.getAllImages().size());
+    assertArrayEquals(sepia.getRaster(), model.getLayer("layer").getRaster());
+    assertEquals("top", model.getLayer(1).getName());
+    assertTrue(model.redo());
+    assertEquals("layer149", model.getLayer(149).getName());
+    assertTrue(model.undo());
+    assertTrue(model.undo());
+    assertTrue(model.undo());
+    assertArrayEquals(createImage("layer").getRaster(), model.getLayer("layer").getRaster());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeHistoryBudget() {
+    new SimpleImageProcessor().setHistoryBudget(-1);
+  }
+
+  // a duplicate shares the pixels of its layer until one of them is transformed
+  @Test
+  public void testDuplicateShares() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(createImage("layer"));
+    model.duplicateLayer(model.getLayer("layer"), "copy");
+    IImage copy = model.getLayer("copy");
+    copy.setVisibility(false);
+    assertSame(model.getLayer("layer").getRaster(), copy.getRaster());
+    assertEquals("layer", model.getLayer(0).getName());
+    assertTrue(model.getLayer(0).getVisibility());
+    assertEquals(16 * 12 * 4, model.getPixelBytes());
+    assertEquals(16 * 12 * 4, model.getSharedBytes());
+
+    model.transformLayer(copy, new Filter(), DefaultKernel.BLUR.getDefaultKernel(), true,
+        "copy");
+    assertArrayEquals(createImage("layer").getRaster(), model.getLayer("layer").getRaster());
+    assertEquals(2 * 16 * 12 * 4, model.getPixelBytes());
+    assertEquals(0, model.getSharedBytes());
+  }
+
+  // adding the same image twice adds a copy, so the layers can be renamed apart
+  @Test
+  public void testAddSameImage() {
+    IImageProcessor model = new SimpleImageProcessor();
+    IImage image = createImage("layer");
+    model.addLayer(image);
+    model.addLayer(image);
+    model.getLayer(1).setName("copy");
+    assertNotSame(model.getLayer(0), model.getLayer(1));
+    assertEquals("layer", model.getLayer(0).getName());
+    assertSame(model.getLayer(0).getRaster(), model.getLayer(1).getRaster());
+    assertEquals(16 * 12 * 4, model.getSharedBytes());
+  }
+
+  // a transformation that changes no pixel shares the pixels of its layer
+  @Test
+  public void testUnchangedTransformShares() {
+    IImageProcessor model = new SimpleImageProcessor();
+    model.addLayer(createImage("layer"));
+    KernelMatrix identity = new KernelMatrix(3);
+    for (int i = 0; i < 3; i++) {
+      identity.setValue(new Posn(i, i), 1);
+    }
+    model.transformLayer(model.getLayer("layer"), new ColorTransform(), identity, false, "same");
+    assertSame(model.getLayer("layer").getRaster(), model.getLayer("same").getRaster());
+    assertEquals("same", model.getLayer(1).getName());
+    assertEquals("layer", model.getLayer(0).getName());
+  }
+
+  @Test
+  public void testCheckerboardsShare() {
+    IImage first = new PackedImage(3, 4, Color.RED, Color.BLUE);
+    IImage second = new PackedImage(3, 4, Color.RED, Color.BLUE);
+    IImage other = new PackedImage(3, 4, Color.RED, Color.GREEN);
+    assertSame(first.getRaster(), second.getRaster());
+    assertNotSame(first.getRaster(), other.getRaster());
+    assertArrayEquals(first.getRaster(), new PackedImage(first.getPixels()).getRaster());
+  }
+}
@@ -0,0 +1,55 @@
+import model.IImage;
+import model.PackedImage;
+
+/**
+ * Images shared by the tests. Each pixel is its index times an odd multiplier, keeping the low 24
+ * bits, so neighboring pixels differ in all three channels and different multipliers give
+ * unrelated images.
+ */
+final class TestImages {
+
+  private TestImages() {
+  }
+
+  /**
+   * Creates a packed raster whose pixels vary in all three channels.
+   *
+   * @param length     the number of pixels
+   * @param multiplier the odd number each index is multiplied by
+   * @return the packed raster
+   */
+  static int[] raster(int length, int multiplier) {
+    int[] raster = new int[length];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = (i * multiplier) & 0xFFFFFF;
+    }
+    return raster;
+  }
+
+  /**
+   * Creates an image whose pixels vary in all three channels.
+   *
+   * @param width      the width of the image
+   * @param height     the height of the image
+   * @param multiplier the odd number each index is multiplied by
+   * @return the image
+   */
+  static IImage image(int width, int height, int multiplier) {
+    return new PackedImage(width, height, raster(width * height, multiplier));
+  }
+
+  /**
+   * Creates a named image whose pixels vary in all three channels.
+   *
+   * @param name       the name of the image
+   * @param width      the width of the image
+   * @param height     the height of the image
+   * @param multiplier the odd number each index is multiplied by
+   * @return the image
+   */
+  static IImage image(String name, int width, int height, int multiplier) {
+    IImage image = image(width, height, multiplier);
+    image.setName(name);
+    return image;
+  }
+}
@@ -0,0 +1,163 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import model.Channel;
+import model.ColorTransform;
+import model.ConvolutionStrategy;
+import model.DefaultKernel;
+import model.DownSize;
+import model.EdgeMode;
+import model.Filter;
+import model.IImage;
+import model.IRowReader;
+import model.IRowWriter;
+import model.ITransform;
+import model.KernelMatrix;
+import model.ParallelExecutor;
+import model.TransformChain;
+import org.junit.Test;
+
+/**
+ * Test class for TransformChain: Unit tests to ensure a chain gives the same image as applying its
+ * transformations one after another.
+ */
+public class TransformChainTest {
+
+  private static final KernelMatrix BLUR = DefaultKernel.BLUR.getDefaultKernel();
+  private static final KernelMatrix SHARPEN = DefaultKernel.SHARPEN.getDefaultKernel();
+  private static final KernelMatrix SEPIA = DefaultKernel.SEPIA.getDefaultKernel();
+
+  private static IImage sequential(IImage image, List<ITransform> transforms,
+      List<KernelMatrix> kernels) {
+    for (int i = 0; i < transforms.size(); i++) {
+      image = transforms.get(i).apply(image, kernels.get(i));
+    }
+    return image;
+  }
+
+  @Test
+  public void testMatchesSequential() {
+    IImage image = TestImages.image(2048, 300, 40503);
+    for (EdgeMode mode : EdgeMode.values()) {
+      List<ITransform> transforms = List.of(new Filter(mode), new Filter(mode),
+          new ColorTransform());
+      List<KernelMatrix> kernels = List.of(BLUR, SHARPEN, SEPIA);
+      IImage chained = new TransformChain(transforms, kernels).apply(image, BLUR);
+      assertArrayEquals(mode.toString(), sequential(image, transforms, kernels).getRaster(),
+          chained.getRaster());
+    }
+  }
+
+  // the result does not depend on how the strips are split between threads
+  @Test
+  public void testExecutorsMatch() {
+    IImage image = TestImages.image(1500, 200, 40503);
+    List<ITransform> transforms = List.of(new ColorTransform(),
+        new Filter(EdgeMode.WRAP, ConvolutionStrategy.SEPARABLE), new Filter(EdgeMode.MIRROR));
+    List<KernelMatrix> kernels = List.of(SEPIA, BLUR, SHARPEN);
+    IImage expected = sequential(image, transforms, kernels);
+    assertArrayEquals(expected.getRaster(), new TransformChain(transforms, kernels,
+        ParallelExecutor.sequential()).apply(image, BLUR).getRaster());
+    assertArrayEquals(expected.getRaster(), new TransformChain(transforms, kernels,
+        ParallelExecutor.common()).apply(image, BLUR).getRaster());
+  }
+
+  @Test
+  public void testSingleChannel() {
+    IImage image = TestImages.image(64, 40, 40503);
+    IImage expected = new Filter(EdgeMode.CLAMP).apply(new Filter(EdgeMode.CLAMP)
+        .apply(image, BLUR, Channel.GREEN), SHARPEN, Channel.GREEN);
+    IImage chained = new TransformChain(List.of(new Filter(EdgeMode.CLAMP),
+        new Filter(EdgeMode.CLAMP)), List.of(BLUR, SHARPEN)).apply(image, BLUR, Channel.GREEN);
+    assertArrayEquals(expected.getRaster(), chained.getRaster());
+  }
+
+  // a downsize can not be run on strips, so it splits the chain in two
+  @Test
+  public void testDownSizeInChain() {
+    IImage image = TestImages.image(64, 40, 40503);
+    List<ITransform> transforms = List.of(new Filter(), new DownSize(0.5), new Filter(),
+        new ColorTransform());
+    List<KernelMatrix> kernels = List.of(BLUR, BLUR, SHARPEN, SEPIA);
+    IImage chained = new TransformChain(transforms, kernels).apply(image, BLUR);
+    assertEquals(32, chained.getWidth());
+    assertArrayEquals(sequential(image, transforms, kernels).getRaster(), chained.getRaster());
+  }
+
+  // rows streamed through the chain are the rows of the chain applied to the whole image
+  @Test
+  public void testStream() {
+    IImage image = TestImages.image(50, 70, 40503);
+    List<ITransform> transforms = List.of(new Filter(EdgeMode.MIRROR), new ColorTransform(),
+        new Filter(EdgeMode.CLAMP), new Filter());
+    List<KernelMatrix> kernels = List.of(SHARPEN, SEPIA, BLUR, SHARPEN);
+    int[] source = image.getRaster();
+    int[] result = new int[source.length];
+    IRowReader reader = new IRowReader() {
+      private int row;
+
+      @Override
+      public int getWidth() {
+        return 50;
+      }
+
+      @Override
+      public int getHeight() {
+        return 70;
+      }
+
+      @Override
+      public void readRow(int[] pixels, int offset) {
+        System.arraycopy(source, 50 * this.row++, pixels, offset, 50);
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    IRowWriter writer = new IRowWriter() {
+      private int row;
+
+      @Override
+      public void writeRow(int[] pixels, int offset) {
+        System.arraycopy(pixels, offset, result, 50 * this.row++, 50);
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+
+    TransformChain chain = new TransformChain(transforms, kernels);
+    assertTrue(chain.canStream());
+    chain.stream(reader, writer);
+    assertArrayEquals(sequential(image, transforms, kernels).getRaster(), result);
+  }
+
+  // wrapped rows near the top are read from the bottom of the image, which is not known yet
+  @Test
+  public void testCannotStream() {
+    assertFalse(new TransformChain(List.of(new Filter(EdgeMode.WRAP)), List.of(BLUR))
+        .canStream());
+    assertFalse(new TransformChain(List.of(new DownSize(0.5)), List.of(BLUR)).canStream());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testKernelCountMismatch() {
+    new TransformChain(List.of(new Filter(), new Filter()), List.of(BLUR));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyChain() {
+    new TransformChain(List.of(), List.of());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullChannel() {
+    new TransformChain(List.of(new Filter()), List.of(BLUR))
+        .apply(TestImages.image(4, 4, 40503), BLUR, null);
+  }
+}